@@ -0,0 +1,98 @@
+package diranieh.blockingsync.readerwriterlocks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * JMH harness measuring how read throughput scales with the number of threads for each
+ * {@link ReaderWriterLock}.
+ *
+ * Each benchmark thread repeatedly acquires the reader lock, reads shared state for csWork tokens
+ * (see {@link Blackhole#consumeCPU(long)}), releases it and runs a non-critical section of ncsWork
+ * tokens. With writesPerThousand = 0 the workload is read-only, so an ideal lock scales linearly
+ * with the thread count; a lock whose readers update a shared count flattens out. A non-zero
+ * writesPerThousand makes every thread take the writer lock instead on that many operations in
+ * a thousand.
+ *
+ * The thread count is not a @Param; run {@link ReaderScalingBenchmarkRunner} to sweep 1..64 threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderScalingBenchmark {
+
+    @Param({"SimpleReaderWriterLock", "FairReaderWriterLock", "BigReaderWriterLock"})
+    public String implementation;
+
+    @Param({"0"})
+    public int writesPerThousand;
+
+    @Param({"10"})
+    public long csWork;         // critical-section length in Blackhole tokens
+
+    @Param({"10"})
+    public long ncsWork;        // non-critical-section length in Blackhole tokens
+
+    private Lock readerLock;
+    private Lock writerLock;
+    private long sharedValue;       // read under the reader lock, written under the writer lock
+
+    /* Per-thread operation count, used to spread writes evenly. Only the owning thread writes to it */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int operations;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ReaderWriterLock lock = createLock(implementation);
+        readerLock = lock.getReaderLock();
+        writerLock = lock.gerWriterLock();
+        sharedValue = 0;
+    }
+
+    @Benchmark
+    public long readMostly(ThreadState state) {
+        long value;
+        if (writesPerThousand > 0 && (state.operations++ % 1000) < writesPerThousand) {
+            writerLock.lock();
+            try {
+                Blackhole.consumeCPU(csWork);
+                value = ++sharedValue;
+            } finally {
+                writerLock.unlock();
+            }
+        } else {
+            readerLock.lock();
+            try {
+                Blackhole.consumeCPU(csWork);
+                value = sharedValue;
+            } finally {
+                readerLock.unlock();
+            }
+        }
+
+        Blackhole.consumeCPU(ncsWork);
+        return value;
+    }
+
+    /* Implementation details */
+    static ReaderWriterLock createLock(String implementation) {
+        switch (implementation) {
+            case "SimpleReaderWriterLock":
+                return new SimpleReaderWriterLock();
+            case "FairReaderWriterLock":
+                return new FairReaderWriterLock();
+            case "BigReaderWriterLock":
+                return new BigReaderWriterLock();
+            default:
+                throw new IllegalArgumentException("Unknown reader-writer lock implementation: " + implementation);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package diranieh.blockingsync.readerwriterlocks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link ReaderScalingBenchmark} for 1, 2, 4, ... up to maxThreads threads (the last step
+ * is always maxThreads itself).
+ *
+ * Usage: ReaderScalingBenchmarkRunner [maxThreads] [writesPerThousand] [implementation,...]
+ *   maxThreads        defaults to 64
+ *   writesPerThousand operations in a thousand that take the writer lock, defaults to 0 (read-only)
+ *   implementation    comma-separated list of lock class names, defaults to all locks
+ */
+public class ReaderScalingBenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        String writesPerThousand = args.length > 1 ? args[1] : "0";
+
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            OptionsBuilder builder = new OptionsBuilder();
+            builder.include(ReaderScalingBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .param("writesPerThousand", writesPerThousand);
+            if (args.length > 2)
+                builder.param("implementation", args[2].split(","));
+
+            Options options = builder.build();
+            new Runner(options).run();
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if (threads == maxThreads)
+            return maxThreads + 1;                      // done
+        return Math.min(threads * 2, maxThreads);
+    }
+}
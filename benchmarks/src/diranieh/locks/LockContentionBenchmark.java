@@ -0,0 +1,163 @@
+package diranieh.locks;
+
+import diranieh.utilities.LatencyHistogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * JMH harness comparing every {@link Lock} in diranieh.locks against a shared critical section.
+ *
+ * Each benchmark thread repeatedly acquires the lock, runs a critical section of csWork tokens
+ * (see {@link Blackhole#consumeCPU(long)}) that also updates shared state, releases the lock and
+ * then runs a non-critical section of ncsWork tokens. A short critical section with a short
+ * non-critical section is the high-contention case; growing ncsWork lowers contention.
+ *
+ * Three things are reported for each lock:
+ *  - throughput: measured by JMH as operations (acquire/release pairs) per microsecond
+ *  - acquire latency: time spent inside lock() recorded per thread into a {@link LatencyHistogram}
+ *    and reported as p50/p99/p99.9 when the trial ends
+ *  - fairness: the spread of per-thread acquisition counts. A perfectly fair lock gives every
+ *    thread the same number of acquisitions (max/min = 1, coefficient of variation = 0)
+ *
+ * CohortLock uses the number of clusters given by the cohort.clusters system property (default 2).
+ * The thread count is not a @Param; run {@link LockContentionBenchmarkRunner} to sweep 1..N threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockContentionBenchmark {
+
+    @Param({"TestAndSetLock", "TestAndTestAndSetLock", "BackoffLock", "ALock", "CLHLock", "MCSLock",
+            "SpinningCLHLock", "SpinningMCSLock", "CohortLock", "TicketLock", "PartitionedTicketLock"})
+    public String implementation;
+
+    private static final int CLUSTER_COUNT = Integer.getInteger("cohort.clusters", 2);
+
+    @Param({"10"})
+    public long csWork;         // critical-section length in Blackhole tokens
+
+    @Param({"100"})
+    public long ncsWork;        // non-critical-section length in Blackhole tokens
+
+    private Lock lock;
+    private long sharedCounter;     // protected by lock. Forces the protected data to migrate between caches
+    private final Queue<ThreadStatistics> threadStatistics = new ConcurrentLinkedQueue<>();
+
+    /* Per-thread acquisition count and acquire latency. Only the owning thread writes to it */
+    @State(Scope.Thread)
+    public static class ThreadStatistics {
+        long acquisitions;
+        final LatencyHistogram acquireLatency = new LatencyHistogram();
+
+        @Setup(Level.Trial)
+        public void register(LockContentionBenchmark benchmark) {
+            benchmark.threadStatistics.add(this);
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            // Only the measurement iterations should count, but JMH does not tell a state which kind
+            // of iteration is next. Resetting on every iteration keeps the last (measurement) iteration
+            acquisitions = 0;
+            acquireLatency.reset();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkParams params) {
+        lock = createLock(implementation, params.getThreads());
+        sharedCounter = 0;
+        threadStatistics.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        LatencyHistogram latency = new LatencyHistogram();
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long total = 0;
+        for (ThreadStatistics statistics : threadStatistics) {
+            latency.add(statistics.acquireLatency);
+            min = Math.min(min, statistics.acquisitions);
+            max = Math.max(max, statistics.acquisitions);
+            total += statistics.acquisitions;
+        }
+
+        // Coefficient of variation of per-thread acquisition counts
+        int threads = threadStatistics.size();
+        double mean = (double) total / threads;
+        double variance = 0;
+        for (ThreadStatistics statistics : threadStatistics) {
+            variance += Math.pow(statistics.acquisitions - mean, 2);
+        }
+        double cv = mean == 0 ? 0 : Math.sqrt(variance / threads) / mean;
+
+        System.out.println();
+        System.out.println(String.format(
+                "[%s threads=%d cs=%d ncs=%d] acquire latency (ns): p50=%d p99=%d p99.9=%d max=%d",
+                implementation, threads, csWork, ncsWork,
+                latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                latency.getValueAtPercentile(99.9), latency.getMaxValue()));
+        System.out.println(String.format(
+                "[%s threads=%d cs=%d ncs=%d] fairness: min=%d max=%d max/min=%.2f cv=%.3f",
+                implementation, threads, csWork, ncsWork,
+                min, max, min == 0 ? Double.POSITIVE_INFINITY : (double) max / min, cv));
+    }
+
+    @Benchmark
+    public long acquireRelease(ThreadStatistics statistics) {
+        long start = System.nanoTime();
+        lock.lock();
+        long counter;
+        try {
+            statistics.acquireLatency.record(System.nanoTime() - start);
+            Blackhole.consumeCPU(csWork);
+            counter = ++sharedCounter;
+        } finally {
+            lock.unlock();
+        }
+        statistics.acquisitions++;
+
+        Blackhole.consumeCPU(ncsWork);
+        return counter;
+    }
+
+    /* Implementation details */
+    static Lock createLock(String implementation, int threadCount) {
+        switch (implementation) {
+            case "TestAndSetLock":
+                return new TestAndSetLock();
+            case "TestAndTestAndSetLock":
+                return new TestAndTestAndSetLock();
+            case "BackoffLock":
+                return new BackoffLock();
+            case "ALock":
+                return new ALock(threadCount);
+            case "CLHLock":
+                return new CLHLock();
+            case "MCSLock":
+                return new MCSLock();
+            case "SpinningCLHLock":
+                return new CLHLock(new SpinWaitPolicy());
+            case "SpinningMCSLock":
+                return new MCSLock(new SpinWaitPolicy());
+            case "CohortLock":
+                return new CohortLock(CLUSTER_COUNT);
+            case "TicketLock":
+                return new TicketLock();
+            case "PartitionedTicketLock":
+                return new PartitionedTicketLock();
+            default:
+                throw new IllegalArgumentException("Unknown lock implementation: " + implementation);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package diranieh.locks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link LockContentionBenchmark} for 1, 2, 4, ... up to maxThreads threads (the last step
+ * is always maxThreads itself).
+ *
+ * Usage: LockContentionBenchmarkRunner [maxThreads] [csWork] [ncsWork] [implementation,...]
+ *   maxThreads     defaults to the number of available processors
+ *   csWork         critical-section length in Blackhole tokens, defaults to 10
+ *   ncsWork        non-critical-section length in Blackhole tokens, defaults to 100
+ *   implementation comma-separated list of lock class names, defaults to all locks
+ */
+public class LockContentionBenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        String csWork = args.length > 1 ? args[1] : "10";
+        String ncsWork = args.length > 2 ? args[2] : "100";
+
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            OptionsBuilder builder = new OptionsBuilder();
+            builder.include(LockContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .param("csWork", csWork)
+                    .param("ncsWork", ncsWork);
+            if (args.length > 3)
+                builder.param("implementation", args[3].split(","));
+
+            Options options = builder.build();
+            new Runner(options).run();
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if (threads == maxThreads)
+            return maxThreads + 1;                      // done
+        return Math.min(threads * 2, maxThreads);
+    }
+}
@@ -0,0 +1,114 @@
+package diranieh.locks;
+
+import diranieh.blockingsync.readerwriterlocks.FairReaderWriterLock;
+import diranieh.blockingsync.readerwriterlocks.ReaderWriterLock;
+import diranieh.blockingsync.readerwriterlocks.SimpleReaderWriterLock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * JMH harness comparing {@link SequenceLock} optimistic reads with the blocking reader-writer
+ * locks in diranieh.blockingsync.readerwriterlocks on a small read-mostly record.
+ *
+ * Each run has three reader threads and one writer thread (see @GroupThreads). Readers read the
+ * two fields of the record; the writer updates both and then runs a non-critical section of
+ * writerPause tokens, so growing writerPause makes the workload more read-dominated.
+ *
+ * For SequenceLock the read path performs no writes to shared memory, whereas a reader of
+ * FairReaderWriterLock and SimpleReaderWriterLock acquires an internal ReentrantLock twice
+ * (to lock and to unlock), so every read moves the lock's cache line between cores.
+ * JMH reports the throughput of readers and writer separately
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SequenceLockBenchmark {
+
+    @Param({"SequenceLock", "FairReaderWriterLock", "SimpleReaderWriterLock"})
+    public String implementation;
+
+    @Param({"1000"})
+    public long writerPause;        // writer's non-critical-section length in Blackhole tokens
+
+    // Shared record: a writer updates both fields together
+    private static class Record {
+        long first;
+        long second;
+    }
+
+    private final Record record = new Record();
+    private SequenceLock sequenceLock;
+    private Lock readerLock;
+    private Lock writerLock;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (implementation) {
+            case "SequenceLock":
+                sequenceLock = new SequenceLock(new TestAndTestAndSetLock());
+                break;
+            case "FairReaderWriterLock":
+                useReaderWriterLock(new FairReaderWriterLock());
+                break;
+            case "SimpleReaderWriterLock":
+                useReaderWriterLock(new SimpleReaderWriterLock());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(3)
+    public long read() {
+        if (sequenceLock != null)
+            return sequenceLock.readLong(record, r -> r.first + r.second);
+
+        readerLock.lock();
+        try {
+            return record.first + record.second;
+        } finally {
+            readerLock.unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public void write() {
+        if (sequenceLock != null) {
+            sequenceLock.lockWrite();
+            try {
+                update();
+            } finally {
+                sequenceLock.unlockWrite();
+            }
+        } else {
+            writerLock.lock();
+            try {
+                update();
+            } finally {
+                writerLock.unlock();
+            }
+        }
+        Blackhole.consumeCPU(writerPause);
+    }
+
+    /* Implementation details */
+    private void useReaderWriterLock(ReaderWriterLock lock) {
+        readerLock = lock.getReaderLock();
+        writerLock = lock.gerWriterLock();
+    }
+
+    private void update() {
+        record.first++;
+        record.second--;
+    }
+}
@@ -0,0 +1,101 @@
+package diranieh.locks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * JMH harness measuring the cost of an uncontended lock/unlock pair of {@link CLHLock} and
+ * {@link MCSLock} against their token variants {@link CLHTokenLock} and {@link MCSTokenLock}.
+ *
+ * A single thread cycles through lockCount lock instances, acquiring and releasing each in turn.
+ * CLHLock and MCSLock keep their per-thread nodes in ThreadLocals owned by each instance, so
+ * with many instances the thread's ThreadLocalMap holds thousands of entries and every lookup
+ * hashes into a large table. The token locks share one ThreadLocal per class, so their cost
+ * should not depend on lockCount
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+public class UncontendedQueueLockBenchmark {
+
+    @Param({"1", "16", "4096"})
+    public int lockCount;
+
+    private Lock[] clhLocks;
+    private Lock[] mcsLocks;
+    private CLHTokenLock[] clhTokenLocks;
+    private MCSTokenLock[] mcsTokenLocks;
+    private int next;
+    private long counter;       // protected by the lock being benchmarked
+
+    @Setup(Level.Trial)
+    public void setup() {
+        clhLocks = new Lock[lockCount];
+        mcsLocks = new Lock[lockCount];
+        clhTokenLocks = new CLHTokenLock[lockCount];
+        mcsTokenLocks = new MCSTokenLock[lockCount];
+        for (int i = 0; i < lockCount; i++) {
+            clhLocks[i] = new CLHLock();
+            mcsLocks[i] = new MCSLock();
+            clhTokenLocks[i] = new CLHTokenLock();
+            mcsTokenLocks[i] = new MCSTokenLock();
+        }
+    }
+
+    @Benchmark
+    public long clhLock() {
+        Lock lock = clhLocks[nextIndex()];
+        lock.lock();
+        try {
+            return ++counter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Benchmark
+    public long mcsLock() {
+        Lock lock = mcsLocks[nextIndex()];
+        lock.lock();
+        try {
+            return ++counter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Benchmark
+    public long clhTokenLock() {
+        CLHTokenLock lock = clhTokenLocks[nextIndex()];
+        CLHTokenLock.Token token = lock.lock();
+        try {
+            return ++counter;
+        } finally {
+            lock.unlock(token);
+        }
+    }
+
+    @Benchmark
+    public long mcsTokenLock() {
+        MCSTokenLock lock = mcsTokenLocks[nextIndex()];
+        MCSTokenLock.Token token = lock.lock();
+        try {
+            return ++counter;
+        } finally {
+            lock.unlock(token);
+        }
+    }
+
+    /* Implementation details */
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == lockCount ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,715 @@
+package diranieh.blockingsync;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * QueuedSynchronizer is the blocking core of the locks in diranieh.blockingsync, modelled on
+ * java.util.concurrent.locks.AbstractQueuedSynchronizer.
+ *
+ * A synchronizer is an int state plus a FIFO queue of waiting threads. Subclasses decide what
+ * the state means by implementing tryAcquire() and tryRelease() (for example, the hold count of
+ * a reentrant lock); this class takes care of queueing, parking and waking threads:
+ *  - A thread whose tryAcquire() fails appends a node to the queue (a CLH queue with explicit
+ *    predecessor and successor links) and parks. Only the thread whose node is first in the
+ *    queue retries tryAcquire()
+ *  - Before parking, a thread sets its predecessor's status to SIGNAL, which asks the
+ *    predecessor to unpark it on release. Releasing therefore wakes at most one thread, the
+ *    first queued one, instead of every waiting thread
+ *  - A thread that times out or is interrupted cancels its node; cancelled nodes are skipped
+ *    and unlinked by the threads around them, so they never block the queue
+ *
+ * tryAcquire() may or may not let a newly arriving thread take the state ahead of queued
+ * threads (barging); hasQueuedPredecessors() lets a fair subclass refuse. The synchronizer also
+ * provides Conditions for subclasses that can tell whether the calling thread holds them
+ * (isHeldExclusively()): an awaiting thread fully releases the state, waits on the condition's
+ * own queue and, once signalled, is moved to the synchronizer queue to reacquire the state
+ *
+ * Subclasses whose state can be held by several threads at once (a semaphore's permits)
+ * implement tryAcquireShared() and tryReleaseShared() instead and use the shared methods. A
+ * shared acquire that succeeds and leaves state for others wakes the next queued thread if it
+ * is also waiting in shared mode, which in turn wakes its own successor, so a release that frees
+ * enough for several waiters wakes them one after the other rather than all at once. A
+ * synchronizer uses either mode or both; the queue keeps exclusive and shared waiters in one
+ * FIFO order
+ */
+public abstract class QueuedSynchronizer {
+
+    static final class Node {
+        static final Node SHARED = new Node();  // nextWaiter of a node waiting in shared mode
+        static final int CANCELLED = 1;      // thread timed out or was interrupted
+        static final int SIGNAL = -1;        // successor is (or will be) parked and must be unparked on release
+        static final int CONDITION = -2;     // node is waiting on a condition queue
+        static final int PROPAGATE = -3;     // head only: the next shared acquire must wake its successor
+
+        volatile int waitStatus;
+        volatile Node prev;
+        volatile Node next;
+        volatile Thread thread;
+        Node nextWaiter;                     // next node on a condition queue, or SHARED. Guarded by the synchronizer
+
+        Node() {
+        }
+
+        boolean isShared() {
+            return nextWaiter == SHARED;
+        }
+
+        Node(Thread thread, int waitStatus) {
+            this.thread = thread;
+            this.waitStatus = waitStatus;
+        }
+    }
+
+    private static final VarHandle STATE;
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    private static final VarHandle WAIT_STATUS;
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(QueuedSynchronizer.class, "state", int.class);
+            HEAD = lookup.findVarHandle(QueuedSynchronizer.class, "head", Node.class);
+            TAIL = lookup.findVarHandle(QueuedSynchronizer.class, "tail", Node.class);
+            WAIT_STATUS = lookup.findVarHandle(Node.class, "waitStatus", int.class);
+            NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile int state = 0;
+    private volatile Node head;          // dummy node whose thread holds (or last held) the state
+    private volatile Node tail;
+    private Thread exclusiveOwner;                  // written by the thread taking or releasing the state
+
+    /* Subclass hooks */
+    // Tries to take the state in exclusive mode. Must not block
+    protected boolean tryAcquire(int arg) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Releases the state. Returns true if it is now fully released and a waiter may take it
+    protected boolean tryRelease(int arg) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Tries to take the state in shared mode. Must not block. Returns a negative value on
+    // failure, zero if it succeeded but nothing is left for other shared acquires, and a
+    // positive value if it succeeded and other shared acquires may succeed too
+    protected int tryAcquireShared(int arg) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Releases the state in shared mode. Returns true if a waiter may now take it
+    protected boolean tryReleaseShared(int arg) {
+        throw new UnsupportedOperationException();
+    }
+
+    // True if the calling thread holds the state. Only needed for conditions
+    protected boolean isHeldExclusively() {
+        throw new UnsupportedOperationException();
+    }
+
+    protected final int getState() {
+        return state;
+    }
+
+    protected final void setState(int newState) {
+        state = newState;
+    }
+
+    protected final boolean compareAndSetState(int expect, int update) {
+        return STATE.compareAndSet(this, expect, update);
+    }
+
+    protected final Thread getExclusiveOwner() {
+        return exclusiveOwner;
+    }
+
+    protected final void setExclusiveOwner(Thread thread) {
+        exclusiveOwner = thread;
+    }
+
+    /* Exclusive acquisition and release */
+    // Acquires, ignoring interrupts (which are restored once the state is acquired)
+    public final void acquire(int arg) {
+        if (!tryAcquire(arg) && acquireQueued(addWaiter(), arg))
+            Thread.currentThread().interrupt();
+    }
+
+    public final void acquireInterruptibly(int arg) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (!tryAcquire(arg))
+            doAcquire(arg, true, false, 0);
+    }
+
+    public final boolean tryAcquireNanos(int arg, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        return tryAcquire(arg) || doAcquire(arg, true, true, nanosTimeout);
+    }
+
+    public final boolean release(int arg) {
+        if (!tryRelease(arg))
+            return false;
+
+        Node h = head;
+        if (h != null && h.waitStatus != 0)
+            unparkSuccessor(h);
+        return true;
+    }
+
+    /* Shared acquisition and release */
+    // Acquires, ignoring interrupts (which are restored once the state is acquired)
+    public final void acquireShared(int arg) {
+        try {
+            if (tryAcquireShared(arg) < 0)
+                doAcquireShared(arg, false, false, 0);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);         // cannot happen: not interruptible
+        }
+    }
+
+    public final void acquireSharedInterruptibly(int arg) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (tryAcquireShared(arg) < 0)
+            doAcquireShared(arg, true, false, 0);
+    }
+
+    public final boolean tryAcquireSharedNanos(int arg, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        return tryAcquireShared(arg) >= 0 || doAcquireShared(arg, true, true, nanosTimeout);
+    }
+
+    public final boolean releaseShared(int arg) {
+        if (!tryReleaseShared(arg))
+            return false;
+
+        doReleaseShared();
+        return true;
+    }
+
+    /* Queue inspection */
+    // True if some other thread has been waiting longer than the calling thread. Used by fair
+    // tryAcquire() implementations to refuse barging
+    public final boolean hasQueuedPredecessors() {
+        Node t = tail;
+        Node h = head;
+        Node s;
+        return h != t && ((s = h.next) == null || s.thread != Thread.currentThread());
+    }
+
+    public final boolean hasQueuedThreads() {
+        return head != tail;
+    }
+
+    // Estimate: the queue may change while it is traversed
+    public final int getQueueLength() {
+        int n = 0;
+        for (Node p = tail; p != null; p = p.prev) {
+            if (p.thread != null)
+                n++;
+        }
+        return n;
+    }
+
+    public final ConditionObject newCondition() {
+        return new ConditionObject();
+    }
+
+    // Number of threads waiting on a condition of this synchronizer. The caller must hold it
+    protected final int getWaitQueueLength(ConditionObject condition) {
+        if (!isHeldExclusively())
+            throw new IllegalMonitorStateException("Lock not held by this thread");
+
+        int n = 0;
+        for (Node w = condition.firstWaiter; w != null; w = w.nextWaiter) {
+            if (w.waitStatus == Node.CONDITION)
+                n++;
+        }
+        return n;
+    }
+
+    /* Implementation details */
+    private Node addWaiter() {
+        Node node = new Node(Thread.currentThread(), 0);
+        enqueue(node);
+        return node;
+    }
+
+    private Node addSharedWaiter() {
+        Node node = new Node(Thread.currentThread(), 0);
+        node.nextWaiter = Node.SHARED;
+        enqueue(node);
+        return node;
+    }
+
+    // Appends the node to the queue, creating the dummy head on first use. Returns the node's predecessor
+    private Node enqueue(Node node) {
+        while (true) {
+            Node t = tail;
+            if (t == null) {
+                Node dummy = new Node();
+                if (HEAD.compareAndSet(this, null, dummy))
+                    tail = dummy;
+            } else {
+                node.prev = t;
+                if (TAIL.compareAndSet(this, t, node)) {
+                    t.next = node;
+                    return t;
+                }
+            }
+        }
+    }
+
+    private void setHead(Node node) {
+        head = node;
+        node.thread = null;
+        node.prev = null;
+    }
+
+    // Waits in the queue until the state is acquired, ignoring interrupts. Returns true if
+    // the thread was interrupted while waiting
+    final boolean acquireQueued(Node node, int arg) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                Node p = node.prev;
+                if (p == head && tryAcquire(arg)) {
+                    setHead(node);
+                    p.next = null;          // help GC
+                    return interrupted;
+                }
+                if (shouldParkAfterFailedAcquire(p, node)) {
+                    LockSupport.park(this);
+                    interrupted |= Thread.interrupted();
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            cancelAcquire(node);            // tryAcquire() threw
+            throw e;
+        }
+    }
+
+    // Waits in the queue until the state is acquired, the thread is interrupted (if
+    // interruptible) or the timeout expires (if timed). Cancels the node on failure
+    private boolean doAcquire(int arg, boolean interruptible, boolean timed, long nanosTimeout) throws InterruptedException {
+        if (timed && nanosTimeout <= 0)
+            return false;
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        Node node = addWaiter();
+        boolean acquired = false;
+        try {
+            while (true) {
+                Node p = node.prev;
+                if (p == head && tryAcquire(arg)) {
+                    setHead(node);
+                    p.next = null;          // help GC
+                    acquired = true;
+                    return true;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (timed && remaining <= 0)
+                    return false;
+                if (shouldParkAfterFailedAcquire(p, node)) {
+                    if (timed)
+                        LockSupport.parkNanos(this, remaining);
+                    else
+                        LockSupport.park(this);
+                }
+                if (interruptible && Thread.interrupted())
+                    throw new InterruptedException();
+            }
+        } finally {
+            if (!acquired)
+                cancelAcquire(node);
+        }
+    }
+
+    // Shared-mode counterpart of acquireQueued() and doAcquire(). An uninterruptible acquire
+    // restores the interrupt once the state is acquired
+    private boolean doAcquireShared(int arg, boolean interruptible, boolean timed, long nanosTimeout) throws InterruptedException {
+        if (timed && nanosTimeout <= 0)
+            return false;
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        Node node = addSharedWaiter();
+        boolean acquired = false;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                Node p = node.prev;
+                if (p == head) {
+                    int r = tryAcquireShared(arg);
+                    if (r >= 0) {
+                        setHeadAndPropagate(node, r);
+                        p.next = null;      // help GC
+                        acquired = true;
+                        if (interrupted)
+                            Thread.currentThread().interrupt();
+                        return true;
+                    }
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (timed && remaining <= 0)
+                    return false;
+                if (shouldParkAfterFailedAcquire(p, node)) {
+                    if (timed)
+                        LockSupport.parkNanos(this, remaining);
+                    else
+                        LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    if (interruptible)
+                        throw new InterruptedException();
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (!acquired)
+                cancelAcquire(node);
+        }
+    }
+
+    // Makes the node the head and, if more shared acquires may succeed (or a release asked for
+    // propagation meanwhile), wakes the next thread if it waits in shared mode
+    private void setHeadAndPropagate(Node node, int propagate) {
+        Node h = head;
+        setHead(node);
+        if (propagate > 0 || h == null || h.waitStatus < 0 || (h = head) == null || h.waitStatus < 0) {
+            Node s = node.next;
+            if (s == null || s.isShared())
+                doReleaseShared();
+        }
+    }
+
+    // Wakes the head's successor, or marks the head PROPAGATE if there is no one to wake yet, so
+    // that the release is passed on by the next shared acquire. Loops while the head changes
+    private void doReleaseShared() {
+        while (true) {
+            Node h = head;
+            if (h != null && h != tail) {
+                int ws = h.waitStatus;
+                if (ws == Node.SIGNAL) {
+                    if (!WAIT_STATUS.compareAndSet(h, Node.SIGNAL, 0))
+                        continue;
+                    unparkSuccessor(h);
+                } else if (ws == 0 && !WAIT_STATUS.compareAndSet(h, 0, Node.PROPAGATE)) {
+                    continue;
+                }
+            }
+            if (h == head)
+                return;
+        }
+    }
+
+    // Makes sure the predecessor will unpark the node's thread on release. Skips over cancelled
+    // predecessors. Returns true if the thread can now park; false means "check the state again"
+    private static boolean shouldParkAfterFailedAcquire(Node pred, Node node) {
+        int ws = pred.waitStatus;
+        if (ws == Node.SIGNAL)
+            return true;
+
+        if (ws > 0) {
+            do {
+                node.prev = pred = pred.prev;
+            } while (pred.waitStatus > 0);
+            pred.next = node;
+        } else {
+            WAIT_STATUS.compareAndSet(pred, ws, Node.SIGNAL);
+        }
+        return false;
+    }
+
+    // Wakes the first non-cancelled successor of the node. The next links may lag behind the
+    // prev links (a node is linked to its predecessor before its predecessor is linked to it),
+    // so if the successor is missing or cancelled the queue is searched backwards from the tail
+    private void unparkSuccessor(Node node) {
+        int ws = node.waitStatus;
+        if (ws < 0)
+            WAIT_STATUS.compareAndSet(node, ws, 0);
+
+        Node s = node.next;
+        if (s == null || s.waitStatus > 0) {
+            s = null;
+            for (Node t = tail; t != null && t != node; t = t.prev) {
+                if (t.waitStatus <= 0)
+                    s = t;
+            }
+        }
+        if (s != null)
+            LockSupport.unpark(s.thread);
+    }
+
+    private void cancelAcquire(Node node) {
+        if (node == null)
+            return;
+
+        node.thread = null;
+
+        // Skip cancelled predecessors
+        Node pred = node.prev;
+        while (pred.waitStatus > 0) {
+            node.prev = pred = pred.prev;
+        }
+        Node predNext = pred.next;
+        node.waitStatus = Node.CANCELLED;
+
+        // If the node is the tail, remove it. Otherwise link the predecessor to the successor
+        // if the predecessor will signal it, or wake the successor so that it relinks itself
+        if (node == tail && TAIL.compareAndSet(this, node, pred)) {
+            NEXT.compareAndSet(pred, predNext, null);
+        } else {
+            int ws;
+            if (pred != head
+                    && ((ws = pred.waitStatus) == Node.SIGNAL || (ws <= 0 && WAIT_STATUS.compareAndSet(pred, ws, Node.SIGNAL)))
+                    && pred.thread != null) {
+                Node next = node.next;
+                if (next != null && next.waitStatus <= 0)
+                    NEXT.compareAndSet(pred, predNext, next);
+            } else {
+                unparkSuccessor(node);
+            }
+            node.next = node;       // help GC
+        }
+    }
+
+    // True if a node that was on a condition queue has been moved to the synchronizer queue
+    private boolean isOnSyncQueue(Node node) {
+        if (node.waitStatus == Node.CONDITION || node.prev == null)
+            return false;
+        if (node.next != null)
+            return true;
+
+        // The node's prev may be set while the CAS that enqueues it has not yet succeeded.
+        // It is near the tail if it is there at all
+        for (Node t = tail; t != null; t = t.prev) {
+            if (t == node)
+                return true;
+        }
+        return false;
+    }
+
+    // Moves a signalled node from a condition queue to the synchronizer queue. Returns false if
+    // the node was cancelled before it could be signalled
+    private boolean transferForSignal(Node node) {
+        if (!WAIT_STATUS.compareAndSet(node, Node.CONDITION, 0))
+            return false;
+
+        // Ask the predecessor to signal the node; if it cannot (cancelled), wake the node so
+        // that it fixes up the queue itself
+        Node p = enqueue(node);
+        int ws = p.waitStatus;
+        if (ws > 0 || !WAIT_STATUS.compareAndSet(p, ws, Node.SIGNAL))
+            LockSupport.unpark(node.thread);
+        return true;
+    }
+
+    // Moves a node whose wait was interrupted or timed out to the synchronizer queue. Returns
+    // true if that happened before a signal, false if a signal moved it first
+    private boolean transferAfterCancelledWait(Node node) {
+        if (WAIT_STATUS.compareAndSet(node, Node.CONDITION, 0)) {
+            enqueue(node);
+            return true;
+        }
+
+        // A signal won the race: wait for it to finish moving the node
+        while (!isOnSyncQueue(node)) {
+            Thread.yield();
+        }
+        return false;
+    }
+
+    // Releases the whole state (all holds of a reentrant lock) and returns it for reacquiring
+    private int fullyRelease(Node node) {
+        try {
+            int savedState = getState();
+            if (release(savedState))
+                return savedState;
+            throw new IllegalMonitorStateException("Cannot await. Lock not held by this thread");
+        } catch (RuntimeException e) {
+            node.waitStatus = Node.CANCELLED;
+            throw e;
+        }
+    }
+
+    /**
+     * Condition queue: a plain linked list of nodes, only touched by threads holding the
+     * synchronizer. A signal moves the first waiting node to the synchronizer queue, where
+     * its thread waits to reacquire the state like any other thread
+     */
+    public class ConditionObject implements Condition {
+        private static final int REINTERRUPT = 1;       // interrupted after a signal: restore the interrupt
+        private static final int THROW_IE = -1;         // interrupted before a signal: throw
+
+        private Node firstWaiter;
+        private Node lastWaiter;
+
+        @Override
+        public final void signal() {
+            if (!isHeldExclusively())
+                throw new IllegalMonitorStateException("Cannot signal. Lock not held by this thread");
+
+            Node first = firstWaiter;
+            while (first != null) {
+                firstWaiter = first.nextWaiter;
+                if (firstWaiter == null)
+                    lastWaiter = null;
+                first.nextWaiter = null;
+                if (transferForSignal(first))
+                    break;
+                first = firstWaiter;
+            }
+        }
+
+        @Override
+        public final void signalAll() {
+            if (!isHeldExclusively())
+                throw new IllegalMonitorStateException("Cannot signal. Lock not held by this thread");
+
+            Node first = firstWaiter;
+            firstWaiter = lastWaiter = null;
+            while (first != null) {
+                Node next = first.nextWaiter;
+                first.nextWaiter = null;
+                transferForSignal(first);
+                first = next;
+            }
+        }
+
+        @Override
+        public final void await() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            Node node = addConditionWaiter();
+            int savedState = fullyRelease(node);
+            int interruptMode = 0;
+            while (!isOnSyncQueue(node)) {
+                LockSupport.park(this);
+                if ((interruptMode = checkInterruptWhileWaiting(node)) != 0)
+                    break;
+            }
+            reacquire(node, savedState, interruptMode);
+        }
+
+        @Override
+        public final void awaitUninterruptibly() {
+            Node node = addConditionWaiter();
+            int savedState = fullyRelease(node);
+            boolean interrupted = false;
+            while (!isOnSyncQueue(node)) {
+                LockSupport.park(this);
+                interrupted |= Thread.interrupted();
+            }
+            if (acquireQueued(node, savedState) || interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        @Override
+        public final long awaitNanos(long nanosTimeout) throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            long deadline = System.nanoTime() + nanosTimeout;
+            Node node = addConditionWaiter();
+            int savedState = fullyRelease(node);
+            int interruptMode = 0;
+            while (!isOnSyncQueue(node)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    transferAfterCancelledWait(node);
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if ((interruptMode = checkInterruptWhileWaiting(node)) != 0)
+                    break;
+            }
+            reacquire(node, savedState, interruptMode);
+            return deadline - System.nanoTime();
+        }
+
+        @Override
+        public final boolean await(long time, TimeUnit unit) throws InterruptedException {
+            return awaitNanos(unit.toNanos(time)) > 0;
+        }
+
+        @Override
+        public final boolean awaitUntil(Date deadline) throws InterruptedException {
+            return await(deadline.getTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        /* Implementation details */
+        private Node addConditionWaiter() {
+            if (!isHeldExclusively())
+                throw new IllegalMonitorStateException("Cannot await. Lock not held by this thread");
+
+            Node t = lastWaiter;
+            if (t != null && t.waitStatus != Node.CONDITION) {
+                unlinkCancelledWaiters();
+                t = lastWaiter;
+            }
+
+            Node node = new Node(Thread.currentThread(), Node.CONDITION);
+            if (t == null)
+                firstWaiter = node;
+            else
+                t.nextWaiter = node;
+            lastWaiter = node;
+            return node;
+        }
+
+        // Removes nodes that left the condition queue because of a timeout or an interrupt
+        private void unlinkCancelledWaiters() {
+            Node t = firstWaiter;
+            Node trail = null;
+            while (t != null) {
+                Node next = t.nextWaiter;
+                if (t.waitStatus != Node.CONDITION) {
+                    t.nextWaiter = null;
+                    if (trail == null)
+                        firstWaiter = next;
+                    else
+                        trail.nextWaiter = next;
+                    if (next == null)
+                        lastWaiter = trail;
+                } else {
+                    trail = t;
+                }
+                t = next;
+            }
+        }
+
+        private int checkInterruptWhileWaiting(Node node) {
+            if (!Thread.interrupted())
+                return 0;
+            return transferAfterCancelledWait(node) ? THROW_IE : REINTERRUPT;
+        }
+
+        // Reacquires the state after waiting and reports an interrupt as the wait requires
+        private void reacquire(Node node, int savedState, int interruptMode) throws InterruptedException {
+            if (acquireQueued(node, savedState) && interruptMode != THROW_IE)
+                interruptMode = REINTERRUPT;
+            if (node.nextWaiter != null)
+                unlinkCancelledWaiters();
+
+            if (interruptMode == THROW_IE)
+                throw new InterruptedException();
+            if (interruptMode == REINTERRUPT)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
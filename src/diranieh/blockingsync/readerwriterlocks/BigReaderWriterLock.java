@@ -0,0 +1,355 @@
+package diranieh.blockingsync.readerwriterlocks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A "big reader" {@link ReaderWriterLock}: readers scale with the number of cores because they
+ * never touch a shared cache line unless a writer is about.
+ *
+ * {@link FairReaderWriterLock} and {@link SimpleReaderWriterLock} route every reader lock() and
+ * unlock() through one ReentrantLock and one reader count, so read-only traffic serializes on a
+ * single cache line. Here a reader announces itself by incrementing one of several reader
+ * counters (stripes), each on its own cache line, chosen by hashing the thread id, and then
+ * checks that no writer has announced itself. Only writers scan all the stripes. This is the
+ * big-reader lock idea; BRAVO's revocable reader bias is not needed because the stripes are
+ * always in use.
+ *
+ * The internal mutex and its conditions are only used on the slow paths: a reader that finds a
+ * writer announced backs out of its stripe and waits for the writer to finish, and a writer
+ * waits for the stripes to drain. A reader that releases the lock while a writer is waiting
+ * takes the mutex to wake it, so the writer never polls. Both sides publish their own intent
+ * before checking for the other side, so at least one of them always sees the other.
+ *
+ * Two options:
+ *  - writerPreference (default true): an arriving writer announces itself at once, so new
+ *    readers wait and the writer only waits for the readers already inside. Without writer
+ *    preference, a writer waits until there are no readers before announcing itself, so a
+ *    continuous stream of readers can starve it
+ *  - fair (default false): the internal mutex is fair, so blocked writers and readers take it
+ *    in arrival order
+ *
+ * A reader must release the read lock on the thread that acquired it (the stripe is chosen by
+ * thread). Neither lock is reentrant. A writer lock can be downgraded to a reader lock. There is
+ * no upgradable reader lock: this lock does not implement {@link UpgradableReaderWriterLock}
+ */
+public class BigReaderWriterLock implements ReaderWriterLock {
+    private static final int PADDING = 8;               // longs per cache line (64 bytes)
+
+    private final AtomicLongArray readers;              // one reader count per stripe, PADDING apart
+    private final int mask;                             // number of stripes - 1
+    private final boolean writerPreference;
+    private final ReentrantLock mutex;
+    private final Condition writerDone;                 // signalled when a writer releases the lock
+    private final Condition readersDrained;             // signalled when a reader leaves while a writer waits
+    private volatile boolean writerAnnounced = false;   // readers must not enter. Written under mutex
+    private volatile boolean writerWaiting = false;     // leaving readers must signal readersDrained
+    private Thread writer = null;                       // guarded by mutex
+    private final Lock readerLock = new ReaderLock();
+    private final Lock writerLock = new WriterLock();
+
+    public BigReaderWriterLock() {
+        this(true, false);
+    }
+
+    // Two stripes per processor, rounded up to a power of two
+    public BigReaderWriterLock(boolean writerPreference, boolean fair) {
+        this.writerPreference = writerPreference;
+        mutex = new ReentrantLock(fair);
+        writerDone = mutex.newCondition();
+        readersDrained = mutex.newCondition();
+
+        int stripes = 2 * Runtime.getRuntime().availableProcessors();
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        mask = size - 1;
+
+        // Stripe j lives at index (j + 1) * PADDING so that the first stripe does not share a
+        // cache line with the array header
+        readers = new AtomicLongArray((size + 1) * PADDING);
+    }
+
+    private class ReaderLock implements Lock {
+        @Override
+        public void lock() {
+            try {
+                acquireRead(false, false, 0);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);         // cannot happen: not interruptible
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            acquireRead(true, false, 0);
+        }
+
+        @Override
+        public boolean tryLock() {
+            return tryEnter(stripeOfCurrentThread());
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return acquireRead(true, true, unit.toNanos(time));
+        }
+
+        @Override
+        public void unlock() {
+            int index = stripeOfCurrentThread();
+            if (readers.decrementAndGet(index) < 0) {
+                readers.incrementAndGet(index);         // undo
+                throw new IllegalStateException("Cannot unlock. No locking readers active");
+            }
+            signalWaitingWriter();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class WriterLock implements Lock {
+        @Override
+        public void lock() {
+            try {
+                acquireWrite(false, false, 0);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);         // cannot happen: not interruptible
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            acquireWrite(true, false, 0);
+        }
+
+        // Succeeds only if there is no writer and no reader
+        @Override
+        public boolean tryLock() {
+            if (writerAnnounced || !mutex.tryLock())
+                return false;
+            try {
+                if (writer != null)
+                    return false;
+                writerAnnounced = true;
+                if (hasReaders()) {
+                    writerAnnounced = false;
+                    writerDone.signalAll();         // readers that backed off meanwhile
+                    return false;
+                }
+                writer = Thread.currentThread();
+                return true;
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return acquireWrite(true, true, unit.toNanos(time));
+        }
+
+        @Override
+        public void unlock() {
+            mutex.lock();
+            try {
+                if (writer != Thread.currentThread())
+                    throw new IllegalStateException("Cannot unlock. No locking writer active");
+
+                writer = null;
+                writerAnnounced = false;
+                writerDone.signalAll();       // Writer is done
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    // All threads will get the same instance of the lock
+    public Lock getReaderLock() {
+        return readerLock;
+    }
+
+    @Override
+    // All threads will get the same instance of the lock
+    public Lock gerWriterLock() {
+        return writerLock;
+    }
+
+    @Override
+    public void downgrade() {
+        mutex.lock();
+        try {
+            if (writer != Thread.currentThread())
+                throw new IllegalStateException("Cannot downgrade. No locking writer active");
+
+            // Become a reader before letting other threads in. The writer is still announced, so
+            // the stripe is incremented directly rather than through tryEnter()
+            readers.incrementAndGet(stripeOfCurrentThread());
+            writer = null;
+            writerAnnounced = false;
+            writerDone.signalAll();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public boolean isWriterPreference() {
+        return writerPreference;
+    }
+
+    public boolean isFair() {
+        return mutex.isFair();
+    }
+
+    /* Package-private visibility for testing*/
+    boolean hasReaders() {
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            if (readers.get(indexOf(stripe)) > 0)
+                return true;
+        }
+        return false;
+    }
+
+    boolean hasWriter() {
+        return writerAnnounced;
+    }
+
+    /* Implementation details */
+    // Fast path: announce this reader in its stripe, then check for a writer that may have
+    // announced itself in between. Backs out if there is one
+    private boolean tryEnter(int index) {
+        if (writerAnnounced)
+            return false;
+
+        readers.incrementAndGet(index);
+        if (!writerAnnounced)
+            return true;
+
+        readers.decrementAndGet(index);
+        signalWaitingWriter();
+        return false;
+    }
+
+    private boolean acquireRead(boolean interruptible, boolean timed, long nanosTimeout) throws InterruptedException {
+        int index = stripeOfCurrentThread();
+        if (tryEnter(index))
+            return true;
+
+        // Slow path: wait for the writer to finish. The writer flag only changes under the mutex
+        long remaining = nanosTimeout;
+        mutex.lock();
+        try {
+            while (!tryEnter(index)) {
+                if (timed && remaining <= 0)
+                    return false;
+                remaining = await(writerDone, interruptible, timed, remaining);
+            }
+            return true;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private boolean acquireWrite(boolean interruptible, boolean timed, long nanosTimeout) throws InterruptedException {
+        long remaining = nanosTimeout;
+        mutex.lock();
+        try {
+            // Writers exclude each other by claiming the lock before waiting for readers, so
+            // only one writer at a time waits for the stripes to drain
+            while (writer != null) {
+                if (timed && remaining <= 0)
+                    return false;
+                remaining = await(writerDone, interruptible, timed, remaining);
+            }
+            writer = Thread.currentThread();
+
+            boolean acquired = false;
+            writerWaiting = true;
+            try {
+                while (true) {
+                    if (!writerPreference) {
+                        // Let readers in until there are none
+                        while (hasReaders()) {
+                            if (timed && remaining <= 0)
+                                return false;
+                            remaining = await(readersDrained, interruptible, timed, remaining);
+                        }
+                    }
+
+                    // Stop new readers, then wait for those inside to leave. Without writer
+                    // preference, a reader that slipped in meanwhile makes the writer back off
+                    writerAnnounced = true;
+                    while (hasReaders() && writerPreference) {
+                        if (timed && remaining <= 0)
+                            return false;
+                        remaining = await(readersDrained, interruptible, timed, remaining);
+                    }
+                    if (!hasReaders()) {
+                        acquired = true;
+                        return true;
+                    }
+
+                    writerAnnounced = false;
+                    writerDone.signalAll();         // readers that backed off meanwhile
+                }
+            } finally {
+                writerWaiting = false;
+                if (!acquired) {
+                    // Timed out or interrupted: let readers and the next writer in
+                    writer = null;
+                    writerAnnounced = false;
+                    writerDone.signalAll();
+                }
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    // Waits on the condition (mutex held) and returns the remaining timeout
+    private static long await(Condition condition, boolean interruptible, boolean timed, long nanos) throws InterruptedException {
+        if (timed)
+            return condition.awaitNanos(nanos);
+        if (interruptible)
+            condition.await();
+        else
+            condition.awaitUninterruptibly();
+        return nanos;
+    }
+
+    // Wakes a writer waiting for readers to drain. Called after a reader left its stripe
+    private void signalWaitingWriter() {
+        if (!writerWaiting)
+            return;
+
+        mutex.lock();
+        try {
+            readersDrained.signalAll();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private int stripeOfCurrentThread() {
+        // Spread thread ids over the stripes (Fibonacci hashing) so that consecutive ids
+        // created by the same pool do not end up on neighbouring stripes only
+        long id = Thread.currentThread().getId();
+        int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+        return indexOf(hash & mask);
+    }
+
+    private static int indexOf(int stripe) {
+        return (stripe + 1) * PADDING;
+    }
+}
@@ -11,9 +11,7 @@ import java.util.concurrent.locks.ReentrantLock;
  * semantics to {@link ReentrantLock}.
  *
  * <p>This class does not impose a reader or writer preference
- * ordering for lock access. This class does not support upgrading
- * a read lock to a write lock, or downgrading a write lock to a
- * read lock
+ * ordering for lock access.
  *
  * This class ensures that once a writer thread calls gerWriterLock().lock(),
  * irrespective of whether gerWriterLock().lock() acquires the lock or blocks,
@@ -21,13 +19,22 @@ import java.util.concurrent.locks.ReentrantLock;
  * has acquired and released the write lock. Eventually, the readers holding
  * a lock will drain out without letting any more readers in, and the writer
  * thread will acquire the write lock
+ *
+ * An upgradable reader coexists with plain readers but excludes writers and
+ * other upgradable readers. A writer waits for the upgradable reader to leave
+ * before it blocks new readers, since the upgradable reader may want the write
+ * lock itself. upgrade() blocks new readers in the same way a writer does and
+ * waits for the plain readers to drain. A writer lock can be downgraded to a
+ * reader lock
  */
-public class FairReaderWriterLock implements ReaderWriterLock {
+public class FairReaderWriterLock implements UpgradableReaderWriterLock {
     private int readerCount = 0;
     private int writerCount = 0;
+    private Thread upgrader = null;
     private final Lock lock = new ReentrantLock();
     private final Lock readerLock = new ReaderLock();
     private final Lock writerLock = new WriterLock();
+    private final Lock upgradableReaderLock = new UpgradableReaderLock();
     private final Condition noWriter = lock.newCondition();
     private final Condition noReaders = lock.newCondition();
 
@@ -103,8 +110,9 @@ public class FairReaderWriterLock implements ReaderWriterLock {
         public void lock() {
             lock.lock();
             try {
-                // Release lock and block while a writer is active. Catch any interrupt and loop again
-                while (hasWriter()) {
+                // Release lock and block while a writer or an upgradable reader is active. Catch any
+                // interrupt and loop again
+                while (hasWriter() || hasUpgrader()) {
                     try {
                         noWriter.await();
                     } catch (InterruptedException ignored) { /* Catch the interrupt and wait again */ }
@@ -132,9 +140,9 @@ public class FairReaderWriterLock implements ReaderWriterLock {
         public void lockInterruptibly() throws InterruptedException {
             lock.lock();
             try {
-                // Release lock and block while a writer is active
+                // Release lock and block while a writer or an upgradable reader is active
                 // InterruptedException, if any, is rethrown to caller
-                while (hasWriter())
+                while (hasWriter() || hasUpgrader())
                     noWriter.await();
 
                 // A writer is active.
@@ -180,6 +188,93 @@ public class FairReaderWriterLock implements ReaderWriterLock {
         }
     }
 
+    private class UpgradableReaderLock implements Lock {
+        @Override
+        public void lock() {
+            lock.lock();
+            try {
+                // Release lock and block while a writer or another upgradable reader is active.
+                // Catch any interrupt and loop again
+                while (hasWriter() || hasUpgrader()) {
+                    try {
+                        noWriter.await();
+                    } catch (InterruptedException ignored) { /* Catch the interrupt and wait again */ }
+                }
+
+                upgrader = Thread.currentThread();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            lock.lock();
+            try {
+                // Release lock and block while a writer or another upgradable reader is active
+                // InterruptedException, if any, is rethrown to caller
+                while (hasWriter() || hasUpgrader())
+                    noWriter.await();
+
+                upgrader = Thread.currentThread();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void unlock() {
+            lock.lock();
+            try {
+                if (upgrader != Thread.currentThread())
+                    throw new IllegalStateException("Cannot unlock. No upgradable reader active");
+
+                upgrader = null;
+                noWriter.signalAll();       // Upgradable readers and writers wait on noWriter
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() { return lock.newCondition();}
+
+        // Succeeds only if no writer and no other upgradable reader is active
+        @Override
+        public boolean tryLock() {
+            lock.lock();
+            try {
+                if (hasWriter() || hasUpgrader())
+                    return false;
+
+                upgrader = Thread.currentThread();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            lock.lock();
+            try {
+                // Release lock and block while a writer or another upgradable reader is active,
+                // until the timeout expires. InterruptedException is rethrown to caller
+                long nanos = unit.toNanos(time);
+                while (hasWriter() || hasUpgrader()) {
+                    if (nanos <= 0)
+                        return false;
+                    nanos = noWriter.awaitNanos(nanos);
+                }
+
+                upgrader = Thread.currentThread();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     @Override
     // Delegates implementation of a reader lock to ReaderLock. All threads will get
     // the same instance of the lock
@@ -194,6 +289,46 @@ public class FairReaderWriterLock implements ReaderWriterLock {
         return writerLock;
     }
 
+    @Override
+    // All threads will get the same instance of the lock
+    public Lock getUpgradableReaderLock() {
+        return upgradableReaderLock;
+    }
+
+    @Override
+    public void upgrade() {
+        lock.lock();
+        try {
+            if (upgrader != Thread.currentThread())
+                throw new IllegalStateException("Cannot upgrade. No upgradable reader active");
+
+            // No writer can be active or waiting while the upgradable reader is held. Become the
+            // writer so that no more readers get in, then wait for the plain readers to drain.
+            // Interrupts are not lost, but the upgrade still completes
+            ++writerCount;
+            upgrader = null;
+            while (hasReaders())
+                noReaders.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void downgrade() {
+        lock.lock();
+        try {
+            if (!hasWriter()) throw new IllegalStateException("Cannot downgrade. No locking writer active");
+
+            // Become a reader before letting other threads in
+            ++readerCount;
+            --writerCount;
+            noWriter.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /* Package-private visibility for testing*/
     // condition queue predicate
     boolean hasReaders() {
@@ -204,4 +339,9 @@ public class FairReaderWriterLock implements ReaderWriterLock {
     boolean hasWriter() {
         return writerCount == 1;
     }
+
+    // condition queue predicate
+    boolean hasUpgrader() {
+        return upgrader != null;
+    }
 }
@@ -0,0 +1,356 @@
+package diranieh.blockingsync.readerwriterlocks;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A phase-fair reader-writer lock (Brandenburg and Anderson, 2009): read phases and write
+ * phases alternate whenever both readers and writers are waiting.
+ *
+ * {@link FairReaderWriterLock} stops new readers once a writer arrives, but readers that arrive
+ * behind a stream of writers wait for all of them. Here:
+ *  - a reader that arrives while a writer is active or waiting blocks until the end of the next
+ *    write phase. The releasing writer then admits every blocked reader at once, even if more
+ *    writers are waiting, so a reader waits for at most one write phase
+ *  - a writer waits for the read phase in progress to end. Readers that arrive after it wait
+ *    for its write phase, so the read phase cannot be extended and a writer waits for at most
+ *    one read phase (plus the phases of the writers ahead of it)
+ *  - writers are served in arrival order
+ *
+ * Readers are admitted by the releasing writer rather than by waking up and re-checking, so the
+ * next writer cannot slip in ahead of the readers it was meant to wait for.
+ *
+ * Neither lock is reentrant. A writer lock can be downgraded to a reader lock, which also
+ * starts the read phase of the readers waiting behind it. It does not implement
+ * {@link UpgradableReaderWriterLock}: an upgrading reader would need to overtake the writers
+ * waiting behind the read phase
+ */
+public class PhaseFairReaderWriterLock implements ReaderWriterLock {
+    private int readerCount = 0;            // active readers, including those admitted but not yet awake
+    private int readersWaiting = 0;         // readers blocked until the end of the next write phase
+    private boolean writerActive = false;
+    private final Queue<Thread> writersWaiting = new ArrayDeque<>();   // in arrival order
+    private long writePhase = 0;            // number of write phases ended, including abandoned ones
+    private final Lock lock = new ReentrantLock();
+    private final Lock readerLock = new ReaderLock();
+    private final Lock writerLock = new WriterLock();
+    private final Condition readPhaseStarted = lock.newCondition();
+    private final Condition writerTurn = lock.newCondition();
+
+    private class ReaderLock implements Lock {
+        @Override
+        public void lock() {
+            lock.lock();
+            try {
+                if (!hasWriter() && !hasWaitingWriters()) {
+                    ++readerCount;
+                    return;
+                }
+
+                // Wait for the end of the next write phase, which admits this reader
+                ++readersWaiting;
+                long phase = writePhase;
+                while (writePhase == phase)
+                    readPhaseStarted.awaitUninterruptibly();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            lock.lock();
+            try {
+                if (!hasWriter() && !hasWaitingWriters()) {
+                    ++readerCount;
+                    return;
+                }
+
+                // Wait for the end of the next write phase, which admits this reader
+                // InterruptedException, if any, is rethrown to caller
+                ++readersWaiting;
+                long phase = writePhase;
+                try {
+                    while (writePhase == phase)
+                        readPhaseStarted.await();
+                } catch (InterruptedException e) {
+                    withdrawReader(phase);
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void unlock() {
+            lock.lock();
+            try {
+                if (!hasReaders()) throw new IllegalStateException("Cannot unlock. No locking readers active");
+                releaseReader();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() { return lock.newCondition();}
+
+        // Succeeds only if no writer is active or waiting
+        @Override
+        public boolean tryLock() {
+            lock.lock();
+            try {
+                if (hasWriter() || hasWaitingWriters())
+                    return false;
+                ++readerCount;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Waits for the end of the next write phase, as lockInterruptibly() does, until the
+        // timeout expires
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            lock.lock();
+            try {
+                if (!hasWriter() && !hasWaitingWriters()) {
+                    ++readerCount;
+                    return true;
+                }
+
+                // InterruptedException, if any, is rethrown to caller
+                ++readersWaiting;
+                long phase = writePhase;
+                long nanos = unit.toNanos(time);
+                try {
+                    while (writePhase == phase) {
+                        if (nanos <= 0) {
+                            withdrawReader(phase);
+                            return false;
+                        }
+                        nanos = readPhaseStarted.awaitNanos(nanos);
+                    }
+                } catch (InterruptedException e) {
+                    withdrawReader(phase);
+                    throw e;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private class WriterLock implements Lock {
+        @Override
+        public void lock() {
+            lock.lock();
+            try {
+                // Wait for the writers ahead of this one, then for the read phase to end
+                Thread current = Thread.currentThread();
+                writersWaiting.add(current);
+                while (writersWaiting.peek() != current || hasWriter())
+                    writerTurn.awaitUninterruptibly();
+
+                writersWaiting.remove();
+                writerActive = true;
+                while (hasReaders())
+                    writerTurn.awaitUninterruptibly();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            lock.lock();
+            try {
+                // Wait for the writers ahead of this one, then for the read phase to end
+                // InterruptedException, if any, is rethrown to caller
+                Thread current = Thread.currentThread();
+                writersWaiting.add(current);
+                try {
+                    while (writersWaiting.peek() != current || hasWriter())
+                        writerTurn.await();
+                } catch (InterruptedException e) {
+                    withdrawWriter(current);
+                    throw e;
+                }
+
+                writersWaiting.remove();
+                writerActive = true;
+                try {
+                    while (hasReaders())
+                        writerTurn.await();
+                } catch (InterruptedException e) {
+                    // Abandon the write phase: it ends without having written
+                    endWritePhase(0);
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void unlock() {
+            lock.lock();
+            try {
+                if (!hasWriter()) throw new IllegalStateException("Cannot unlock. No locking writer active");
+                endWritePhase(0);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() { return lock.newCondition();}
+
+        // Succeeds only if there is no reader and no writer, active or waiting
+        @Override
+        public boolean tryLock() {
+            lock.lock();
+            try {
+                if (hasReaders() || hasWriter() || hasWaitingWriters())
+                    return false;
+                writerActive = true;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Waits for the writers ahead of this one and then for the read phase to end, as
+        // lockInterruptibly() does, until the timeout expires
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            lock.lock();
+            try {
+                // InterruptedException, if any, is rethrown to caller
+                Thread current = Thread.currentThread();
+                long nanos = unit.toNanos(time);
+                writersWaiting.add(current);
+                try {
+                    while (writersWaiting.peek() != current || hasWriter()) {
+                        if (nanos <= 0) {
+                            withdrawWriter(current);
+                            return false;
+                        }
+                        nanos = writerTurn.awaitNanos(nanos);
+                    }
+                } catch (InterruptedException e) {
+                    withdrawWriter(current);
+                    throw e;
+                }
+
+                writersWaiting.remove();
+                writerActive = true;
+                try {
+                    while (hasReaders()) {
+                        if (nanos <= 0) {
+                            endWritePhase(0);       // abandon the write phase
+                            return false;
+                        }
+                        nanos = writerTurn.awaitNanos(nanos);
+                    }
+                } catch (InterruptedException e) {
+                    endWritePhase(0);
+                    throw e;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    // All threads will get the same instance of the lock
+    public Lock getReaderLock() {
+        return readerLock;
+    }
+
+    @Override
+    // All threads will get the same instance of the lock
+    public Lock gerWriterLock() {
+        return writerLock;
+    }
+
+    @Override
+    public void downgrade() {
+        lock.lock();
+        try {
+            if (!hasWriter()) throw new IllegalStateException("Cannot downgrade. No locking writer active");
+
+            // The calling thread joins the read phase it starts
+            endWritePhase(1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Package-private visibility for testing*/
+    // condition queue predicate
+    boolean hasReaders() {
+        return readerCount > 0;
+    }
+
+    // condition queue predicate
+    boolean hasWriter() {
+        return writerActive;
+    }
+
+    // condition queue predicate
+    boolean hasWaitingWriters() {
+        return !writersWaiting.isEmpty();
+    }
+
+    /* Implementation details */
+    // Ends the write phase and hands the writer lock to the next writer in line, which will wait
+    // for the read phase started here. Called with lock held
+    private void endWritePhase(int extraReaders) {
+        writerActive = false;
+        writerTurn.signalAll();
+        startReadPhase(extraReaders);
+    }
+
+    // Admits, in one step, every reader waiting for the end of the write phase (plus the given
+    // number of extra readers). Called with lock held
+    private void startReadPhase(int extraReaders) {
+        ++writePhase;
+        readerCount += readersWaiting + extraReaders;
+        readersWaiting = 0;
+        readPhaseStarted.signalAll();
+    }
+
+    // Gives up waiting for the write phase that started at the given phase. Called with lock held
+    private void withdrawReader(long phase) {
+        if (writePhase == phase)
+            --readersWaiting;           // not admitted yet: withdraw
+        else
+            releaseReader();            // admitted meanwhile: give it back
+    }
+
+    // Leaves the queue of waiting writers. Readers that only waited for this writer get in.
+    // Called with lock held
+    private void withdrawWriter(Thread writer) {
+        writersWaiting.remove(writer);
+        writerTurn.signalAll();
+        if (!hasWriter() && !hasWaitingWriters())
+            startReadPhase(0);
+    }
+
+    // Called with lock held
+    private void releaseReader() {
+        --readerCount;
+        if (!hasReaders())
+            writerTurn.signalAll();
+    }
+}
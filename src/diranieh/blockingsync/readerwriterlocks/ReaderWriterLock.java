@@ -2,8 +2,18 @@ package diranieh.blockingsync.readerwriterlocks;
 
 import java.util.concurrent.locks.Lock;
 
-/* Implemented by {@link FairReaderWriterLock} and {@link SimpleReaderWriterLock} */
+/**
+ * Implemented by {@link FairReaderWriterLock}, {@link SimpleReaderWriterLock},
+ * {@link BigReaderWriterLock} and {@link PhaseFairReaderWriterLock}
+ *
+ * A thread holding the writer lock can call downgrade() to turn it into a plain reader lock
+ * without releasing it in between. Locks that also let a reader turn into the writer implement
+ * {@link UpgradableReaderWriterLock}
+ */
 public interface ReaderWriterLock {
     Lock getReaderLock();
     Lock gerWriterLock();
+
+    // Turns the writer lock into a plain reader lock. Release with getReaderLock().unlock()
+    void downgrade();
 }
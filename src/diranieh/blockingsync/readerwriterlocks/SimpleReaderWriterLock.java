@@ -12,16 +12,21 @@ import java.util.concurrent.locks.ReentrantLock;
  * semantics to {@link ReentrantLock}.
  *
  * <p>This class does not impose a reader or writer preference
- * ordering for lock access. This class does not support upgrading
- * a read lock to a write lock, or downgrading a write lock to a
- * read lock
+ * ordering for lock access.
+ *
+ * An upgradable reader coexists with plain readers but excludes writers
+ * and other upgradable readers, so upgrade() only waits for the plain
+ * readers to leave. Plain readers keep getting in while it waits. A
+ * writer lock can be downgraded to a reader lock
  */
-public class SimpleReaderWriterLock implements ReaderWriterLock {
+public class SimpleReaderWriterLock implements UpgradableReaderWriterLock {
     private int readerCount = 0;
     private int writerCount = 0;
+    private Thread upgrader = null;
     private final Lock lock = new ReentrantLock();
     private final Lock readerLock = new ReaderLock();
     private final Lock writerLock = new WriterLock();
+    private final Lock upgradableReaderLock = new UpgradableReaderLock();
     private final Condition noWriter = lock.newCondition();
     private final Condition noReaders = lock.newCondition();
 
@@ -97,17 +102,12 @@ public class SimpleReaderWriterLock implements ReaderWriterLock {
         public void lock() {
             lock.lock();
             try {
-                // Release lock and block while readers are active. Catch any interrupt and loop again
-                while (hasReaders()) {
-                    try {
-                        noReaders.await();
-                    } catch (InterruptedException ignored) { /* Catch the interrupt and wait again */ }
-                }
-
-                // Release lock and block while a writer is active. Catch any interrupt and loop again
-                while (hasWriter()) {
+                // Release lock and block while readers, an upgradable reader or a writer are active.
+                // All three are checked on every wake up: readers may come back while waiting for a
+                // writer to finish. Catch any interrupt and loop again
+                while (hasReaders() || hasUpgrader() || hasWriter()) {
                     try {
-                        noWriter.await();
+                        awaitReadersOrWriter();
                     } catch (InterruptedException ignored) { /* Catch the interrupt and wait again */ }
                 }
 
@@ -122,15 +122,10 @@ public class SimpleReaderWriterLock implements ReaderWriterLock {
         public void lockInterruptibly() throws InterruptedException {
             lock.lock();
             try {
-                // Release lock and block while readers are active
-                // InterruptedException is rethrown to caller
-                while (hasReaders())
-                    noReaders.await();
-
-                // Release lock and block while a writer is active
+                // Release lock and block while readers, an upgradable reader or a writer are active
                 // InterruptedException is rethrown to caller
-                while (hasWriter())
-                    noWriter.await();
+                while (hasReaders() || hasUpgrader() || hasWriter())
+                    awaitReadersOrWriter();
 
                 // A writer is active
                 ++writerCount;
@@ -167,6 +162,93 @@ public class SimpleReaderWriterLock implements ReaderWriterLock {
         }
     }
 
+    private class UpgradableReaderLock implements Lock {
+        @Override
+        public void lock() {
+            lock.lock();
+            try {
+                // Release lock and block while a writer or another upgradable reader is active.
+                // Catch any interrupt and loop again
+                while (hasWriter() || hasUpgrader()) {
+                    try {
+                        noWriter.await();
+                    } catch (InterruptedException ignored) { /* Catch the interrupt and wait again */ }
+                }
+
+                upgrader = Thread.currentThread();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            lock.lock();
+            try {
+                // Release lock and block while a writer or another upgradable reader is active
+                // InterruptedException is rethrown to caller
+                while (hasWriter() || hasUpgrader())
+                    noWriter.await();
+
+                upgrader = Thread.currentThread();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void unlock() {
+            lock.lock();
+            try {
+                if (upgrader != Thread.currentThread())
+                    throw new IllegalStateException("Cannot unlock. No upgradable reader active");
+
+                upgrader = null;
+                noWriter.signalAll();           // Upgradable readers and writers wait on noWriter
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() { return lock.newCondition();}
+
+        // Succeeds only if no writer and no other upgradable reader is active
+        @Override
+        public boolean tryLock() {
+            lock.lock();
+            try {
+                if (hasWriter() || hasUpgrader())
+                    return false;
+
+                upgrader = Thread.currentThread();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            lock.lock();
+            try {
+                // Release lock and block while a writer or another upgradable reader is active,
+                // until the timeout expires. InterruptedException is rethrown to caller
+                long nanos = unit.toNanos(time);
+                while (hasWriter() || hasUpgrader()) {
+                    if (nanos <= 0)
+                        return false;
+                    nanos = noWriter.awaitNanos(nanos);
+                }
+
+                upgrader = Thread.currentThread();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     @Override
     // Delegates implementation of a reader lock to ReaderLock. All threads will get
     // the same instance of the lock
@@ -181,6 +263,46 @@ public class SimpleReaderWriterLock implements ReaderWriterLock {
         return writerLock;
     }
 
+    @Override
+    // All threads will get the same instance of the lock
+    public Lock getUpgradableReaderLock() {
+        return upgradableReaderLock;
+    }
+
+    @Override
+    public void upgrade() {
+        lock.lock();
+        try {
+            if (upgrader != Thread.currentThread())
+                throw new IllegalStateException("Cannot upgrade. No upgradable reader active");
+
+            // No writer can be active while the upgradable reader is held, so only plain readers
+            // need to leave. Interrupts are not lost, but the upgrade still completes
+            while (hasReaders())
+                noReaders.awaitUninterruptibly();
+
+            upgrader = null;
+            ++writerCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void downgrade() {
+        lock.lock();
+        try {
+            if (!hasWriter()) throw new IllegalStateException("Cannot downgrade. No locking writer active");
+
+            // Become a reader before letting other threads in
+            ++readerCount;
+            --writerCount;
+            noWriter.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /* Package-private visibility for testing*/
     // condition queue predicate
     boolean hasReaders() {
@@ -191,4 +313,19 @@ public class SimpleReaderWriterLock implements ReaderWriterLock {
     boolean hasWriter() {
         return writerCount == 1;
     }
+
+    // condition queue predicate
+    boolean hasUpgrader() {
+        return upgrader != null;
+    }
+
+    /* Implementation details */
+    // A writer waits on noReaders only while plain readers alone keep it out. A writer or an
+    // upgradable reader (which may turn into a writer) signals noWriter when it leaves
+    private void awaitReadersOrWriter() throws InterruptedException {
+        if (hasWriter() || hasUpgrader())
+            noWriter.await();
+        else
+            noReaders.await();
+    }
 }
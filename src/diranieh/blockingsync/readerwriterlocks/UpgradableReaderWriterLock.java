@@ -0,0 +1,20 @@
+package diranieh.blockingsync.readerwriterlocks;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Implemented by {@link FairReaderWriterLock} and {@link SimpleReaderWriterLock}
+ *
+ * Besides plain reader and writer locks, a thread may hold the upgradable reader lock: it is a
+ * reader lock that coexists with plain readers but is held by at most one thread at a time, so
+ * that its holder can later call upgrade() to turn it into the writer lock without releasing it
+ * in between. No other writer can get in between the read and the write
+ */
+public interface UpgradableReaderWriterLock extends ReaderWriterLock {
+    // At most one thread holds the upgradable reader lock. It does not exclude plain readers
+    Lock getUpgradableReaderLock();
+
+    // Turns the calling thread's upgradable reader lock into the writer lock, waiting for plain
+    // readers to leave. Release with gerWriterLock().unlock() or downgrade()
+    void upgrade();
+}
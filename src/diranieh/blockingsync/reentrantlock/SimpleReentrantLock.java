@@ -1,104 +1,161 @@
 package diranieh.blockingsync.reentrantlock;
 
+import diranieh.blockingsync.QueuedSynchronizer;
+
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
 /* SimpleReentrantLock implements a re-entrant lock. A lock is re-entrant if it can
- be acquired multiple times by the same thread. The holdCount field is incremented each
+ be acquired multiple times by the same thread. The hold count is incremented each
   time the lock is acquired, and decremented each time the lock is released. The lock
-  is free when holdCount is zero.
-  Class fields ownerId and holdCount constitute the state and must therefore be protected
-  from concurrent access.
+  is free when the hold count is zero.
+
+  The owner and the hold count are the state of a QueuedSynchronizer: waiting threads
+  queue up in FIFO order and park, and each release unparks only the first queued thread
+  rather than waking every waiter to compete for the lock (as notifyAll on a monitor would).
+
+  The lock is either:
+   - barging (the default): a thread that finds the lock free takes it even if other threads
+     are queued. This gives the best throughput, since the lock is not left idle while the
+     woken thread is scheduled, but a queued thread can be overtaken
+   - fair: a thread only takes a free lock if no other thread is queued, so threads acquire
+     the lock in arrival order and the wait of each thread is bounded by the queue ahead of it.
+     tryLock() (without a timeout) still barges, as it does in java.util.concurrent
+
+  Conditions behave like those of java.util.concurrent.locks.ReentrantLock: await() releases
+  all holds and reacquires them before returning
 */
 public class SimpleReentrantLock implements Lock {
-    private final Object lock;
-    private long ownerId = -1;
-    private long holdCount = 0;
+    private final Sync sync;
 
     public SimpleReentrantLock() {
-        lock = new Object();
+        this(false);
     }
 
-    @Override
-    public void lock() {
-        long threadId = Thread.currentThread().getId();     // local variable. No sync needed :)
-        synchronized (lock) {
-            if (ownerId == threadId) {
-                holdCount++;
-                return;
-            }
-            while (!isOwner()) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException ignored) { /* Ignore exception and retry to acquire lock*/ }
-            }
+    public SimpleReentrantLock(boolean fair) {
+        sync = new Sync(fair);
+    }
+
+    private static final class Sync extends QueuedSynchronizer {
+        private final boolean fair;
 
-            ownerId = threadId;
-            holdCount++;
+        Sync(boolean fair) {
+            this.fair = fair;
         }
-    }
 
-    @Override
-    public void lockInterruptibly() throws InterruptedException {
-        long threadId = Thread.currentThread().getId();     // local variable. No sync needed :)
-        synchronized (lock) {
-            if (ownerId == threadId) {
-                holdCount++;
-                return;
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            Thread current = Thread.currentThread();
+            int holdCount = getState();
+            if (holdCount == 0) {
+                if ((fair && hasQueuedPredecessors()) || !compareAndSetState(0, acquires))
+                    return false;
+                setExclusiveOwner(current);
+                return true;
             }
-            while (!isOwner()) {
-                lock.wait();
+
+            // Reentry: only the owner changes the state while it holds the lock
+            if (current == getExclusiveOwner()) {
+                int next = holdCount + acquires;
+                if (next < 0)
+                    throw new Error("Maximum lock count exceeded");
+                setState(next);
+                return true;
             }
+            return false;
+        }
 
-            ownerId = threadId;
-            holdCount++;
+        // Barging attempt used by tryLock(), whatever the fairness
+        boolean bargingTryAcquire() {
+            Thread current = Thread.currentThread();
+            int holdCount = getState();
+            if (holdCount == 0) {
+                if (!compareAndSetState(0, 1))
+                    return false;
+                setExclusiveOwner(current);
+                return true;
+            }
+            return current == getExclusiveOwner() && tryAcquire(1);
         }
-    }
 
-    @Override
-    public void unlock() {
-        synchronized (lock) {
-            if (holdCount == 0)
+        @Override
+        protected boolean tryRelease(int releases) {
+            if (getState() == 0)
                 throw new IllegalMonitorStateException("lock was not called");
-
-            if (ownerId != Thread.currentThread().getId())
+            if (Thread.currentThread() != getExclusiveOwner())
                 throw new IllegalMonitorStateException("lock not owned by this thread");
 
-            --holdCount;
-            if (holdCount == 0) {
-                ownerId = -1;
-                lock.notifyAll();
-            }
+            int holdCount = getState() - releases;
+            if (holdCount == 0)
+                setExclusiveOwner(null);
+            setState(holdCount);        // volatile write publishes the owner change
+            return holdCount == 0;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getExclusiveOwner() == Thread.currentThread();
         }
+
+        int getHoldCount() {
+            return isHeldExclusively() ? getState() : 0;
+        }
+
+        long getOwnerId() {
+            Thread owner = getState() == 0 ? null : getExclusiveOwner();
+            return owner == null ? -1 : owner.getId();
+        }
+    }
+
+    @Override
+    public void lock() {
+        sync.acquire(1);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        sync.acquireInterruptibly(1);
+    }
+
+    @Override
+    public void unlock() {
+        sync.release(1);
     }
 
     @Override
     public boolean tryLock() {
-        throw new UnsupportedOperationException("Not implemented yet");
+        return sync.bargingTryAcquire();
     }
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        throw new UnsupportedOperationException("Not implemented yet");
+        return sync.tryAcquireNanos(1, unit.toNanos(time));
     }
 
     @Override
     public Condition newCondition() {
-        throw new UnsupportedOperationException("Not implemented yet");
+        return sync.newCondition();
+    }
+
+    public boolean isFair() {
+        return sync.fair;
+    }
+
+    public boolean hasQueuedThreads() {
+        return sync.hasQueuedThreads();
+    }
+
+    public int getQueueLength() {
+        return sync.getQueueLength();
     }
 
     /* Package-private visibility for testing*/
     long getOwnerId() {
-        return ownerId;
+        return sync.getOwnerId();
     }
 
     long getHoldCount() {
-        return holdCount;
-    }
-
-    /* Implementation details */
-    private boolean isOwner() {     // condition queue predicate
-        return ownerId == -1 || ownerId == Thread.currentThread().getId();
+        return sync.getHoldCount();
     }
 }
@@ -0,0 +1,328 @@
+package diranieh.blockingsync.semaphore;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AdmissionSemaphore limits the total weight of requests in flight, for putting in front of a
+ * shared structure or service so that overload queues up outside it instead of collapsing it.
+ *
+ * Three things set it apart from {@link SimpleSemaphore}:
+ *  - weighted permits: a request acquires as many permits as it is heavy. A request heavier than
+ *    the current limit is admitted alone, once nothing else is in flight, so it cannot wait forever
+ *  - priority classes: waiters queue in FIFO order within their {@link Priority}, and a waiter is
+ *    only admitted once every waiter of a higher priority has been. Arriving threads do not barge
+ *    ahead of queued ones, and a heavy waiter at the head holds back those behind it
+ *  - an adaptive limit (AIMD). release(permits, latencyNanos) reports how long the request took.
+ *    The semaphore tracks the lowest latency it has seen; a sample above latencyTolerance times
+ *    that minimum means requests are queueing downstream, and the limit is cut by BACKOFF_RATIO
+ *    (multiplicative decrease). The requests in flight when congestion starts all report slow
+ *    samples, so the limit is cut at most once per sampled latency, like TCP's once per round
+ *    trip. Otherwise, if the limit is at least half in use, it grows by 1 / limit per sample,
+ *    i.e. by about one permit per limit's worth of requests (additive increase). The limit stays
+ *    within [minLimit, maxLimit]. The minimum latency is kept since construction, so this suits
+ *    requests whose cost without queueing is stable. release(permits) gives no sample
+ *
+ * Acquiring while nobody waits and the request fits, and releasing, are CASes on the in-flight
+ * count (and, with a sample, on the limit); no lock is taken. A request that does not fit parks
+ * in a lock-free queue of its priority. Whoever frees permits or raises the limit (and every new
+ * waiter, once queued) then admits waiters from the head of the queues for as long as they fit:
+ * it reserves the waiter's permits by CAS, marks the waiter admitted by CAS and unparks just that
+ * thread. A waiter that times out or is interrupted marks itself cancelled by CAS; if it loses
+ * that race it has already been admitted, and a timed acquire then reports success while an
+ * interrupted one gives the permits back before throwing.
+ */
+public class AdmissionSemaphore implements Semaphore {
+    public enum Priority { HIGH, NORMAL, LOW }
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+    private static final int LIMIT_SHIFT = 16;          // limit is kept in 16.16 fixed point
+
+    private static final int WAITING = 0;
+    private static final int ADMITTED = 1;
+    private static final int CANCELLED = 2;
+
+    private static final class Waiter {
+        final Thread thread = Thread.currentThread();
+        final int permits;
+        final AtomicInteger status = new AtomicInteger(WAITING);
+
+        Waiter(int permits) {
+            this.permits = permits;
+        }
+    }
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);           // permits held
+    private final AtomicLong scaledLimit;                                 // limit << LIMIT_SHIFT
+    private final AtomicLong minLatency = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+    private final AtomicInteger waiterCount = new AtomicInteger(0);       // waiters neither admitted nor cancelled
+    private final ConcurrentLinkedQueue<Waiter>[] queues;                 // one per priority
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+
+    // A fixed limit: latency samples are ignored
+    public AdmissionSemaphore(int limit) {
+        this(limit, limit, limit, DEFAULT_LATENCY_TOLERANCE);
+    }
+
+    public AdmissionSemaphore(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, DEFAULT_LATENCY_TOLERANCE);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public AdmissionSemaphore(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Limits must satisfy 0 < minLimit <= initialLimit <= maxLimit: "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        if (maxLimit > (Integer.MAX_VALUE >> 1))
+            throw new IllegalArgumentException("maxLimit is too large: " + maxLimit);
+        if (!(latencyTolerance > 1.0))
+            throw new IllegalArgumentException("latencyTolerance must be greater than 1: " + latencyTolerance);
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        scaledLimit = new AtomicLong((long) initialLimit << LIMIT_SHIFT);
+        queues = (ConcurrentLinkedQueue<Waiter>[]) new ConcurrentLinkedQueue[Priority.values().length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /* Semaphore: requests of NORMAL priority */
+    @Override
+    public void acquire(int permits) {
+        acquire(permits, Priority.NORMAL);
+    }
+
+    @Override
+    public void acquireInterruptibly(int permits) throws InterruptedException {
+        acquireInterruptibly(permits, Priority.NORMAL);
+    }
+
+    // Succeeds only if nobody is waiting and the permits fit now
+    @Override
+    public boolean tryAcquire(int permits) {
+        checkPermits(permits);
+        return waiterCount.get() == 0 && tryReserve(permits);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(permits, Priority.NORMAL, timeout, unit);
+    }
+
+    @Override
+    public void release(int permits) {
+        checkPermits(permits);
+        int current;
+        do {
+            current = inFlight.get();
+            if (permits > current)
+                throw new IllegalMonitorStateException("semaphore was not acquired");
+        } while (!inFlight.compareAndSet(current, current - permits));
+
+        admitWaiters();
+    }
+
+    // Permits that can be acquired right now without exceeding the limit
+    @Override
+    public int availablePermits() {
+        return Math.max(0, getLimit() - inFlight.get());
+    }
+
+    /* Prioritized and latency-aware requests */
+    // Waits ignoring interrupts, and restores the interrupt status once admitted
+    public void acquire(int permits, Priority priority) {
+        checkPermits(permits);
+        if (waiterCount.get() == 0 && tryReserve(permits))
+            return;
+
+        try {
+            awaitAdmission(new Waiter(permits), priority, false, false, 0);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);         // cannot happen: not interruptible
+        }
+    }
+
+    public void acquireInterruptibly(int permits, Priority priority) throws InterruptedException {
+        checkPermits(permits);
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (waiterCount.get() == 0 && tryReserve(permits))
+            return;
+
+        awaitAdmission(new Waiter(permits), priority, true, false, 0);
+    }
+
+    public boolean tryAcquire(int permits, Priority priority, long timeout, TimeUnit unit) throws InterruptedException {
+        checkPermits(permits);
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (waiterCount.get() == 0 && tryReserve(permits))
+            return true;
+
+        long nanos = unit.toNanos(timeout);
+        return nanos > 0 && awaitAdmission(new Waiter(permits), priority, true, true, nanos);
+    }
+
+    // Releases the permits and reports how long the request they admitted took, which adapts the limit
+    public void release(int permits, long latencyNanos) {
+        checkPermits(permits);
+        if (latencyNanos < 0)
+            throw new IllegalArgumentException("latencyNanos must not be negative: " + latencyNanos);
+
+        if (minLimit < maxLimit)
+            adaptLimit(latencyNanos);
+        release(permits);
+    }
+
+    public int getLimit() {
+        return (int) (scaledLimit.get() >>> LIMIT_SHIFT);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueueLength() {
+        return waiterCount.get();
+    }
+
+    /* Package-private visibility for testing*/
+    long getMinLatency() {
+        return minLatency.get();
+    }
+
+    /* Implementation details */
+    // Reserves the permits if they fit under the limit, or if nothing is in flight
+    private boolean tryReserve(int permits) {
+        while (true) {
+            int current = inFlight.get();
+            if (current > 0 && current + permits > getLimit())
+                return false;
+            if (inFlight.compareAndSet(current, current + permits))
+                return true;
+        }
+    }
+
+    private boolean awaitAdmission(Waiter waiter, Priority priority, boolean interruptible, boolean timed, long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        waiterCount.incrementAndGet();
+        queues[priority.ordinal()].add(waiter);
+
+        // Permits may have been freed before the waiter was visible in the queue
+        admitWaiters();
+
+        boolean interrupted = false;
+        while (waiter.status.get() == WAITING) {
+            long remaining = deadline - System.nanoTime();
+            if (timed && remaining <= 0)
+                return cancel(waiter, priority);
+
+            if (timed)
+                LockSupport.parkNanos(this, remaining);
+            else
+                LockSupport.park(this);
+
+            if (Thread.interrupted()) {
+                if (interruptible) {
+                    if (!cancel(waiter, priority))
+                        throw new InterruptedException();
+                    release(waiter.permits);            // admitted meanwhile: give the permits back
+                    throw new InterruptedException();
+                }
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        return true;
+    }
+
+    // Returns true if the waiter had been admitted before it could be cancelled
+    private boolean cancel(Waiter waiter, Priority priority) {
+        if (!waiter.status.compareAndSet(WAITING, CANCELLED))
+            return true;
+
+        waiterCount.decrementAndGet();
+        queues[priority.ordinal()].remove(waiter);
+
+        // A cancelled head may have been holding back smaller waiters behind it
+        admitWaiters();
+        return false;
+    }
+
+    // Admits waiters from the head of the queues, highest priority first, for as long as their
+    // permits fit. Several threads may run this at once: a waiter is only admitted by the thread
+    // whose CAS moves it from WAITING, and the others give back the permits they reserved for it
+    private void admitWaiters() {
+        for (ConcurrentLinkedQueue<Waiter> queue : queues) {
+            Waiter head;
+            while ((head = queue.peek()) != null) {
+                if (head.status.get() != WAITING) {
+                    queue.remove(head);         // admitted or cancelled by another thread
+                    continue;
+                }
+                if (!tryReserve(head.permits))
+                    return;                     // FIFO: nobody overtakes a waiter that does not fit
+
+                if (head.status.compareAndSet(WAITING, ADMITTED)) {
+                    waiterCount.decrementAndGet();
+                    queue.remove(head);
+                    LockSupport.unpark(head.thread);
+                } else {
+                    inFlight.addAndGet(-head.permits);
+                    queue.remove(head);
+                }
+            }
+        }
+    }
+
+    // AIMD on the limit, driven by how far the latency sample is above the lowest seen
+    private void adaptLimit(long latencyNanos) {
+        long min = minLatency.get();
+        while (latencyNanos < min && !minLatency.compareAndSet(min, latencyNanos)) {
+            min = minLatency.get();
+        }
+        min = Math.min(min, latencyNanos);
+
+        boolean congested = latencyNanos > min * latencyTolerance;
+        if (congested) {
+            long now = System.nanoTime();
+            long last = lastDecrease.get();
+            if (now - last < latencyNanos || !lastDecrease.compareAndSet(last, now))
+                return;             // the limit was cut within the last round trip
+        }
+
+        long minScaled = (long) minLimit << LIMIT_SHIFT;
+        long maxScaled = (long) maxLimit << LIMIT_SHIFT;
+        while (true) {
+            long current = scaledLimit.get();
+            long next;
+            if (congested) {
+                next = Math.max(minScaled, (long) (current * BACKOFF_RATIO));
+            } else {
+                // Only grow a limit that is being used: an idle system says nothing about capacity
+                int limit = (int) (current >>> LIMIT_SHIFT);
+                if (inFlight.get() * 2 < limit)
+                    return;
+                next = Math.min(maxScaled, current + (1L << LIMIT_SHIFT) / limit);
+            }
+            if (next == current || scaledLimit.compareAndSet(current, next))
+                return;
+        }
+    }
+
+    private void checkPermits(int permits) {
+        if (permits <= 0 || permits > maxLimit)
+            throw new IllegalArgumentException("permits must be in the range [1, " + maxLimit + "]: " + permits);
+    }
+}
@@ -1,7 +1,39 @@
 package diranieh.blockingsync.semaphore;
 
-/* Implemented by {@link SimpleSemaphore} */
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implemented by {@link SimpleSemaphore}
+ *
+ * acquire() waits for permits ignoring interrupts, but restores the thread's interrupt status
+ * once it returns. acquireInterruptibly() and the timed tryAcquire() throw InterruptedException
+ * instead. The single-permit methods are shorthands for their multi-permit versions
+ */
 public interface Semaphore {
-    void acquire();
-    void release();
+    void acquire(int permits);
+    void acquireInterruptibly(int permits) throws InterruptedException;
+    boolean tryAcquire(int permits);
+    boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException;
+    void release(int permits);
+    int availablePermits();
+
+    default void acquire() {
+        acquire(1);
+    }
+
+    default void acquireInterruptibly() throws InterruptedException {
+        acquireInterruptibly(1);
+    }
+
+    default boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    default boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(1, timeout, unit);
+    }
+
+    default void release() {
+        release(1);
+    }
 }
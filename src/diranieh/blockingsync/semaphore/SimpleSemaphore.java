@@ -1,50 +1,134 @@
 package diranieh.blockingsync.semaphore;
 
-/* SimpleSemaphore shows how to implement a basic semaphore.
- Start by identifying the condition predicate; number of available slots must be less
- than total capacity. Condition predicate implies an invariant which is totalCapacity and
- a used-slot counter that is incremented/decremented on acquire/release.
- This class has identical structure to  {@link SimpleReentrantLock} class
-*/
+import diranieh.blockingsync.QueuedSynchronizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimpleSemaphore is a counting semaphore built on {@link QueuedSynchronizer} in shared mode, in
+ * the same way as {@link diranieh.blockingsync.reentrantlock.SimpleReentrantLock}.
+ *
+ * The synchronizer state is the number of free slots. Acquiring and releasing is a CAS on that
+ * count, so while slots are available no thread blocks or takes a monitor. A thread that finds
+ * too few slots waits in the synchronizer's FIFO queue, and a release wakes only the first
+ * queued thread; if enough slots are left after it takes its share, it wakes the next one, and
+ * so on. A release therefore wakes as many threads as it can satisfy rather than all of them.
+ *
+ * Like the locks, the semaphore is barging by default: an arriving thread takes free slots even
+ * if others are queued, which keeps throughput high but lets a stream of small acquires overtake
+ * a queued large one. A fair semaphore hands out slots strictly in arrival order.
+ *
+ * Releasing more slots than are in use throws IllegalMonitorStateException
+ */
 public class SimpleSemaphore implements Semaphore {
-    private final Object lock = new Object();
+    private final Sync sync;
     private final int totalCapacity;
-    private  int slotsUsed;
+
+    private static final class Sync extends QueuedSynchronizer {
+        private final int totalCapacity;
+        private final boolean fair;
+
+        Sync(int totalCapacity, boolean fair) {
+            this.totalCapacity = totalCapacity;
+            this.fair = fair;
+            setState(totalCapacity);
+        }
+
+        @Override
+        protected int tryAcquireShared(int permits) {
+            while (true) {
+                if (fair && hasQueuedPredecessors())
+                    return -1;
+
+                int available = getState();
+                int remaining = available - permits;
+                if (remaining < 0 || compareAndSetState(available, remaining))
+                    return remaining;
+            }
+        }
+
+        // Barging attempt used by tryAcquire(), whatever the fairness
+        boolean bargingTryAcquire(int permits) {
+            while (true) {
+                int available = getState();
+                if (available < permits)
+                    return false;
+                if (compareAndSetState(available, available - permits))
+                    return true;
+            }
+        }
+
+        @Override
+        protected boolean tryReleaseShared(int permits) {
+            while (true) {
+                int available = getState();
+                if (permits > totalCapacity - available)
+                    throw new IllegalMonitorStateException("semaphore was not acquired");
+                if (compareAndSetState(available, available + permits))
+                    return true;
+            }
+        }
+
+        int getAvailable() {
+            return getState();
+        }
+    }
 
     public SimpleSemaphore(int totalCapacity) {
+        this(totalCapacity, false);
+    }
+
+    public SimpleSemaphore(int totalCapacity, boolean fair) {
+        if (totalCapacity <= 0)
+            throw new IllegalArgumentException("totalCapacity must be positive: " + totalCapacity);
+
         this.totalCapacity = totalCapacity;
+        sync = new Sync(totalCapacity, fair);
     }
 
     @Override
-    public void acquire() {
-        synchronized (lock) {
-            while( !hasCapacity()) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException ignored) { /* Ignore and retry */ }
-            }
+    public void acquire(int permits) {
+        checkPermits(permits);
+        sync.acquireShared(permits);
+    }
 
-            ++slotsUsed;
-        }
+    @Override
+    public void acquireInterruptibly(int permits) throws InterruptedException {
+        checkPermits(permits);
+        sync.acquireSharedInterruptibly(permits);
+    }
+
+    // Always barges: takes the slots if they are free now, even on a fair semaphore
+    @Override
+    public boolean tryAcquire(int permits) {
+        checkPermits(permits);
+        return sync.bargingTryAcquire(permits);
     }
 
     @Override
-    public void release() {
-        synchronized (lock) {
-            // Check if semaphore was actually acquired
-            if (slotsUsed == 0)
-                throw new IllegalMonitorStateException("semaphore was not acquired");
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        checkPermits(permits);
+        return sync.tryAcquireSharedNanos(permits, unit.toNanos(timeout));
+    }
 
-            --slotsUsed;
+    @Override
+    public void release(int permits) {
+        checkPermits(permits);
+        sync.releaseShared(permits);
+    }
 
-            // One space available for any waiting thread
-            lock.notifyAll();
-        }
+    @Override
+    public int availablePermits() {
+        return sync.getAvailable();
     }
 
-    // Condition queue predicate
-    private boolean hasCapacity() {
-        return slotsUsed < totalCapacity ;
+    public boolean hasQueuedThreads() {
+        return sync.hasQueuedThreads();
+    }
+
+    // Estimate: the queue may change while it is traversed
+    public int getQueueLength() {
+        return sync.getQueueLength();
     }
 
     /* Used for testing */
@@ -53,6 +137,12 @@ public class SimpleSemaphore implements Semaphore {
     }
 
     int getSlotsUsed() {
-        return slotsUsed;
+        return totalCapacity - sync.getAvailable();
+    }
+
+    /* Implementation details */
+    private void checkPermits(int permits) {
+        if (permits < 0 || permits > totalCapacity)
+            throw new IllegalArgumentException("permits must be in the range [0, " + totalCapacity + "]: " + permits);
     }
 }
@@ -1,8 +1,9 @@
 package diranieh.concurrentHashing;
 
+import diranieh.utilities.StripedCounter;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract base class implementation for closed-addressing hash set implementations
@@ -28,15 +29,16 @@ public abstract class BaseHashSet<E> {
     final int CLEAR_MSB = 0x7FFFFFFF;
     // The underlying data structure is an array of lists
     protected List<E>[] table;
-    protected AtomicInteger size;
+    protected StripedCounter size;
 
     /* Lock striping ensures synchronized access to individual hashtable buckets,
     but the size parameter is a shared variable modified by different threads that
-    must be protected, hence the use of an AtomicInteger  */
+    must be protected. A single AtomicInteger would be updated by every add and remove
+    whatever the stripe, hence the use of a StripedCounter */
     public BaseHashSet(int initialCapacity) {
 
         // Count of all items is initially zero
-        size = new AtomicInteger(0);
+        size = new StripedCounter();
 
         // Create and initialize the underlying hash table
         table = createAndInitializeHashTable(initialCapacity);
@@ -65,8 +67,7 @@ public abstract class BaseHashSet<E> {
             // Add the item if and only if it does not currently exist
             if (!table[hashCode].contains(item)) {
                 table[hashCode].add(item);
-                size.incrementAndGet();
-                System.out.println("Added " + item + " size = " + size);
+                size.increment();
                 added = true;
             }
         } finally {
@@ -94,7 +95,7 @@ public abstract class BaseHashSet<E> {
 
             // Update size if item was removed
             if (removed)
-                size.decrementAndGet();
+                size.decrement();
 
             return removed;
         } finally {
@@ -141,7 +141,7 @@ public class ConcurrentRefinedStripedHashSet<E> extends BaseHashSet<E> {
 
     @Override
     protected boolean shouldResize() {
-        double avgBucketSize = 1.0 * size.get() / table.length;
+        double avgBucketSize = 1.0 * size.approximateSum() / table.length;
         return avgBucketSize > bucketSizeThreshold;
     }
 }
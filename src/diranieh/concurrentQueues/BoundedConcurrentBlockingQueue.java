@@ -2,7 +2,9 @@ package diranieh.concurrentQueues;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * A bounded concurrent queue implemented using a linked list
@@ -17,6 +19,12 @@ import java.util.concurrent.locks.ReentrantLock;
  * with each other. Condition predicate for dequeue: queue must not be empty.
  *
  * The first node in the queue is a sentinel node whose value is meaningless.
+ *
+ * The enqueue and dequeue locks are ReentrantLocks by default. Any lock whose newCondition()
+ * is supported can be used instead, for example the queue locks in diranieh.locks:
+ * <pre>
+ *     new BoundedConcurrentBlockingQueue<>(capacity, MCSLock::new)
+ * </pre>
  * @param <E> the type of elements in this list
  */
 public class BoundedConcurrentBlockingQueue<E> implements Queue<E>  {
@@ -34,17 +42,26 @@ public class BoundedConcurrentBlockingQueue<E> implements Queue<E>  {
         }
     }
 
-    private final ReentrantLock enqLock = new ReentrantLock();
-    private final Condition notFullCondition = enqLock.newCondition();  // condition predicate for enqLock used by enqueue
-    private final ReentrantLock deqLock = new ReentrantLock();
-    private final Condition notEmptyCondition = deqLock.newCondition(); // condition predicate for deqLock used by dequeue
+    private final Lock enqLock;
+    private final Condition notFullCondition;   // condition predicate for enqLock used by enqueue
+    private final Lock deqLock;
+    private final Condition notEmptyCondition;  // condition predicate for deqLock used by dequeue
     private final AtomicInteger size = new AtomicInteger(0);
     private final int capacity;
     private volatile Node<E> head;              // why volatile?
     private volatile Node<E> tail;              // why volatile?
 
     public BoundedConcurrentBlockingQueue(int capacity) {
+        this(capacity, ReentrantLock::new);
+    }
+
+    // lockFactory creates the enqueue and dequeue locks
+    public BoundedConcurrentBlockingQueue(int capacity, Supplier<Lock> lockFactory) {
         this.capacity = capacity;
+        enqLock = lockFactory.get();
+        notFullCondition = enqLock.newCondition();
+        deqLock = lockFactory.get();
+        notEmptyCondition = deqLock.newCondition();
         head = new Node<>(null);
         tail = head;
     }
@@ -1,5 +1,8 @@
 package diranieh.concurrentQueues;
 
+import diranieh.locks.BackoffStrategy;
+import diranieh.locks.JitteredBackoff;
+
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -18,6 +21,10 @@ import java.util.concurrent.atomic.AtomicReference;
  *  Because the last two steps are not executed atomically, every other method call
  *  must be prepared to encounter a half-finished enqueue call, and to finish the job
  *
+ *  A thread whose CAS on last.next (enqueue) or head (dequeue) fails has lost a race with
+ *  another thread, so it backs off as decided by a {@link BackoffStrategy} before retrying.
+ *  Helping to advance a lagging tail is not a failure and does not back off
+ *
  * @param <E> the type of elements in this list
  */
 public class UnboundedConcurrentLockFreeQueue<E> implements Queue<E>  {
@@ -38,10 +45,20 @@ public class UnboundedConcurrentLockFreeQueue<E> implements Queue<E>  {
         }
     }
 
+    private static final long MIN_DELAY = 64;           // 64 nsec
+    private static final long MAX_DELAY = 16_384;       // ~16 usec
+
     private AtomicReference<Node<E>> head;
     private AtomicReference<Node<E>> tail;
+    private final BackoffStrategy backoff;
 
     public UnboundedConcurrentLockFreeQueue() {
+        this(new JitteredBackoff(MIN_DELAY, MAX_DELAY));
+    }
+
+    public UnboundedConcurrentLockFreeQueue(BackoffStrategy backoff) {
+        this.backoff = backoff;
+
         // Create a sentinel node whose value is meaningless and points to
         // nothing (next = null). Initially, both head and tail point to
         // the sentinel
@@ -56,6 +73,7 @@ public class UnboundedConcurrentLockFreeQueue<E> implements Queue<E>  {
         Node<E> newNode = new Node<>(element);
 
         // A CAS requires a while(true) statement to keep on trying while CAS fails
+        int failedAttempts = 0;
         while(true) {
             /* After each result is obtained, another thread my make changes*/
             // Locate the last node in the queue
@@ -68,8 +86,10 @@ public class UnboundedConcurrentLockFreeQueue<E> implements Queue<E>  {
                     // set last.next to the new node, then move (or advance) tail to the new node
                     if (last.next.compareAndSet(next, newNode)) {
                         tail.compareAndSet(last, newNode);
+                        backoff.onSuccess(failedAttempts);
                         return;
                     }
+                    backoff.backOff(++failedAttempts);
                 } else {
                     // last is not the tail since last.next is now not null
                     // So move tail to next
@@ -82,6 +102,7 @@ public class UnboundedConcurrentLockFreeQueue<E> implements Queue<E>  {
     @Override
     public E dequeue()  {
         // A CAS requires a while(true) statement to keep on trying while CAS fails
+        int failedAttempts = 0;
         while (true) {
             Node<E> first = head.get();             // head points to a sentinel with no meaningful value
             Node<E> successor = first.next.get();   // actual head is pointed to by the sentinal
@@ -102,8 +123,11 @@ public class UnboundedConcurrentLockFreeQueue<E> implements Queue<E>  {
                     // Since we have captured the value of teh successor, We 'dequeue' the
                     // successor by making it the sentinel node (recall that we do not care
                     // about the value of the sentinel)
-                    if (head.compareAndSet(first, successor))
+                    if (head.compareAndSet(first, successor)) {
+                        backoff.onSuccess(failedAttempts);
                         return value;
+                    }
+                    backoff.backOff(++failedAttempts);
                 }
             }
         }
@@ -1,5 +1,8 @@
 package diranieh.concurrentStacks;
 
+import diranieh.locks.BackoffStrategy;
+import diranieh.locks.JitteredBackoff;
+
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -8,7 +11,9 @@ import java.util.concurrent.atomic.AtomicReference;
  * writing a basic thread-unsafe version using a linked list.
  *
  * Lock-free concurrency is obtained by applying CAS to the top field
- * when pushing or popping.
+ * when pushing or popping. A thread whose CAS fails backs off, as decided by a
+ * {@link BackoffStrategy}, before retrying: under contention, retrying at once only
+ * makes it more likely that the CAS fails again.
  * @param <E> the type of elements in the stack
  */
 public class ConcurrentLockFreeStack<E> implements Stack<E> {
@@ -26,11 +31,20 @@ public class ConcurrentLockFreeStack<E> implements Stack<E> {
         }
     }
 
+    private static final long MIN_DELAY = 64;           // 64 nsec
+    private static final long MAX_DELAY = 16_384;       // ~16 usec
+
     // Sentinel
     private Node<E> head;
+    private final BackoffStrategy backoff;
 
     public ConcurrentLockFreeStack() {
+        this(new JitteredBackoff(MIN_DELAY, MAX_DELAY));
+    }
+
+    public ConcurrentLockFreeStack(BackoffStrategy backoff) {
         head =  new Node<>(null);
+        this.backoff = backoff;
     }
 
     @Override
@@ -39,25 +53,33 @@ public class ConcurrentLockFreeStack<E> implements Stack<E> {
         Node<E> newNode = new Node<>(item);
 
         // Keep on retrying until successful
+        int failedAttempts = 0;
         while (true) {
             // Get current item at head
             Node<E> top = head.next.get();
             newNode.next.set(top);
-            if (head.next.compareAndSet(top, newNode))
+            if (head.next.compareAndSet(top, newNode)) {
+                backoff.onSuccess(failedAttempts);
                 return;
+            }
+            backoff.backOff(++failedAttempts);
         }
     }
 
     @Override
     public E pop() {
+        int failedAttempts = 0;
         while (true) {
             Node<E> top = head.next.get();
             if (top == null)
                 return null;
 
             Node<E> next = top.next.get();
-            if (head.next.compareAndSet(top, next))
+            if (head.next.compareAndSet(top, next)) {
+                backoff.onSuccess(failedAttempts);
                 return top.item;
+            }
+            backoff.backOff(++failedAttempts);
         }
     }
 
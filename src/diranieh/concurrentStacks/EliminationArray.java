@@ -1,5 +1,7 @@
 package diranieh.concurrentStacks;
 
+import diranieh.locks.BackoffStrategy;
+
 import java.util.Date;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -25,10 +27,16 @@ public class EliminationArray<E> {
     private final Random random;
 
     public EliminationArray(int capacity) {
+        this(capacity, EliminationExchanger.DEFAULT_BACKOFF);
+    }
+
+    // Same as above, but exchangers back off using the given strategy
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public EliminationArray(int capacity, BackoffStrategy backoff) {
         // Allocate exchanger array and initialize each entry
         exchanger = (EliminationExchanger<E>[]) new EliminationExchanger[capacity];
         for(int i = 0; i < capacity; i++) {
-            exchanger[i] = new EliminationExchanger<>();
+            exchanger[i] = new EliminationExchanger<>(backoff);
         }
 
         random = new Random( new Date().getTime());
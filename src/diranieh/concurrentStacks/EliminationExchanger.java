@@ -1,5 +1,8 @@
 package diranieh.concurrentStacks;
 
+import diranieh.locks.BackoffStrategy;
+import diranieh.locks.ExponentialSpinBackoff;
+
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicStampedReference;
@@ -17,6 +20,10 @@ import java.util.concurrent.atomic.AtomicStampedReference;
  * the first thread to leave the exchanger if it does not exchange a value in a
  * reasonable time.
  *
+ * A thread that finds the slot BUSY, or loses a CAS on it, retries after backing off as
+ * decided by a {@link BackoffStrategy}, so that threads racing for the same slot do not
+ * keep invalidating its cache line.
+ *
  * @param <E> the type of elements in this array
  */
 
@@ -24,7 +31,17 @@ public class EliminationExchanger<E> {
     private static final int EMPTY = 0;     // Slot is empty
     private static final int WAITING = 1;   // A thread is waiting for rendez-vous with another thread at affected slot
     private static final int BUSY = 2;      // Other threads busy with rendez-vous at affected slot
+    static final BackoffStrategy DEFAULT_BACKOFF = new ExponentialSpinBackoff(64, 4096);     // 64 nsec to 4 usec
     private AtomicStampedReference<E> slot = new AtomicStampedReference<>(null, 0);
+    private final BackoffStrategy backoff;
+
+    public EliminationExchanger() {
+        this(DEFAULT_BACKOFF);
+    }
+
+    public EliminationExchanger(BackoffStrategy backoff) {
+        this.backoff = backoff;
+    }
 
     /* A thread attempts to exchange values by reading the state of the slot and
     proceeding as follows:
@@ -55,6 +72,7 @@ public class EliminationExchanger<E> {
 
         // Loop until a value is exchanged or the timeout has expired
         int[] stampHolder = {EMPTY};
+        int failedAttempts = 0;
         while (true) {
             // Timed out?
             if (System.nanoTime() > timeLimit) throw new TimeoutException();
@@ -78,11 +96,13 @@ public class EliminationExchanger<E> {
                                 // Resetting to EMPTY is done using a simple write because the waiting
                                 // thread is the only one that can change the state from BUSY to EMPTY
                                 slot.set(null, EMPTY);
+                                backoff.onSuccess(failedAttempts);
                                 return yourItem;
                             }
 
                             // So far, no thread showed up. Continue spinning and waiting for another
                             // thread to  show up and complete the exchange until the timeout expires
+                            Thread.onSpinWait();
                         }   // while
 
                         // Reaching here means that no thread showed up to complete the exchange.
@@ -96,18 +116,24 @@ public class EliminationExchanger<E> {
                             // Another thread has shown up and the waiting thread can complete
                             yourItem = slot.get(stampHolder);
                             slot.set(null, EMPTY);
+                            backoff.onSuccess(failedAttempts);
                             return yourItem;
                         }
                     }
                     // CAS to place an item in the slot and set slot to WAITING failed,
-                    // so retry until success or timeout.
+                    // so back off and retry until success or timeout.
+                    backoff.backOff(++failedAttempts);
                     break;
                 case WAITING:
-                    if (slot.compareAndSet(yourItem, myItem, WAITING, BUSY))
+                    if (slot.compareAndSet(yourItem, myItem, WAITING, BUSY)) {
+                        backoff.onSuccess(failedAttempts);
                         return yourItem;
+                    }
+                    backoff.backOff(++failedAttempts);
                     break;
                 case BUSY:
-                    // Two other threads are currently using the slot for an exchange. Retry
+                    // Two other threads are currently using the slot for an exchange. Back off and retry
+                    backoff.backOff(++failedAttempts);
                     break;
                 default:
                     throw new IllegalStateException("Unknown slot state: " + stamp);
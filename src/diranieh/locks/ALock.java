@@ -1,9 +1,13 @@
 package diranieh.locks;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * ALock is a cyclic queue-based lock
@@ -15,33 +19,69 @@ import java.util.concurrent.locks.Lock;
  * The ALock lock is not space efficient; it requires a known bound n on the maximum number
  * of concurrent threads, and it allocates an array of that size per lock. Synchronizing
  * N distinct object requires O(Ln) space
+ *
+ * To avoid false sharing, each slot's flag lives on its own cache line: flags are spaced
+ * SLOT_PADDING bytes apart in the underlying array (and the first one is moved past the array
+ * header). Without padding up to 64 flags share a line, so every release would invalidate the
+ * line that all other waiters are spinning on. Flags are read with acquire semantics and set
+ * with release semantics through a VarHandle. The capacity is rounded up to a power of two so
+ * that a slot is selected with a mask rather than the modulus operator, which also keeps the
+ * slot index valid when the _tail counter overflows
+ *
+ * Unlike {@link CLHLock} and {@link MCSLock}, a thread cannot abandon an ALock slot: a thread
+ * that gave up and retried would take another slot while its abandoned slot is still occupied,
+ * so the array could hold more than n threads and two threads could end up sharing a slot.
+ * Timed and interruptible acquisition therefore never take a slot; they repeatedly call
+ * tryLock() through {@link SpinAcquire}, which only succeeds when the lock is free and no thread
+ * is queued, so a steady stream of lock() calls can keep them waiting until their deadline
+ *
+ * A virtual thread does not spin on its slot: it records itself as the slot's parked thread and
+ * parks, and the releasing thread unparks the thread parked on the next slot, if any (see
+ * {@link VirtualThreads}). The waiter records itself before checking its flag once more, and
+ * the releaser sets the flag before looking for a parked thread, so a wake-up is never lost.
+ * This needs both sides to use volatile accesses, so the flag is released with a volatile write
  */
 public class ALock implements Lock {
+    private static final int SLOT_PADDING = 64;     // bytes per cache line. A boolean takes one byte
+    private static final VarHandle FLAG = MethodHandles.arrayElementVarHandle(boolean[].class);
+
     private final AtomicInteger _tail;      // index of an available slot
-    private final int _size;                // array size
-    private volatile boolean[] _flag;       // if _flag[j] is true, then a thread with slot j can acquire the lock
-    private static ThreadLocal<Integer> _mySlotIndex;   // Maintain slot index for each thread
+    private final int _mask;                // number of slots - 1. Number of slots is a power of two
+    private final boolean[] _flag;          // if flagOf(j) is true, then a thread with slot j can acquire the lock
+    private final ThreadLocal<Integer> _mySlotIndex;    // Maintain slot index for each thread
+    private final AtomicReferenceArray<Thread> _parked; // virtual thread parked on each slot, if any
 
     public ALock(int capacity) {
-        _size = capacity;
+        if (capacity <= 0 || capacity > (1 << 24))
+            throw new IllegalArgumentException("capacity must be in the range [1, 2^24]: " + capacity);
+
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;    // round up to a power of two
+        _mask = size - 1;
         _tail = new AtomicInteger(0);
-        _flag = new boolean[capacity];
+        _flag = new boolean[(size + 1) * SLOT_PADDING];
         _mySlotIndex = ThreadLocal.withInitial(() -> 0);    // First thread has slot 0
-        _flag[0] = true;                // on startup, first thread can acquire the lock
+        _parked = new AtomicReferenceArray<>(size);
+        FLAG.setRelease(_flag, indexOf(0), true);           // on startup, first thread can acquire the lock
     }
 
     // To acquire a lock, a thread get its slot index and spins until the flag at its slot is true
     @Override
     public void lock() {
         // Get this thread's slot in the _flag array and cache it. The array is cyclic
-        // since we are using the modulus operator
-        int mySlot = _tail.getAndIncrement() % _size;
+        // since we are masking the ever-increasing _tail counter
+        int mySlot = _tail.getAndIncrement() & _mask;
         _mySlotIndex.set(mySlot);     // Save this thread's slot. Slot to be retrieved when unlocking
 
         // Spin while the slot identified by mySlot is not available:
-        //  _flag[mySlot] = true --> slot is available
-        //  _flag[mySlot] = false --> slot is not available
-        while (!_flag[mySlot]) { /* Spin */ }
+        //  flagOf(mySlot) = true --> slot is available
+        //  flagOf(mySlot) = false --> slot is not available
+        if (!flagOf(mySlot) && VirtualThreads.isCurrentThreadVirtual()) {
+            parkOn(mySlot);
+            return;
+        }
+        while (!flagOf(mySlot)) {
+            Thread.onSpinWait();
+        }
     }
 
     @Override
@@ -50,31 +90,70 @@ public class ALock implements Lock {
         int mySlot =  _mySlotIndex.get();
 
         // Reset this slot since _flag array is cyclic (see figures in page 5 in java concurrency
-        // part 3 doc)
-        _flag[mySlot] = false;
+        // part 3 doc). A plain write is enough: it is published by the release write below
+        _flag[indexOf(mySlot)] = false;
 
         // The next thread to call lock will get a slot whose value mySlot+1, so we indicate that
         // the array cell at index (mySlot+1) is available
-        _flag[(mySlot + 1) % _size] = true;
+        int nextSlot = (mySlot + 1) & _mask;
+        FLAG.setVolatile(_flag, indexOf(nextSlot), true);
+        Thread parked = _parked.get(nextSlot);
+        if (parked != null)
+            LockSupport.unpark(parked);
     }
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        throw new UnsupportedOperationException();
+        SpinAcquire.tryAcquire(this, false, 0);
     }
 
+    // Succeeds only if no thread holds or waits for the lock. The slot at _tail is available
+    // exactly when the lock is free and nobody is queued, so taking that slot with a CAS acquires
+    // the lock without ever waiting
     @Override
     public boolean tryLock() {
-        throw new UnsupportedOperationException();
+        int tail = _tail.get();
+        int slot = tail & _mask;
+        if (!flagOf(slot) || !_tail.compareAndSet(tail, tail + 1))
+            return false;
+
+        _mySlotIndex.set(slot);
+        return true;
     }
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        return SpinAcquire.tryAcquire(this, true, unit.toNanos(time));
     }
 
     @Override
     public Condition newCondition() {
         throw new UnsupportedOperationException();
     }
+
+    /* Implementation details */
+    // Index in the _flag array of the given slot's flag. Flag j is on cache line j + 1
+    private static int indexOf(int slot) {
+        return (slot + 1) * SLOT_PADDING;
+    }
+
+    private boolean flagOf(int slot) {
+        return (boolean) FLAG.getAcquire(_flag, indexOf(slot));
+    }
+
+    // Parks the current (virtual) thread until the flag of its slot is set. An interrupt while
+    // parked is remembered and restored once the lock is acquired
+    private void parkOn(int slot) {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        _parked.set(slot, current);
+        while (!(boolean) FLAG.getVolatile(_flag, indexOf(slot))) {
+            LockSupport.park(this);
+            interrupted |= Thread.interrupted();
+        }
+        _parked.set(slot, null);
+
+        if (interrupted)
+            current.interrupt();
+    }
 }
@@ -0,0 +1,48 @@
+package diranieh.locks;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tickets given up by timed or interrupted waiters of {@link TicketLock} and
+ * {@link PartitionedTicketLock}.
+ *
+ * A ticket cannot be returned: the lock serves tickets in order, so a waiter that leaves must
+ * still have its ticket served. It adds the ticket here instead, and the thread that releases
+ * the lock to that ticket takes it back out and serves the next ticket at once.
+ *
+ * A waiter may give up just as its ticket is served. Both sides then try to remove the ticket
+ * and exactly one of them succeeds: if the releaser does, it moves on to the next ticket; if the
+ * waiter does, it holds the lock after all. The waiter adds its ticket before checking whether it
+ * was served, and the releaser serves a ticket before checking for abandoned ones, all through
+ * volatile accesses, so at least one of them sees the other.
+ *
+ * Nothing is looked up while no ticket has been abandoned: a release then costs one extra
+ * volatile read
+ */
+final class AbandonedTickets {
+    private final Set<Long> tickets = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    // Called by a waiter that gives up its ticket
+    void add(long ticket) {
+        tickets.add(ticket);
+        count.incrementAndGet();
+    }
+
+    // Takes back an abandoned ticket. Returns false if the ticket was not abandoned or if
+    // another thread took it back first
+    boolean remove(long ticket) {
+        if (count.get() == 0 || !tickets.remove(ticket))
+            return false;
+
+        count.decrementAndGet();
+        return true;
+    }
+
+    // Number of abandoned tickets not yet served. A snapshot that may be out of date as soon as it returns
+    int size() {
+        return count.get();
+    }
+}
@@ -0,0 +1,61 @@
+package diranieh.locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A contention-adaptive {@link BackoffStrategy}: the starting delay tracks how contended the
+ * protected resource has recently been.
+ *
+ * Like {@link JitteredBackoff}, a thread spins for a random delay below a ceiling that doubles
+ * with every failed attempt. The difference is that the ceiling starts at a shared base delay
+ * instead of a fixed minimum. Operations report their outcome through onSuccess():
+ *  - an operation that failed more than once shows that the base delay is too short to
+ *    separate the competing threads, so the base delay is doubled (up to maxDelayNanos)
+ *  - an operation that succeeded at the first attempt shows that contention has dropped, so
+ *    the base delay decays by one eighth (down to minDelayNanos)
+ * Under sustained contention threads thus start near the delay that worked last time instead
+ * of rediscovering it with every operation, and once contention is gone the delay returns to
+ * its minimum.
+ *
+ * The base delay is shared by all threads using the strategy and is updated without
+ * synchronization, as in {@link SpinThenParkWaitPolicy}: a lost update only delays the tuning.
+ * It is only written when it changes, so an uncontended resource causes no writes at all
+ */
+public class AdaptiveBackoff implements BackoffStrategy {
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+
+    private volatile long baseDelayNanos;
+
+    public AdaptiveBackoff(long minDelayNanos, long maxDelayNanos) {
+        if (minDelayNanos <= 0 || maxDelayNanos < minDelayNanos)
+            throw new IllegalArgumentException("Invalid delays. Need 0 < minDelayNanos <= maxDelayNanos: "
+                    + minDelayNanos + ", " + maxDelayNanos);
+
+        this.minDelayNanos = minDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+        baseDelayNanos = minDelayNanos;
+    }
+
+    @Override
+    public void backOff(int attempt) {
+        long ceiling = ExponentialSpinBackoff.exponentialCeiling(baseDelayNanos, attempt, maxDelayNanos);
+        ExponentialSpinBackoff.spinFor(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    @Override
+    public void onSuccess(int failedAttempts) {
+        long base = baseDelayNanos;
+        if (failedAttempts > 1) {
+            if (base < maxDelayNanos)
+                baseDelayNanos = Math.min(base << 1, maxDelayNanos);    // still colliding. Start further apart
+        } else if (failedAttempts == 0 && base > minDelayNanos) {
+            baseDelayNanos = Math.max(base - Math.max(base >>> 3, 1), minDelayNanos);   // contention dropped. Decay
+        }
+    }
+
+    /* Package-private visibility for testing*/
+    long getBaseDelayNanos() {
+        return baseDelayNanos;
+    }
+}
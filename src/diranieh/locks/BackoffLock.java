@@ -6,7 +6,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
 /**
- * The BackoffLock with exponential delayis a refinement of the {@link TestAndTestAndSetLock}
+ * The BackoffLock with exponential delay is a refinement of the {@link TestAndTestAndSetLock}
  * lock. Recall that contention occurs when multiple threads try to acquire the same lock at
  * the same time.
  *
@@ -15,31 +15,46 @@ import java.util.concurrent.locks.Lock;
  *  immediately try to acquire the lock again. Such an attempt contributes to bus traffic
  *  at a time when the chances of acquiring the lock are slim. It is far more efficient for
  *  the thread to back off for some duration allowing other threads to finish first.
+ *
+ *  How long to back off is decided by a {@link BackoffStrategy}. The default strategy is a
+ *  {@link JitteredBackoff} whose delays (128 nsec up to 64 usec) are on the scale of a lock
+ *  hand-off. Backing off does not allocate: the number of failed attempts is kept in a local
+ *  variable and the strategy is shared by all threads using the lock.
  */
 public class BackoffLock implements Lock {
     private final AtomicBoolean state = new AtomicBoolean(false);
-    private static final int MIN_DELAY = 2;         // 2 msec
-    private static final int MAX_DELAY = 64;        // 64 msec
+    private static final long MIN_DELAY = 128;          // 128 nsec
+    private static final long MAX_DELAY = 65_536;       // ~64 usec
+
+    private final BackoffStrategy backoff;
+
+    public BackoffLock() {
+        this(new JitteredBackoff(MIN_DELAY, MAX_DELAY));
+    }
+
+    public BackoffLock(BackoffStrategy backoff) {
+        this.backoff = backoff;
+    }
 
     @Override
     public void lock() {
-        // Start with a brand new back off
-        ExponentialBackoff expBackoff = new ExponentialBackoff(MIN_DELAY, MAX_DELAY);
-
+        int failedAttempts = 0;
         while (true) {
             // First test: spin while lock is already held
-            while (state.get()) {/* do nothing */}
+            while (state.get()) {
+                Thread.onSpinWait();
+            }
 
             // Second test: If getAndSet returns false then the lock is free and we have
-            // successfully acquired it. Otherwise backoff exponentially and start again
-            if (!state.getAndSet(true))
+            // successfully acquired it. Otherwise backoff and start again
+            if (!state.getAndSet(true)) {
+                backoff.onSuccess(failedAttempts);
                 return;
+            }
 
             // Lock was acquired by another thread in between first and second tests
-            // Back-off exponentially before trying to acquire the lock again
-            try {
-                expBackoff.backOff();
-            } catch (InterruptedException ignored) {}
+            // Back-off before trying to acquire the lock again
+            backoff.backOff(++failedAttempts);
         }
     }
 
@@ -51,21 +66,58 @@ public class BackoffLock implements Lock {
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        throw new UnsupportedOperationException();
+        tryAcquire(false, 0);
     }
 
     @Override
     public boolean tryLock() {
-        throw new UnsupportedOperationException();
+        // Test before test-and-set so that a held lock does not cause bus traffic
+        return !state.get() && !state.getAndSet(true);
     }
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        return tryAcquire(true, unit.toNanos(time));
     }
 
     @Override
     public Condition newCondition() {
         throw new UnsupportedOperationException();
     }
+
+    /* Implementation details */
+    // Same algorithm as lock(), but gives up when the timeout expires (if timed) and lets
+    // an interrupt propagate to the caller instead of ignoring it
+    private boolean tryAcquire(boolean timed, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        int failedAttempts = 0;
+        while (true) {
+            // First test: spin while lock is already held
+            while (state.get()) {
+                if (timed && System.nanoTime() - deadline >= 0)
+                    return false;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                Thread.onSpinWait();
+            }
+
+            // Second test
+            if (!state.getAndSet(true)) {
+                backoff.onSuccess(failedAttempts);
+                return true;
+            }
+
+            if (timed && System.nanoTime() - deadline >= 0)
+                return false;
+
+            // Back-off before trying to acquire the lock again. An interrupt while
+            // backing off is rethrown to the caller
+            backoff.backOff(++failedAttempts);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+    }
 }
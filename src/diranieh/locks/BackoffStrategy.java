@@ -0,0 +1,27 @@
+package diranieh.locks;
+
+/**
+ * Decides how long a thread waits before it retries an operation that failed because of
+ * contention: a lost test-and-set in {@link BackoffLock}, a failed compareAndSet in a
+ * lock-free data structure, a busy slot in an exchanger.
+ *
+ * The caller counts its failed attempts in a local variable and passes the count to
+ * backOff(), so strategies keep no per-operation state and backing off never allocates.
+ * A strategy instance can therefore be shared by all threads of a lock or data structure.
+ * Once the operation succeeds the caller reports how many attempts failed through
+ * onSuccess(), which allows a strategy to tune itself to the current contention.
+ *
+ * backOff() never throws InterruptedException. A strategy that parks returns early when the
+ * thread is interrupted and leaves the interrupt status set for the caller to handle.
+ *
+ * Implemented by {@link ExponentialSpinBackoff}, {@link JitteredBackoff}, {@link TieredBackoff}
+ * and {@link AdaptiveBackoff}
+ */
+public interface BackoffStrategy {
+    // Waits before the next attempt. attempt is the number of attempts that failed so far (1 or more)
+    void backOff(int attempt);
+
+    // Called after the operation succeeded, having failed the given number of times (0 or more)
+    default void onSuccess(int failedAttempts) {
+    }
+}
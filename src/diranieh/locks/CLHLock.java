@@ -4,56 +4,111 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * CLHLock records each thread’s status in a QNode object which has a boolean locked
- * field. If locked is true, then the corresponding thread has either acquired the
- * lock or is waiting for the lock, and if false, the thread has released the lock.
+ * CLHLock records each thread’s status in a QNode object. The QNode's pred field is null
+ * if the corresponding thread has either acquired the lock or is waiting for the lock,
+ * and is AVAILABLE if the thread has released the lock.
  *
  * Each thread refers to its predecessor through a ThreadLocaL<QNode> predecessor
  * variable. This effectively creates a virtual (or implicit) linked list of QNode
  * objects
  *
- * When a thread attempts to acquire a lock, it spins on its predecessor node waiting
- * for the locked field to become false.
+ * When a thread attempts to acquire a lock, it waits on its predecessor node for the
+ * pred field to become AVAILABLE. How it waits is decided by a {@link WaitPolicy}: it
+ * spins for a while and, if the policy says so, registers itself in the predecessor's
+ * successor field and parks. A releasing (or abandoning) thread unparks the thread
+ * registered in its node, if any.
+ *
+ * Timeouts and interrupts follow the TOLock: a thread that gives up waiting cannot
+ * simply unlink its node because its successor (if any) is waiting on it. Instead it
+ * abandons the node by pointing the node's pred field at its own predecessor. A successor
+ * that finds its predecessor abandoned starts waiting on the abandoned node's predecessor
+ * instead, so a thread that leaves the queue never blocks the threads behind it
+ *
+ * Virtual threads park at once whatever the wait policy, so that waiting never keeps a carrier
+ * thread busy (see {@link VirtualThreads}).
+ *
+ * newCondition() returns a {@link QueueLockCondition}: a signalled thread re-enqueues itself
+ * at the tail of the lock's queue
  */
 public class CLHLock implements Lock {
 
     private static class QNode {
-        private boolean locked = false;
+        // null      : owner is waiting for the lock or holds it
+        // AVAILABLE : owner has released the lock
+        // otherwise : owner abandoned the node; the successor should wait on this node instead
+        private volatile QNode pred = null;
+
+        // Successor thread parked waiting for this node's pred field to change, if any
+        private volatile Thread successor = null;
     }
 
+    private static final QNode AVAILABLE = new QNode();
+
     AtomicReference<QNode> _tail;
     ThreadLocal<QNode> _myNode;
     ThreadLocal<QNode> _myPredecessor;
+    private final WaitPolicy _waitPolicy;
 
     public CLHLock() {
-        _tail = new AtomicReference<>(new QNode());
+        this(new SpinThenParkWaitPolicy());
+    }
+
+    public CLHLock(WaitPolicy waitPolicy) {
+        QNode sentinel = new QNode();
+        sentinel.pred = AVAILABLE;          // lock is initially free
+        _tail = new AtomicReference<>(sentinel);
         _myNode = ThreadLocal.withInitial(() -> new QNode());
         _myPredecessor = ThreadLocal.withInitial(() -> null);
+        _waitPolicy = waitPolicy;
     }
 
     @Override
     public void lock() {
-        // Get this thread's QNode and set its locked field to true to indicate that it
+        // Get this thread's QNode and set its pred field to null to indicate that it
         // is waiting for the lock (or it is has acquired the lock)
         QNode qNode = _myNode.get();
-        qNode.locked = true;
+        qNode.pred = null;
+        qNode.successor = null;
 
         // Make this thread's node (qNode) the tail of the queue and acquire the predecessor node
         QNode predecessor = _tail.getAndSet(qNode);
-        _myPredecessor.set(predecessor);        // remembet the predecessor
 
-        // Wait until the predecessor releases its lock
-        while (predecessor.locked) {}
+        // Wait until the predecessor releases its lock, skipping over any abandoned predecessors.
+        // An interrupt while parked is remembered and restored once the lock is acquired
+        int spins = 0;
+        boolean parked = false;
+        boolean interrupted = false;
+        while (true) {
+            QNode predPred = predecessor.pred;
+            if (predPred == AVAILABLE)
+                break;
+            if (predPred != null) {
+                predecessor = predPred;
+                continue;
+            }
+
+            if (waitOn(predecessor, spins++, false, 0)) {
+                parked = true;
+                interrupted |= Thread.interrupted();
+            }
+        }
+        _myPredecessor.set(predecessor);        // remember the predecessor
+        _waitPolicy.onAcquire(spins, parked);
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
     }
 
     @Override
     public void unlock() {
-        // Get this thread's QNode and set its locked field to false to indicate that it
-        // this thread has released the lock
+        // Get this thread's QNode and mark it AVAILABLE to indicate that this thread has
+        // released the lock. Wake up the successor if it parked
         QNode node = _myNode.get();
-        node.locked = false;
+        node.pred = AVAILABLE;
+        unparkSuccessor(node);
 
         // Reuse the predecessor node for future lock accesses. This can be done because the predecessor
         // node is no longer used by the predecessor thread
@@ -62,21 +117,120 @@ public class CLHLock implements Lock {
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        throw new UnsupportedOperationException();
+        tryAcquire(false, 0);
     }
 
+    // Joins the queue and gives up immediately if the lock cannot be handed over at once.
+    // Not interruptible: the interrupt status is neither checked nor cleared
     @Override
     public boolean tryLock() {
-        throw new UnsupportedOperationException();
+        QNode qNode = _myNode.get();
+        qNode.pred = null;
+        qNode.successor = null;
+        QNode predecessor = _tail.getAndSet(qNode);
+
+        // Skip over abandoned predecessors
+        QNode predPred;
+        while ((predPred = predecessor.pred) != null && predPred != AVAILABLE)
+            predecessor = predPred;
+
+        if (predPred == AVAILABLE) {
+            _myPredecessor.set(predecessor);
+            _waitPolicy.onAcquire(0, false);
+            return true;
+        }
+        abandon(qNode, predecessor);
+        return false;
     }
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        return tryAcquire(true, unit.toNanos(time));
     }
 
     @Override
     public Condition newCondition() {
-        throw new UnsupportedOperationException();
+        return new QueueLockCondition(this);
+    }
+
+    /* Implementation details */
+    // Waits for the lock until it is acquired, the timeout expires (if timed) or the thread
+    // is interrupted. Returns false on timeout and throws on interrupt, abandoning the node
+    // in both cases
+    private boolean tryAcquire(boolean timed, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        QNode qNode = _myNode.get();
+        qNode.pred = null;
+        qNode.successor = null;
+        QNode predecessor = _tail.getAndSet(qNode);
+
+        int spins = 0;
+        boolean parked = false;
+        while (true) {
+            QNode predPred = predecessor.pred;
+            if (predPred == AVAILABLE) {
+                _myPredecessor.set(predecessor);
+                _waitPolicy.onAcquire(spins, parked);
+                return true;
+            }
+
+            if (predPred != null) {
+                predecessor = predPred;         // predecessor abandoned. Wait on its predecessor instead
+                continue;
+            }
+
+            boolean interrupted = Thread.interrupted();
+            if (interrupted || (timed && System.nanoTime() - deadline >= 0)) {
+                abandon(qNode, predecessor);
+                if (interrupted)
+                    throw new InterruptedException();
+                return false;
+            }
+
+            parked |= waitOn(predecessor, spins++, timed, deadline);
+        }
+    }
+
+    // Performs one step of waiting on the predecessor node: a spin if the wait policy allows
+    // more spinning and the thread is not virtual, otherwise registers this thread as the
+    // node's successor and parks. The pred field is checked again after registering because
+    // the predecessor may have released the lock before it could see the registration.
+    // Returns true if the thread parked
+    private boolean waitOn(QNode predecessor, int spins, boolean timed, long deadline) {
+        if (!_waitPolicy.shouldPark(spins) && !VirtualThreads.isCurrentThreadVirtual()) {
+            Thread.onSpinWait();
+            return false;
+        }
+
+        predecessor.successor = Thread.currentThread();
+        if (predecessor.pred == null) {
+            if (timed)
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            else
+                LockSupport.park(this);
+        }
+        return true;
+    }
+
+    private static void unparkSuccessor(QNode node) {
+        Thread successor = node.successor;
+        if (successor != null)
+            LockSupport.unpark(successor);
+    }
+
+    // Leaves the queue without blocking successors. If no thread has queued behind this one,
+    // the tail is simply rolled back to the predecessor and the node can be reused. Otherwise
+    // the node is left in the queue pointing at the predecessor (waking up the successor so
+    // that it moves on to the predecessor), and this thread must use a new node for its next
+    // attempt
+    private void abandon(QNode qNode, QNode predecessor) {
+        if (!_tail.compareAndSet(qNode, predecessor)) {
+            qNode.pred = predecessor;
+            unparkSuccessor(qNode);
+            _myNode.set(new QNode());
+        }
     }
 }
@@ -0,0 +1,140 @@
+package diranieh.locks;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CLHTokenLock is a {@link CLHLock} without per-instance ThreadLocals.
+ *
+ * CLHLock keeps each thread's node and predecessor in two ThreadLocals owned by the lock, so
+ * every lock instance adds entries to the ThreadLocalMap of every thread that uses it. With
+ * thousands of locks (one per shard, say) the maps grow and the hash lookups (five per
+ * lock/unlock pair) dominate the cost of an uncontended acquisition.
+ *
+ * Here lock() returns the thread's queue node as a token and unlock() takes it back, so the
+ * lock needs no per-thread state of its own:
+ * <pre>
+ *     CLHTokenLock.Token token = lock.lock();
+ *     try {
+ *         ...
+ *     } finally {
+ *         lock.unlock(token);
+ *     }
+ * </pre>
+ * As in CLHLock, a releasing thread cannot reuse its own node, which its successor may still be
+ * watching, and takes over its predecessor's node instead. Free nodes are kept in a per-thread
+ * {@link NodePool} shared by all CLHTokenLock instances, so an acquisition costs one lookup in a
+ * small ThreadLocalMap and no allocation once the pool is warm.
+ *
+ * The token API does not fit the {@link java.util.concurrent.locks.Lock} interface, and waiting
+ * is kept simple: a waiter spins on its predecessor's node and yields its processor after
+ * spinning for a while (at once on a single processor). There are no timeouts or conditions;
+ * use CLHLock for those. A token must only be passed to the lock that returned it
+ */
+public class CLHTokenLock {
+    private static final int SPINS_BEFORE_YIELD = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    private static final NodePool<Token> POOL = new NodePool<>();
+
+    public static final class Token {
+        private volatile boolean locked = false;        // owner is waiting for the lock or holds it
+        private Token predecessor;                      // node to recycle on release. Owner only
+        private NodePool.Stack<Token> pool;             // stack of the thread that holds the lock. Owner only
+        private volatile Token abandonedTo = null;      // set when tryLock() backs out: successors wait on this node instead
+    }
+
+    private final AtomicReference<Token> _tail = new AtomicReference<>(new Token());
+
+    public Token lock() {
+        Token token = take();
+        token.locked = true;
+        Token predecessor = _tail.getAndSet(token);
+        token.predecessor = awaitRelease(predecessor);
+        return token;
+    }
+
+    // Succeeds only if the lock is free and no thread is waiting. Returns null otherwise, and
+    // never waits.
+    // The tail seen free may have been recycled before the CAS: a thread took it from its pool and
+    // queued it again, so the CAS succeeds behind a held node. A released node is locked again only
+    // when it is recycled, and nobody else can recycle it once this token is queued behind it, so
+    // the node is checked once more after the CAS. If it is held, the token backs out: it restores
+    // the tail if nobody has queued behind it, and otherwise it is abandoned and its successor
+    // waits on the held node instead
+    public Token tryLock() {
+        Token tail = _tail.get();
+        if (tail.locked)
+            return null;
+
+        Token token = take();
+        token.locked = true;
+        if (!_tail.compareAndSet(tail, token)) {
+            token.locked = false;
+            token.pool.push(token);
+            return null;
+        }
+
+        if (tail.locked) {
+            if (_tail.compareAndSet(token, tail)) {
+                token.locked = false;
+                token.pool.push(token);
+            } else {
+                // Left in the queue for good: the successor skips it and it is never recycled
+                token.abandonedTo = tail;
+                token.locked = false;
+            }
+            return null;
+        }
+        token.predecessor = tail;
+        return token;
+    }
+
+    public void unlock(Token token) {
+        if (token == null || !token.locked)
+            throw new IllegalMonitorStateException("Cannot unlock. Token does not hold the lock");
+
+        // Read the owner-only fields first: once the node is released the successor may
+        // recycle it. The predecessor node is no longer watched by anyone and can be reused
+        Token predecessor = token.predecessor;
+        NodePool.Stack<Token> pool = token.pool;
+        token.predecessor = null;
+        token.locked = false;
+        pool.push(predecessor);
+    }
+
+    /* Package-private visibility for testing*/
+    boolean isLocked() {
+        return _tail.get().locked;
+    }
+
+    static int pooledNodeCount() {
+        return POOL.ofCurrentThread().size();
+    }
+
+    /* Implementation details */
+    // Waits for the given node to be released, moving on past abandoned nodes. Returns the node
+    // released by its owner, which the caller recycles on its own release
+    private static Token awaitRelease(Token predecessor) {
+        int spins = 0;
+        while (true) {
+            while (predecessor.locked) {
+                if (++spins < SPINS_BEFORE_YIELD)
+                    Thread.onSpinWait();
+                else
+                    Thread.yield();
+            }
+
+            Token next = predecessor.abandonedTo;
+            if (next == null)
+                return predecessor;
+            predecessor = next;
+        }
+    }
+
+    private static Token take() {
+        NodePool.Stack<Token> pool = POOL.ofCurrentThread();
+        Token token = pool.pop();
+        if (token == null)
+            token = new Token();
+        token.pool = pool;
+        return token;
+    }
+}
@@ -0,0 +1,15 @@
+package diranieh.locks;
+
+/**
+ * Maps a thread to the cluster (for example, a NUMA node or socket) it runs on. Used by
+ * {@link CohortLock} to choose the thread's local lock.
+ *
+ * Java offers no portable way to query which socket a thread runs on, so the mapping is
+ * left to the deployment: it can come from thread naming conventions, from the executor
+ * that created the thread, or from OS-specific affinity information.
+ * Implemented by {@link ThreadIdClusterMapper}
+ */
+public interface ClusterMapper {
+    // Returns the cluster of the given thread, in the range [0, clusterCount)
+    int getCluster(Thread thread, int clusterCount);
+}
@@ -0,0 +1,191 @@
+package diranieh.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * CohortLock is a hierarchical (NUMA-aware) lock built from one global lock and one local
+ * lock per cluster of threads, where a cluster typically corresponds to a socket.
+ *
+ * Passing a lock between threads on different sockets is expensive because both the lock
+ * and the data it protects must migrate between caches. A cohort lock therefore prefers to
+ * pass ownership to a thread of the same cluster (the cohort):
+ *  - To acquire the lock, a thread first acquires its cluster's local lock. If the previous
+ *    owner of the local lock left the global lock held for the cluster, the thread owns the
+ *    cohort lock at once. Otherwise it also acquires the global lock.
+ *  - To release the lock, a thread checks whether other threads of its cluster are waiting
+ *    for the local lock. If so, it releases only the local lock and keeps the global lock
+ *    held on behalf of the cluster. Otherwise it releases both.
+ *
+ * To prevent starvation of other clusters, the global lock is handed over within a cluster
+ * at most batchBound times in a row before it is released.
+ *
+ * The global lock is acquired by one thread and may be released by another thread of the
+ * same cluster, so it must be thread-oblivious: {@link BackoffLock}, {@link TestAndSetLock}
+ * or {@link TestAndTestAndSetLock}, but not {@link CLHLock}, {@link MCSLock} or {@link ALock},
+ * which keep per-thread state. Local locks are always released by the thread that acquired them.
+ *
+ * Only threads blocked in lock() count as cohort waiters. Threads waiting in tryLock() or
+ * lockInterruptibly() may give up, so the global lock is never kept for them alone
+ */
+public class CohortLock implements Lock {
+    private static final int DEFAULT_BATCH_BOUND = 64;
+
+    private static class Cluster {
+        private final Lock localLock;
+        private final AtomicInteger waiting = new AtomicInteger(0);    // threads blocked in lock()
+
+        // Both fields are only accessed by the owner of localLock
+        private boolean ownsGlobal = false;     // global lock is held on behalf of this cluster
+        private int passes = 0;                 // consecutive hand-offs within this cluster
+
+        private Cluster(Lock localLock) {
+            this.localLock = localLock;
+        }
+    }
+
+    private final Lock _globalLock;
+    private final Cluster[] _clusters;
+    private final ClusterMapper _clusterMapper;
+    private final int _batchBound;
+    private final ThreadLocal<Cluster> _myCluster;      // cluster whose local lock this thread holds
+
+    // BackoffLock as the global lock and an MCSLock per cluster, clusters chosen by thread id
+    public CohortLock(int clusterCount) {
+        this(new BackoffLock(), MCSLock::new, clusterCount, new ThreadIdClusterMapper(), DEFAULT_BATCH_BOUND);
+    }
+
+    /**
+     * @param globalLock thread-oblivious lock shared by all clusters
+     * @param localLockFactory creates the local lock of each cluster
+     * @param clusterCount number of clusters (for example, sockets)
+     * @param clusterMapper maps a thread to its cluster
+     * @param batchBound maximum number of consecutive hand-offs within a cluster
+     */
+    public CohortLock(Lock globalLock, Supplier<Lock> localLockFactory, int clusterCount,
+                      ClusterMapper clusterMapper, int batchBound) {
+        if (clusterCount <= 0)
+            throw new IllegalArgumentException("clusterCount must be positive: " + clusterCount);
+        if (batchBound <= 0)
+            throw new IllegalArgumentException("batchBound must be positive: " + batchBound);
+
+        _globalLock = globalLock;
+        _clusters = new Cluster[clusterCount];
+        for (int i = 0; i < clusterCount; i++) {
+            _clusters[i] = new Cluster(localLockFactory.get());
+        }
+        _clusterMapper = clusterMapper;
+        _batchBound = batchBound;
+        _myCluster = new ThreadLocal<>();
+    }
+
+    @Override
+    public void lock() {
+        Cluster cluster = clusterOfCurrentThread();
+
+        // Announce this thread as a cohort waiter so that the local lock owner keeps the
+        // global lock for this cluster
+        cluster.waiting.incrementAndGet();
+        cluster.localLock.lock();
+        cluster.waiting.decrementAndGet();
+
+        if (!cluster.ownsGlobal) {
+            _globalLock.lock();
+            cluster.ownsGlobal = true;
+            cluster.passes = 0;
+        }
+        _myCluster.set(cluster);
+    }
+
+    @Override
+    public void unlock() {
+        Cluster cluster = _myCluster.get();
+        if (cluster == null)
+            throw new IllegalMonitorStateException("lock not owned by this thread");
+        _myCluster.remove();
+
+        // Pass the global lock to a waiting cohort thread along with the local lock, unless
+        // the cluster has used up its batch
+        if (cluster.waiting.get() > 0 && ++cluster.passes < _batchBound) {
+            cluster.localLock.unlock();
+            return;
+        }
+
+        cluster.ownsGlobal = false;
+        _globalLock.unlock();
+        cluster.localLock.unlock();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        Cluster cluster = clusterOfCurrentThread();
+        cluster.localLock.lockInterruptibly();
+        if (!cluster.ownsGlobal) {
+            try {
+                _globalLock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                cluster.localLock.unlock();
+                throw e;
+            }
+            cluster.ownsGlobal = true;
+            cluster.passes = 0;
+        }
+        _myCluster.set(cluster);
+    }
+
+    @Override
+    public boolean tryLock() {
+        Cluster cluster = clusterOfCurrentThread();
+        if (!cluster.localLock.tryLock())
+            return false;
+
+        if (!cluster.ownsGlobal) {
+            if (!_globalLock.tryLock()) {
+                cluster.localLock.unlock();
+                return false;
+            }
+            cluster.ownsGlobal = true;
+            cluster.passes = 0;
+        }
+        _myCluster.set(cluster);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        Cluster cluster = clusterOfCurrentThread();
+        if (!cluster.localLock.tryLock(time, unit))
+            return false;
+
+        if (!cluster.ownsGlobal) {
+            boolean acquired = false;
+            try {
+                acquired = _globalLock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } finally {
+                if (!acquired)
+                    cluster.localLock.unlock();
+            }
+            if (!acquired)
+                return false;
+
+            cluster.ownsGlobal = true;
+            cluster.passes = 0;
+        }
+        _myCluster.set(cluster);
+        return true;
+    }
+
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    /* Implementation details */
+    private Cluster clusterOfCurrentThread() {
+        return _clusters[_clusterMapper.getCluster(Thread.currentThread(), _clusters.length)];
+    }
+}
@@ -0,0 +1,57 @@
+package diranieh.locks;
+
+/**
+ * A {@link BackoffStrategy} that spins (calling Thread.onSpinWait()) for a delay that starts at
+ * minDelayNanos and doubles with every failed attempt, up to maxDelayNanos.
+ *
+ * Delays are measured with System.nanoTime(), so they can be as short as a lock hand-off
+ * (a few hundred nanoseconds). Because the thread keeps its core, this strategy suits
+ * short critical sections; see {@link TieredBackoff} for waits that may be long.
+ *
+ * All threads that fail the same number of times wait for the same delay, so threads that
+ * collided once tend to collide again. {@link JitteredBackoff} randomizes the delay to
+ * spread them out
+ */
+public class ExponentialSpinBackoff implements BackoffStrategy {
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+
+    public ExponentialSpinBackoff(long minDelayNanos, long maxDelayNanos) {
+        if (minDelayNanos <= 0 || maxDelayNanos < minDelayNanos)
+            throw new IllegalArgumentException("Invalid delays. Need 0 < minDelayNanos <= maxDelayNanos: "
+                    + minDelayNanos + ", " + maxDelayNanos);
+
+        this.minDelayNanos = minDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    @Override
+    public void backOff(int attempt) {
+        spinFor(delay(ceiling(attempt)));
+    }
+
+    // Returns the delay to wait given the current exponential ceiling
+    protected long delay(long ceiling) {
+        return ceiling;
+    }
+
+    // minDelayNanos * 2^(attempt - 1), capped at maxDelayNanos
+    final long ceiling(int attempt) {
+        return exponentialCeiling(minDelayNanos, attempt, maxDelayNanos);
+    }
+
+    // min * 2^(attempt - 1), capped at max without overflowing. Attempts below 1 count as 1
+    static long exponentialCeiling(long min, int attempt, long max) {
+        int shift = Math.max(attempt - 1, 0);
+        if (shift >= Long.numberOfLeadingZeros(min) - 1)
+            return max;
+        return Math.min(min << shift, max);
+    }
+
+    static void spinFor(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (System.nanoTime() - deadline < 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
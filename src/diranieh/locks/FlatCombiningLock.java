@@ -0,0 +1,185 @@
+package diranieh.locks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * FlatCombiningLock protects a shared object by delegation: instead of each thread taking a
+ * lock and touching the object itself, threads hand their operation to whichever thread is
+ * currently the combiner, which runs every pending operation in a batch.
+ *
+ * With an ordinary lock the protected data migrates to the cache of each thread that acquires
+ * the lock, and at high core counts this migration, rather than the critical section itself,
+ * is what limits throughput. With flat combining the data stays in the combiner's cache for a
+ * whole batch, and each waiting thread only exchanges its own publication record (operation in,
+ * result out) with the combiner.
+ *
+ * Each thread owns a publication record, kept in a ThreadLocal and linked into a list of
+ * records. To run an operation a thread writes it into its record and then either:
+ *  - finds the combiner lock free, takes it and becomes the combiner: it scans the list a few
+ *    times, running every published operation against the shared object and writing back the
+ *    result (or the exception it threw), and then releases the combiner lock, or
+ *  - waits for the combiner to clear the operation from its record, and picks up the result.
+ * Records whose owners have not published an operation for a while are unlinked by the
+ * combiner so that it does not keep scanning the records of threads that have finished; an
+ * owner that finds its record unlinked simply links it again.
+ *
+ * Operations are best kept short and must not call apply() again on the same lock (this throws
+ * IllegalStateException). Typical uses are hot counters and small maps:
+ * <pre>
+ *     FlatCombiningLock&lt;Map&lt;String, Long&gt;&gt; counts = new FlatCombiningLock&lt;&gt;(new HashMap&lt;&gt;());
+ *     long count = counts.apply(map -&gt; map.merge(key, 1L, Long::sum));
+ * </pre>
+ */
+public class FlatCombiningLock<S> {
+    private static final int SPINS_BEFORE_YIELD = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    private static final int COMBINING_ROUNDS = 3;       // scans of the list per combining pass
+    private static final int MAX_AGE = 1 << 10;         // idle passes before a record is unlinked
+
+    private static final class Record {
+        private volatile Function<Object, Object> operation = null;     // published operation, cleared once run
+        private volatile boolean linked = false;
+        private volatile Record next = null;
+        private Object result;                                          // written by the combiner before clearing operation
+        private Throwable failure;
+        private long lastUsed = 0;                                      // combining pass that last served this record
+        private boolean combining = false;                              // owner is running the combiner. Owner only
+    }
+
+    private final S state;
+    private final AtomicReference<Record> head = new AtomicReference<>(null);
+    private final AtomicBoolean combinerLock = new AtomicBoolean(false);
+    private final ThreadLocal<Record> myRecord = ThreadLocal.withInitial(Record::new);
+
+    // Statistics. Only written by the combiner
+    private volatile long combiningPasses = 0;
+    private volatile long combinedOperations = 0;
+
+    public FlatCombiningLock(S state) {
+        this.state = state;
+    }
+
+    // Runs operation against the shared object under the lock and returns its result. If the
+    // operation throws, the exception is rethrown to the caller
+    @SuppressWarnings("unchecked")
+    public <R> R apply(Function<? super S, ? extends R> operation) {
+        Record record = myRecord.get();
+        if (record.combining)
+            throw new IllegalStateException("Cannot call apply() from inside an operation");
+
+        record.operation = (Function<Object, Object>) operation;
+        if (!record.linked)
+            link(record);
+
+        int spins = 0;
+        while (record.operation != null) {
+            if (!combinerLock.get() && !combinerLock.getAndSet(true)) {
+                record.combining = true;
+                try {
+                    combine();
+                } finally {
+                    record.combining = false;
+                    combinerLock.set(false);
+                }
+            } else if (++spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+
+            // The combiner may have unlinked the record just as the operation was published
+            if (record.operation != null && !record.linked)
+                link(record);
+        }
+
+        Object result = record.result;
+        Throwable failure = record.failure;
+        record.result = null;
+        record.failure = null;
+        if (failure != null)
+            rethrow(failure);
+        return (R) result;
+    }
+
+    public <R> R execute(Supplier<? extends R> operation) {
+        return apply(ignored -> operation.get());
+    }
+
+    // Number of combining passes and of operations they ran. Their ratio is the mean batch size
+    public long getCombiningPassCount() {
+        return combiningPasses;
+    }
+
+    public long getCombinedOperationCount() {
+        return combinedOperations;
+    }
+
+    /* Package-private visibility for testing*/
+    int getLinkedRecordCount() {
+        int count = 0;
+        for (Record record = head.get(); record != null; record = record.next) {
+            count++;
+        }
+        return count;
+    }
+
+    /* Implementation details */
+    // Pushes the record at the head of the list. Only the record's owner links it
+    private void link(Record record) {
+        record.linked = true;
+        Record first;
+        do {
+            first = head.get();
+            record.next = first;
+        } while (!head.compareAndSet(first, record));
+    }
+
+    // Runs the published operations. Called with the combiner lock held
+    private void combine() {
+        long pass = combiningPasses + 1;
+        long operations = 0;
+        for (int round = 0; round < COMBINING_ROUNDS; round++) {
+            Record first = head.get();
+            Record previous = null;
+            for (Record record = first; record != null; ) {
+                Record next = record.next;
+                Function<Object, Object> operation = record.operation;
+                if (operation != null) {
+                    run(record, operation);
+                    record.lastUsed = pass;
+                    operations++;
+                    previous = record;
+                } else if (previous != null && pass - record.lastUsed > MAX_AGE) {
+                    // Unlink an idle record. Threads only ever push at the head, so only the
+                    // first record can change under the combiner and it is never unlinked
+                    previous.next = next;
+                    record.linked = false;
+                } else {
+                    previous = record;
+                }
+                record = next;
+            }
+        }
+        combinedOperations += operations;
+        combiningPasses = pass;
+    }
+
+    private void run(Record record, Function<Object, Object> operation) {
+        try {
+            record.result = operation.apply(state);
+        } catch (Throwable e) {
+            record.failure = e;
+        }
+        record.operation = null;        // volatile write publishes the result to the waiting owner
+    }
+
+    private static void rethrow(Throwable failure) {
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        throw new IllegalStateException(failure);
+    }
+}
@@ -0,0 +1,23 @@
+package diranieh.locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An {@link ExponentialSpinBackoff} whose delay is chosen at random between zero and the
+ * exponential ceiling, so that threads that collided once are unlikely to retry at the same
+ * moment again. This is the delay of the classic exponential backoff lock, at nanosecond
+ * resolution instead of whole milliseconds.
+ *
+ * The random numbers come from ThreadLocalRandom, which keeps its state in the current
+ * thread: drawing a delay neither allocates nor touches memory shared with other threads
+ */
+public class JitteredBackoff extends ExponentialSpinBackoff {
+    public JitteredBackoff(long minDelayNanos, long maxDelayNanos) {
+        super(minDelayNanos, maxDelayNanos);
+    }
+
+    @Override
+    protected long delay(long ceiling) {
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
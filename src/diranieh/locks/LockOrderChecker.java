@@ -0,0 +1,80 @@
+package diranieh.locks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Detects lock-order inversions between {@link ReentrantSpinLock}s that share this checker.
+ *
+ * Two threads deadlock when one holds A and waits for B while the other holds B and waits for
+ * A. Such a deadlock needs both threads to hit the window at the same time, so it may never
+ * show up in tests even though the code acquires the locks in inconsistent orders. The checker
+ * finds the inconsistency itself, whether or not the deadlock actually occurs:
+ *  - each thread keeps the list of checked locks it holds
+ *  - when a thread that holds H blocks to acquire L, the edge H -> L is added to a graph shared
+ *    by all threads ("L was acquired while holding H")
+ *  - if the graph already has a path from L to H, some thread once acquired H while holding L
+ *    (directly or through other locks), so the two orders can deadlock. The acquisition fails
+ *    with an IllegalStateException naming both locks, before the thread starts waiting
+ *
+ * The graph only grows, and checking walks it on every blocking acquisition while holding
+ * other locks, so the checker is meant for tests and debug builds
+ */
+public class LockOrderChecker {
+    // successors.get(a) contains b if b was acquired while holding a
+    private final Map<Lock, Set<Lock>> successors = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<Lock>> heldLocks = ThreadLocal.withInitial(ArrayList::new);
+
+    // Called before the current thread blocks to acquire lock
+    void beforeAcquire(Lock lock) {
+        for (Lock held : heldLocks.get()) {
+            if (held == lock)
+                continue;
+
+            if (isReachable(lock, held))
+                throw new IllegalStateException("Lock-order inversion: acquiring " + lock + " while holding " + held
+                        + ", but " + held + " was previously acquired while holding " + lock);
+
+            successors.computeIfAbsent(held, key -> ConcurrentHashMap.newKeySet()).add(lock);
+        }
+    }
+
+    // Called after the current thread acquired lock
+    void afterAcquire(Lock lock) {
+        heldLocks.get().add(lock);
+    }
+
+    // Called before the current thread releases lock. Locks need not be released in reverse order
+    void beforeRelease(Lock lock) {
+        heldLocks.get().remove(lock);
+    }
+
+    /* Package-private visibility for testing*/
+    Set<Lock> getSuccessors(Lock lock) {
+        return Collections.unmodifiableSet(successors.getOrDefault(lock, Collections.emptySet()));
+    }
+
+    /* Implementation details */
+    // Depth-first search for a path from source to target in the lock-order graph
+    private boolean isReachable(Lock source, Lock target) {
+        Set<Lock> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Lock> pending = new ArrayDeque<>();
+        pending.push(source);
+        while (!pending.isEmpty()) {
+            Lock current = pending.pop();
+            if (current == target)
+                return true;
+            if (!visited.add(current))
+                continue;
+            pending.addAll(successors.getOrDefault(current, Collections.emptySet()));
+        }
+        return false;
+    }
+}
@@ -1,37 +1,70 @@
 package diranieh.locks;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * MCSLock is very similar to {@link CLHLock}, however MCSLock represents a lock
  * as an explicit linked list of QNode objects, where each QNode represents either
  * a lock holder or a thread waiting to acquire the lock.
+ *
+ * How a thread waits for its node to be granted the lock is decided by a {@link WaitPolicy}:
+ * it spins for a while and, if the policy says so, sets its node's parked flag and parks.
+ * The releasing thread unparks its successor only if the successor's parked flag is set, so
+ * pure spinning never pays for an unpark.
+ *
+ * A waiting thread that times out (or is interrupted) abandons its node: it atomically
+ * changes the node's state from WAITING to ABANDONED and leaves. The abandoned node stays
+ * in the list, and the releasing thread skips over it when handing the lock to its successor,
+ * so a thread that leaves the queue never blocks the threads behind it. If the releasing
+ * thread wins the race and grants the lock first, the abandoning thread owns the lock after all
+ *
+ * Virtual threads park at once whatever the wait policy, so that waiting never keeps a carrier
+ * thread busy (see {@link VirtualThreads}).
+ *
+ * newCondition() returns a {@link QueueLockCondition}: a signalled thread re-enqueues itself
+ * at the tail of the lock's queue
  */
 public class MCSLock implements Lock {
 
+    private static final int WAITING = 0;       // owner is waiting for the lock
+    private static final int GRANTED = 1;       // owner has been handed the lock
+    private static final int ABANDONED = 2;     // owner gave up waiting and left the queue
+
     // Linked list of nodes
     private static class QNode {
-        private boolean locked = false;
-        private QNode _next = null;
+        private final AtomicInteger state = new AtomicInteger(GRANTED);
+        private volatile QNode _next = null;
+        private volatile boolean parked = false;                   // owner parked (or is about to)
+        private final Thread owner = Thread.currentThread();      // nodes are always created by their owner
     }
 
     AtomicReference<QNode> _tail;  // _queue is an object reference that may be updated atomically
     ThreadLocal<QNode> _myNode;
+    private final WaitPolicy _waitPolicy;
 
     public MCSLock() {
+        this(new SpinThenParkWaitPolicy());
+    }
+
+    public MCSLock(WaitPolicy waitPolicy) {
         _tail = new AtomicReference<>(null);
 
         // First node in the linked list is available for the first thread
         _myNode = ThreadLocal.withInitial(() -> new QNode());
+        _waitPolicy = waitPolicy;
     }
 
     @Override
     public void lock() {
         // Get this thread's QNode and append it at the end of the list
         QNode qNode = _myNode.get();
+        qNode.state.set(WAITING);               // We want to acquire the lock
+        qNode.parked = false;
         QNode predecessor = _tail.getAndSet(qNode);
 
         // If predecessor is null then this thread is the first thread to acquire the lock.
@@ -39,10 +72,20 @@ public class MCSLock implements Lock {
         if (predecessor == null)
             return;
 
-        // We have a predecessor. Wait until the predecessor sets our locked field to false
-        qNode.locked = true;            // We want to acquire the lock
+        // We have a predecessor. Wait until the predecessor (or a thread skipping
+        // abandoned nodes) sets our state to GRANTED. An interrupt while parked is
+        // remembered and restored once the lock is acquired
         predecessor._next = qNode;      // predecessor points to this thread's qnode
-        while (qNode.locked) {}
+        int spins = 0;
+        boolean interrupted = false;
+        while (qNode.state.get() != GRANTED) {
+            if (waitOn(qNode, spins++, false, 0))
+                interrupted |= Thread.interrupted();
+        }
+        _waitPolicy.onAcquire(spins, qNode.parked);
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
     }
 
     @Override
@@ -50,42 +93,122 @@ public class MCSLock implements Lock {
         // Get this thread's QNode
         QNode node = _myNode.get();
 
-        // Check this thread's qnode _next field:If null, then either no other thread is contending
-        // for the lock, or there is another thread, but it is slow
-        if (node._next == null) {
-            // If the CAScall succeeds, then no other thread is trying to acquire the lock, tail is set
-            // to null, and the method returns.
-            if (_tail.compareAndSet(node, null))
-                return;
-
-            // Otherwise, another (slow) thread is trying to acquire the lock, so the method spins waiting
-            // for it to finish
-            while (node._next == null) {}
+        // Hand the lock to the first successor that has not abandoned its node
+        QNode current = node;
+        while (true) {
+            // Check the current node's _next field: If null, then either no other thread is contending
+            // for the lock, or there is another thread, but it is slow
+            QNode successor = current._next;
+            if (successor == null) {
+                // If the CAS call succeeds, then no other thread is trying to acquire the lock, tail is set
+                // to null, and the method returns.
+                if (_tail.compareAndSet(current, null))
+                    break;
+
+                // Otherwise, another (slow) thread is trying to acquire the lock, so the method spins waiting
+                // for it to finish
+                while ((successor = current._next) == null) {
+                    Thread.onSpinWait();
+                }
+            }
+
+            // Once the successor has appeared, set its state to GRANTED indicating that the lock is now
+            // free, and wake it up if it parked. If the successor has abandoned its node, skip over it
+            // as if it had released the lock
+            if (successor.state.compareAndSet(WAITING, GRANTED)) {
+                if (successor.parked)
+                    LockSupport.unpark(successor.owner);
+                break;
+            }
+            current = successor;
         }
-
-        // Once the successor has appeared, the unlock() method sets its successor’s locked field
-        //to false, indicating that the lock is now free
-        node._next.locked = false;
         node._next = null;
     }
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        throw new UnsupportedOperationException();
+        tryAcquire(false, 0);
     }
 
+    // Succeeds only if the lock is free; never joins the queue
     @Override
     public boolean tryLock() {
-        throw new UnsupportedOperationException();
+        QNode qNode = _myNode.get();
+        qNode.state.set(GRANTED);
+        return _tail.compareAndSet(null, qNode);
     }
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        return tryAcquire(true, unit.toNanos(time));
     }
 
     @Override
     public Condition newCondition() {
-        throw new UnsupportedOperationException();
+        return new QueueLockCondition(this);
+    }
+
+    /* Implementation details */
+    // Waits for the lock until it is acquired, the timeout expires (if timed) or the thread
+    // is interrupted. Returns false on timeout and throws on interrupt, abandoning the node
+    // in both cases
+    private boolean tryAcquire(boolean timed, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        QNode qNode = _myNode.get();
+        qNode.state.set(WAITING);
+        qNode.parked = false;
+        QNode predecessor = _tail.getAndSet(qNode);
+        if (predecessor == null) {
+            qNode.state.set(GRANTED);
+            return true;
+        }
+
+        predecessor._next = qNode;
+        int spins = 0;
+        while (qNode.state.get() != GRANTED) {
+            boolean interrupted = Thread.interrupted();
+            if (interrupted || (timed && System.nanoTime() - deadline >= 0)) {
+                // Abandon the node. If the CAS fails the lock was granted in the meantime
+                if (qNode.state.compareAndSet(WAITING, ABANDONED)) {
+                    // The node stays in the queue until a releasing thread skips it, so this
+                    // thread needs a new node for its next attempt
+                    _myNode.set(new QNode());
+                    if (interrupted)
+                        throw new InterruptedException();
+                    return false;
+                }
+                if (interrupted)
+                    Thread.currentThread().interrupt();     // lock acquired. Restore interrupt status
+                break;
+            }
+
+            waitOn(qNode, spins++, timed, deadline);
+        }
+        _waitPolicy.onAcquire(spins, qNode.parked);
+        return true;
+    }
+
+    // Performs one step of waiting for the node to be granted the lock: a spin if the wait
+    // policy allows more spinning and the thread is not virtual, otherwise sets the node's
+    // parked flag and parks. The state is checked again after setting the flag because the
+    // releasing thread may have granted the lock before it could see the flag. Returns true
+    // if the thread parked
+    private boolean waitOn(QNode qNode, int spins, boolean timed, long deadline) {
+        if (!_waitPolicy.shouldPark(spins) && !VirtualThreads.isCurrentThreadVirtual()) {
+            Thread.onSpinWait();
+            return false;
+        }
+
+        qNode.parked = true;
+        if (qNode.state.get() != GRANTED) {
+            if (timed)
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            else
+                LockSupport.park(this);
+        }
+        return true;
     }
 }
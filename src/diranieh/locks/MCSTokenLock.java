@@ -0,0 +1,110 @@
+package diranieh.locks;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MCSTokenLock is an {@link MCSLock} without per-instance ThreadLocals.
+ *
+ * MCSLock keeps each thread's node in a ThreadLocal owned by the lock, so every lock instance
+ * adds an entry to the ThreadLocalMap of every thread that uses it, and with thousands of locks
+ * the map lookups dominate the cost of an uncontended acquisition. Here lock() returns the
+ * thread's queue node as a token and unlock() takes it back (see {@link CLHTokenLock} for the
+ * usage pattern). An MCS node is free again as soon as its owner has handed the lock on, so
+ * unlock() returns the token's own node to the per-thread {@link NodePool} it came from.
+ *
+ * As in CLHTokenLock, the token API does not fit the {@link java.util.concurrent.locks.Lock}
+ * interface, a waiter spins on its own node and yields its processor after spinning for a while,
+ * and there are no timeouts or conditions. A token must only be passed to the lock that
+ * returned it
+ */
+public class MCSTokenLock {
+    private static final int SPINS_BEFORE_YIELD = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    private static final NodePool<Token> POOL = new NodePool<>();
+
+    public static final class Token {
+        private volatile boolean locked = false;        // owner is waiting to be handed the lock
+        private volatile Token next = null;
+        private NodePool.Stack<Token> pool;             // stack of the thread that holds the lock. Owner only
+    }
+
+    private final AtomicReference<Token> _tail = new AtomicReference<>(null);
+
+    public Token lock() {
+        Token token = take();
+        token.next = null;
+        token.locked = true;
+        Token predecessor = _tail.getAndSet(token);
+
+        // No predecessor: the lock was free
+        if (predecessor == null)
+            return token;
+
+        // Wait for the predecessor to hand the lock over
+        predecessor.next = token;
+        int spins = 0;
+        while (token.locked) {
+            if (++spins < SPINS_BEFORE_YIELD)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+        return token;
+    }
+
+    // Succeeds only if the lock is free. Returns null otherwise
+    public Token tryLock() {
+        if (_tail.get() != null)
+            return null;
+
+        Token token = take();
+        token.next = null;
+        if (!_tail.compareAndSet(null, token)) {
+            token.pool.push(token);
+            return null;
+        }
+        return token;
+    }
+
+    public void unlock(Token token) {
+        if (token == null || _tail.get() == null)
+            throw new IllegalMonitorStateException("Cannot unlock. Token does not hold the lock");
+
+        Token successor = token.next;
+        if (successor == null) {
+            // No successor: free the lock, unless a thread has just swapped itself in as the
+            // tail and is about to link itself behind this node
+            if (_tail.compareAndSet(token, null)) {
+                token.pool.push(token);
+                return;
+            }
+            while ((successor = token.next) == null) {
+                Thread.onSpinWait();
+            }
+        }
+
+        // Nobody refers to this node once the successor has been handed the lock
+        NodePool.Stack<Token> pool = token.pool;
+        token.next = null;
+        successor.locked = false;
+        pool.push(token);
+    }
+
+    /* Package-private visibility for testing*/
+    boolean isLocked() {
+        return _tail.get() != null;
+    }
+
+    static int pooledNodeCount() {
+        return POOL.ofCurrentThread().size();
+    }
+
+    /* Implementation details */
+    private static Token take() {
+        NodePool.Stack<Token> pool = POOL.ofCurrentThread();
+        Token token = pool.pop();
+        if (token == null)
+            token = new Token();
+        token.pool = pool;
+        return token;
+    }
+}
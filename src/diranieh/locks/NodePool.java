@@ -0,0 +1,51 @@
+package diranieh.locks;
+
+/**
+ * NodePool keeps, for each thread, a small stack of queue nodes that are not in use, so that
+ * the token locks ({@link CLHTokenLock}, {@link MCSTokenLock}) can reuse nodes instead of
+ * allocating one per acquisition.
+ *
+ * A pool is meant to be a static field shared by every instance of a lock class: the calling
+ * thread's stack is found with a single ThreadLocal lookup however many lock instances exist,
+ * whereas {@link CLHLock} and {@link MCSLock} own ThreadLocals per instance, so each thread's
+ * ThreadLocalMap grows with the number of locks it has used.
+ *
+ * A stack is only ever used by the thread it belongs to, so it needs no synchronization. A lock
+ * remembers in the token it hands out which stack the node came from, so that unlock() can
+ * return a node without looking the stack up again
+ */
+final class NodePool<N> {
+    private static final int CAPACITY = 16;     // nodes beyond this are left to the garbage collector
+
+    static final class Stack<N> {
+        private final Object[] nodes = new Object[CAPACITY];
+        private int size = 0;
+
+        // Returns a free node, or null if the stack is empty
+        @SuppressWarnings("unchecked")
+        N pop() {
+            if (size == 0)
+                return null;
+
+            N node = (N) nodes[--size];
+            nodes[size] = null;
+            return node;
+        }
+
+        void push(N node) {
+            if (size < CAPACITY)
+                nodes[size++] = node;
+        }
+
+        /* Package-private visibility for testing*/
+        int size() {
+            return size;
+        }
+    }
+
+    private final ThreadLocal<Stack<N>> stacks = ThreadLocal.withInitial(Stack::new);
+
+    Stack<N> ofCurrentThread() {
+        return stacks.get();
+    }
+}
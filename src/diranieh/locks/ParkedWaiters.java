@@ -0,0 +1,55 @@
+package diranieh.locks;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parking support for locks whose waiters do not form a queue, such as {@link TestAndSetLock}
+ * and {@link TestAndTestAndSetLock}. Used for virtual threads (see {@link VirtualThreads}).
+ *
+ * A waiter adds itself to the set of parked waiters, tries the lock once more and parks. A
+ * releasing thread frees the lock and then unparks one parked waiter, if any. Because the waiter
+ * publishes itself before its last try and the releaser frees the lock before looking for
+ * waiters (all through volatile accesses), either the waiter's try succeeds or the releaser
+ * finds the waiter, so a wake-up is never lost. The woken waiter competes for the lock again
+ * and may lose it to a spinning thread, in which case it parks again until the next release.
+ *
+ * Nothing is allocated and no waiter is looked for until some thread actually parks
+ */
+final class ParkedWaiters {
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    // Parks the current thread until lock.tryLock() succeeds. An interrupt while parked is
+    // remembered and restored once the lock is acquired
+    void acquire(Lock lock) {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        while (true) {
+            waiters.add(current);
+            if (lock.tryLock()) {
+                waiters.remove(current);
+                break;
+            }
+
+            LockSupport.park(lock);
+            interrupted |= Thread.interrupted();
+            waiters.remove(current);            // already removed if woken by unparkOne()
+            if (lock.tryLock())
+                break;
+        }
+
+        if (interrupted)
+            current.interrupt();
+    }
+
+    // Called after the lock was released
+    void unparkOne() {
+        if (waiters.isEmpty())
+            return;
+
+        Thread waiter = waiters.poll();
+        if (waiter != null)
+            LockSupport.unpark(waiter);
+    }
+}
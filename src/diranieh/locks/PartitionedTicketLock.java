@@ -0,0 +1,175 @@
+package diranieh.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * PartitionedTicketLock is a {@link TicketLock} whose single nowServing counter is split into
+ * several "now serving" slots, each on its own cache line.
+ *
+ * A thread with ticket t waits on slot t mod slots until the slot shows t. Releasing the lock
+ * with ticket t writes t + 1 into slot (t + 1) mod slots. Consecutive tickets use different
+ * slots, so a release only invalidates the line of the waiter that is next in line (and of the
+ * few waiters whose tickets share its slot) instead of the line of every waiter. Space is still
+ * O(slots) per lock with no per-thread state, and threads still acquire the lock in ticket order.
+ *
+ * The holder remembers its ticket in the lock itself: only one thread holds the lock, so the
+ * field needs no synchronization beyond that of the lock.
+ *
+ * As with TicketLock, waiters yield after spinning for a while, and timed and interruptible
+ * acquisition take a ticket and leave it in a set of {@link AbandonedTickets} if they give up
+ */
+public class PartitionedTicketLock implements Lock {
+    private static final int PADDING = 8;                  // longs per cache line (64 bytes)
+    private static final int SPINS_BEFORE_YIELD = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    private static final int DEFAULT_SLOTS = 16;
+    private static final long NOT_HELD = Long.MIN_VALUE;
+
+    private final AtomicLong nextTicket = new AtomicLong(0);
+    private final AtomicLongArray grants;                  // slot j at (j + 1) * PADDING: last ticket served through slot j
+    private final int mask;                                // number of slots - 1
+    private long ownerTicket = NOT_HELD;                   // ticket of the thread holding the lock. Guarded by the lock
+    private final AbandonedTickets abandoned = new AbandonedTickets();
+
+    public PartitionedTicketLock() {
+        this(DEFAULT_SLOTS);
+    }
+
+    public PartitionedTicketLock(int slots) {
+        if (slots <= 0 || slots > (1 << 16))
+            throw new IllegalArgumentException("slots must be in the range [1, 2^16]: " + slots);
+
+        int size = slots == 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;     // round up to a power of two
+        mask = size - 1;
+        grants = new AtomicLongArray((size + 1) * PADDING);
+
+        // Ticket 0 is served at once. Other slots start below any ticket they will ever serve
+        for (int slot = 1; slot < size; slot++) {
+            grants.set(indexOf(slot), -1);
+        }
+    }
+
+    @Override
+    public void lock() {
+        long ticket = nextTicket.getAndIncrement();
+        int index = indexOf(slotOf(ticket));
+        int spins = 0;
+        while (grants.get(index) != ticket) {
+            if (++spins < SPINS_BEFORE_YIELD)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+        ownerTicket = ticket;
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        tryAcquire(false, 0);
+    }
+
+    // Takes a ticket only if it would be served at once
+    @Override
+    public boolean tryLock() {
+        long ticket = nextTicket.get();
+        if (grants.get(indexOf(slotOf(ticket))) != ticket || !nextTicket.compareAndSet(ticket, ticket + 1))
+            return false;
+
+        ownerTicket = ticket;
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(true, unit.toNanos(time));
+    }
+
+    @Override
+    public void unlock() {
+        long ticket = ownerTicket;
+        if (ticket == NOT_HELD)
+            throw new IllegalMonitorStateException("Cannot unlock. Lock is not held");
+
+        // Hand the lock to the next ticket through its own slot, skipping the tickets whose
+        // waiters gave up
+        ownerTicket = NOT_HELD;
+        long next = ticket + 1;
+        grants.set(indexOf(slotOf(next)), next);
+        while (abandoned.remove(next)) {
+            next++;
+            grants.set(indexOf(slotOf(next)), next);
+        }
+    }
+
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    /* Instrumentation. Both are snapshots that may be out of date as soon as they return */
+    public boolean isLocked() {
+        long ticket = nextTicket.get();
+        return grants.get(indexOf(slotOf(ticket))) != ticket;
+    }
+
+    // Number of threads waiting for the lock, not counting the holder
+    public int getQueueLength() {
+        // Slots only ever grow, so the ticket being served is the largest one in any slot
+        long serving = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            serving = Math.max(serving, grants.get(indexOf(slot)));
+        }
+        return (int) Math.max(nextTicket.get() - serving - 1 - abandoned.size(), 0);
+    }
+
+    /* Implementation details */
+    // Waits for a ticket until it is served, the timeout expires (if timed) or the thread is
+    // interrupted. Returns false on timeout and throws on interrupt, abandoning the ticket
+    // in both cases
+    private boolean tryAcquire(boolean timed, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        long ticket = nextTicket.getAndIncrement();
+        int index = indexOf(slotOf(ticket));
+        int spins = 0;
+        while (grants.get(index) != ticket) {
+            boolean interrupted = Thread.interrupted();
+            if (interrupted || (timed && System.nanoTime() - deadline >= 0)) {
+                abandoned.add(ticket);
+                if (grants.get(index) != ticket || !abandoned.remove(ticket)) {
+                    if (interrupted)
+                        throw new InterruptedException();
+                    return false;
+                }
+
+                // Served while giving up: the lock is held after all
+                ownerTicket = ticket;
+                if (interrupted) {
+                    unlock();
+                    throw new InterruptedException();
+                }
+                return true;
+            }
+
+            if (++spins < SPINS_BEFORE_YIELD)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+        ownerTicket = ticket;
+        return true;
+    }
+
+    private int slotOf(long ticket) {
+        return (int) ticket & mask;
+    }
+
+    private static int indexOf(int slot) {
+        return (slot + 1) * PADDING;
+    }
+}
@@ -0,0 +1,154 @@
+package diranieh.locks;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Condition for the queue locks ({@link CLHLock}, {@link MCSLock}), returned by their
+ * newCondition() method.
+ *
+ * A thread that awaits adds a wait node to the condition's queue, releases the lock and parks.
+ * signal() removes the first node from the queue, marks it SIGNALLED and unparks its thread,
+ * which then re-enqueues itself at the tail of the lock's queue by calling lock(). The
+ * awaiting thread therefore competes for the lock in the same FIFO order as every other
+ * thread, and returns from await() holding the lock again.
+ *
+ * The condition's queue is only accessed by threads holding the lock (await() enqueues before
+ * releasing it, signal() must be called while holding it), so the lock itself protects the
+ * queue. A waiter that times out or is interrupted changes its node from WAITING to CANCELLED
+ * with a CAS; a signaller changes it from WAITING to SIGNALLED. Only one of them can succeed,
+ * so a signal is never consumed by a waiter that already gave up: the signaller moves on to
+ * the next node. The cancelled node is removed from the queue once its thread has re-acquired
+ * the lock.
+ *
+ * As with ReentrantLock, await() and signal() must only be called by the thread holding the
+ * lock. The queue locks do not track their owner, so this is not checked
+ */
+class QueueLockCondition implements Condition {
+    private static final int WAITING = 0;
+    private static final int SIGNALLED = 1;
+    private static final int CANCELLED = 2;
+
+    private static class WaitNode {
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final Thread thread = Thread.currentThread();      // nodes are always created by their waiter
+    }
+
+    private final Lock lock;
+    private final ArrayDeque<WaitNode> waiters = new ArrayDeque<>();       // guarded by lock
+
+    QueueLockCondition(Lock lock) {
+        this.lock = lock;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        await(true, false, 0);
+    }
+
+    @Override
+    public void awaitUninterruptibly() {
+        try {
+            await(false, false, 0);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);     // never thrown when not interruptible
+        }
+    }
+
+    @Override
+    public long awaitNanos(long nanosTimeout) throws InterruptedException {
+        return await(true, true, nanosTimeout);
+    }
+
+    @Override
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+        return await(true, true, unit.toNanos(time)) > 0;
+    }
+
+    @Override
+    public boolean awaitUntil(Date deadline) throws InterruptedException {
+        return await(true, true, TimeUnit.MILLISECONDS.toNanos(deadline.getTime() - System.currentTimeMillis())) > 0;
+    }
+
+    @Override
+    public void signal() {
+        WaitNode node;
+        while ((node = waiters.poll()) != null) {
+            // Skip waiters that timed out or were interrupted
+            if (node.state.compareAndSet(WAITING, SIGNALLED)) {
+                LockSupport.unpark(node.thread);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void signalAll() {
+        WaitNode node;
+        while ((node = waiters.poll()) != null) {
+            if (node.state.compareAndSet(WAITING, SIGNALLED))
+                LockSupport.unpark(node.thread);
+        }
+    }
+
+    /* Package-private visibility for testing*/
+    int getWaiterCount() {
+        return waiters.size();
+    }
+
+    /* Implementation details */
+    // Releases the lock, waits until signalled (or until the timeout expires or the thread is
+    // interrupted, if allowed) and re-acquires the lock. Returns the remaining time if timed,
+    // which is 0 or less if the timeout expired before the thread was signalled
+    private long await(boolean interruptible, boolean timed, long nanosTimeout) throws InterruptedException {
+        if (interruptible && Thread.interrupted())
+            throw new InterruptedException();
+
+        WaitNode node = new WaitNode();
+        waiters.add(node);
+        lock.unlock();
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        boolean interrupted = false;            // interrupted at some point while waiting
+        boolean cancelled = false;              // gave up waiting: timed out or interrupted
+        while (node.state.get() == WAITING) {
+            if (timed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    cancelled = node.state.compareAndSet(WAITING, CANCELLED);
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+
+            if (Thread.interrupted()) {
+                interrupted = true;
+                if (interruptible) {
+                    cancelled = node.state.compareAndSet(WAITING, CANCELLED);
+                    break;
+                }
+            }
+        }
+
+        // Join the lock's queue again. Once the lock is held, the condition's queue is safe to modify
+        lock.lock();
+        if (cancelled)
+            waiters.remove(node);
+
+        // A waiter that was signalled consumed the signal, so an interrupt that arrived too late
+        // to cancel the wait is kept as the interrupt status instead of being thrown
+        if (interrupted) {
+            if (interruptible && cancelled)
+                throw new InterruptedException();
+            Thread.currentThread().interrupt();
+        }
+        return timed ? deadline - System.nanoTime() : 0;
+    }
+}
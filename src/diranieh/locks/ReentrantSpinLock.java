@@ -0,0 +1,148 @@
+package diranieh.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * ReentrantSpinLock adds reentrancy and ownership checks to any exclusive {@link Lock} in this
+ * package, such as {@link CLHLock} or {@link MCSLock}, none of which support either.
+ *
+ * Without this layer, a thread that calls lock() on a CLHLock it already holds waits for its
+ * own node and deadlocks, and unlock() from a thread that does not hold the lock releases a
+ * node it does not own and corrupts the queue. ReentrantSpinLock records the owning thread and
+ * a hold count:
+ *  - lock() by the owner only increments the hold count; the delegate is acquired once
+ *  - unlock() by any thread other than the owner throws IllegalMonitorStateException
+ *  - the delegate is released when the hold count drops back to zero
+ * The owner field is only written by the thread that holds the delegate, which sets it after
+ * acquiring and clears it before releasing. Another thread can therefore never read itself
+ * as the owner, so the reentrancy check needs no atomic operation, and the hold count, only
+ * accessed by the owner, needs no synchronization at all.
+ *
+ * If a {@link LockOrderChecker} is given, every blocking acquisition is checked against the
+ * order in which locks sharing the same checker were acquired before, and an acquisition that
+ * could deadlock fails with an IllegalStateException instead of hanging. The checker is meant
+ * for tests and debug builds; without it there is no overhead beyond the owner check
+ */
+public class ReentrantSpinLock implements Lock {
+    private final Lock delegate;
+    private final String name;
+    private final LockOrderChecker checker;         // null when lock-order checking is off
+
+    private volatile Thread owner;                  // written only by the thread holding delegate
+    private int holdCount;                          // guarded by delegate
+
+    public ReentrantSpinLock(Lock delegate) {
+        this(delegate, delegate.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(delegate)), null);
+    }
+
+    /**
+     * @param delegate non-reentrant exclusive lock
+     * @param name name of the lock in lock-order error messages
+     * @param checker lock-order checker shared by the locks to check against each other,
+     *                or null to disable checking
+     */
+    public ReentrantSpinLock(Lock delegate, String name, LockOrderChecker checker) {
+        this.delegate = delegate;
+        this.name = name;
+        this.checker = checker;
+    }
+
+    @Override
+    public void lock() {
+        if (reenter())
+            return;
+
+        if (checker != null)
+            checker.beforeAcquire(this);
+        delegate.lock();
+        onAcquired();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (reenter())
+            return;
+
+        if (checker != null)
+            checker.beforeAcquire(this);
+        delegate.lockInterruptibly();
+        onAcquired();
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (reenter())
+            return true;
+
+        // tryLock() never waits, so it cannot take part in a deadlock and is not checked
+        if (!delegate.tryLock())
+            return false;
+        onAcquired();
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (reenter())
+            return true;
+
+        // A timed wait gives up eventually, so it cannot take part in a deadlock and is not checked
+        if (!delegate.tryLock(time, unit))
+            return false;
+        onAcquired();
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        if (owner != Thread.currentThread())
+            throw new IllegalMonitorStateException("Cannot unlock " + name + ". Lock not held by this thread");
+
+        if (--holdCount > 0)
+            return;
+
+        owner = null;
+        if (checker != null)
+            checker.beforeRelease(this);
+        delegate.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return owner == Thread.currentThread();
+    }
+
+    // Number of holds on this lock by the current thread, or 0 if the current thread does not hold it
+    public int getHoldCount() {
+        return isHeldByCurrentThread() ? holdCount : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /* Implementation details */
+    private boolean reenter() {
+        if (owner != Thread.currentThread())
+            return false;
+
+        if (holdCount == Integer.MAX_VALUE)
+            throw new Error("Maximum lock count exceeded");
+        holdCount++;
+        return true;
+    }
+
+    private void onAcquired() {
+        owner = Thread.currentThread();
+        holdCount = 1;
+        if (checker != null)
+            checker.afterAcquire(this);
+    }
+}
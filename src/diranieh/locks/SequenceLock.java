@@ -0,0 +1,121 @@
+package diranieh.locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.Lock;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * SequenceLock (seqlock) protects small records that are read very often and written rarely,
+ * such as configuration snapshots or routing tables.
+ *
+ * The lock is a sequence number that is even while no writer is active and odd while a write
+ * is in progress. A writer excludes other writers with a spin lock, increments the sequence
+ * to an odd value, updates the record and increments the sequence back to an even value.
+ * A reader never writes to shared memory: it reads the sequence (waiting while it is odd),
+ * reads the record and then checks that the sequence has not changed. If it has, a writer
+ * interfered and the reader retries. Readers therefore never slow down writers or each other.
+ *
+ * Because a reader may run concurrently with a writer, the values it reads inside the read
+ * section can be inconsistent until validate() succeeds. Read sections must only read fields
+ * and must not act on (dereference, index with, divide by) what they read before validating.
+ *
+ * The readInt(), readLong() and readDouble() helpers run the read loop around a function that
+ * reads the record. Passed a non-capturing lambda or method reference, they do not allocate:
+ * <pre>
+ *     long total = lock.readLong(config, c -> c.limit + c.reserve);
+ * </pre>
+ */
+public class SequenceLock {
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(SequenceLock.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long sequence = 0;         // odd while a writer is active
+    private final Lock writerLock;              // excludes writers from each other
+
+    public SequenceLock() {
+        this(new TestAndTestAndSetLock());
+    }
+
+    public SequenceLock(Lock writerLock) {
+        this.writerLock = writerLock;
+    }
+
+    /* Reading */
+    // Waits until no writer is active and returns a stamp to be checked with validate()
+    public long beginRead() {
+        long stamp;
+        while (((stamp = (long) SEQUENCE.getAcquire(this)) & 1) != 0) {
+            Thread.onSpinWait();
+        }
+        return stamp;
+    }
+
+    // Returns true if no writer changed the record since beginRead() returned the given stamp
+    public boolean validate(long stamp) {
+        // Keep the record's reads from moving past the second read of the sequence
+        VarHandle.acquireFence();
+        return (long) SEQUENCE.getOpaque(this) == stamp;
+    }
+
+    public <T> int readInt(T record, ToIntFunction<T> reader) {
+        while (true) {
+            long stamp = beginRead();
+            int value = reader.applyAsInt(record);
+            if (validate(stamp))
+                return value;
+        }
+    }
+
+    public <T> long readLong(T record, ToLongFunction<T> reader) {
+        while (true) {
+            long stamp = beginRead();
+            long value = reader.applyAsLong(record);
+            if (validate(stamp))
+                return value;
+        }
+    }
+
+    public <T> double readDouble(T record, ToDoubleFunction<T> reader) {
+        while (true) {
+            long stamp = beginRead();
+            double value = reader.applyAsDouble(record);
+            if (validate(stamp))
+                return value;
+        }
+    }
+
+    /* Writing */
+    public void lockWrite() {
+        writerLock.lock();
+
+        // Only the writer changes the sequence, so a plain increment is enough. The fence keeps
+        // the record's writes from moving before the sequence becomes odd
+        SEQUENCE.setOpaque(this, sequence + 1);
+        VarHandle.storeStoreFence();
+    }
+
+    public void unlockWrite() {
+        long current = sequence;
+        if ((current & 1) == 0)
+            throw new IllegalMonitorStateException("Cannot unlock. No locking writer active");
+
+        // Release: the record's writes become visible before the sequence becomes even again
+        SEQUENCE.setRelease(this, current + 1);
+        writerLock.unlock();
+    }
+
+    /* Package-private visibility for testing*/
+    boolean hasWriter() {
+        return (sequence & 1) != 0;
+    }
+}
@@ -0,0 +1,306 @@
+package diranieh.locks;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * SpeculativeLock emulates lock elision in software: a critical section first runs without
+ * taking any lock, and only falls back to a real lock when speculation keeps failing.
+ *
+ * The protected state is a set of {@link Variable}s created by the lock. A critical section
+ * accesses them through the {@link Transaction} it is given:
+ *  - speculatively, the section records the lock's version when it starts. Every read checks
+ *    that the version is unchanged, so the section only ever sees a consistent state; a read
+ *    that finds the version changed aborts the attempt. Writes are buffered in the transaction
+ *  - at the end, a read-only section commits without writing anything. A section with writes
+ *    commits by changing the version from the recorded value to an odd value with a CAS,
+ *    applying its buffered writes and making the version even again. If the CAS fails another
+ *    section committed in the meantime, and the attempt aborts
+ *  - after maxSpeculativeAttempts aborts, the section runs under the fallback lock: the thread
+ *    takes the lock, makes the version odd (which aborts all speculating sections) and runs the
+ *    section with direct reads and writes
+ * Read-mostly sections therefore run in parallel without writing to shared memory, which is
+ * where taking even a {@link TestAndTestAndSetLock} becomes the bottleneck. Speculating
+ * sections that find the version odd wait for it to become even instead of counting an abort,
+ * so one thread falling back does not make every other thread fall back as well.
+ *
+ * A critical section may run several times and may be abandoned halfway, so it must access
+ * shared state only through its transaction and must have no other side effects. Aborts are
+ * signalled by an exception that the section must not catch. An exception thrown by the
+ * section itself discards a speculative attempt's writes and is rethrown to the caller.
+ * Sections cannot be nested.
+ *
+ * Commit, abort and fallback counts are exposed for monitoring
+ */
+public class SpeculativeLock {
+    private static final int DEFAULT_MAX_SPECULATIVE_ATTEMPTS = 4;
+
+    /**
+     * A long variable protected by a SpeculativeLock. Only accessible through a {@link Transaction}
+     */
+    public static final class Variable {
+        private final SpeculativeLock owner;
+        private volatile long value;
+
+        private Variable(SpeculativeLock owner, long value) {
+            this.owner = owner;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Access to the lock's variables from a critical section. One transaction object is reused
+     * for all critical sections run by a thread, so running a section does not allocate
+     */
+    public static final class Transaction {
+        private final SpeculativeLock lock;
+        private boolean active;
+        private boolean speculative;
+        private boolean aborted;
+        private long stamp;                     // version when the speculative attempt started
+        private Object result;                  // result of a section run by execute()
+
+        // Write buffer: small arrays searched linearly, grown on demand and then reused
+        private Variable[] writeVariables = new Variable[8];
+        private long[] writeValues = new long[8];
+        private int writeCount;
+
+        private Transaction(SpeculativeLock lock) {
+            this.lock = lock;
+        }
+
+        public long read(Variable variable) {
+            checkOwner(variable);
+            if (!speculative)
+                return variable.value;
+
+            // Read your own writes
+            for (int i = writeCount - 1; i >= 0; i--) {
+                if (writeVariables[i] == variable)
+                    return writeValues[i];
+            }
+
+            // The value is only consistent with earlier reads if no commit happened since the start
+            long value = variable.value;
+            if (lock.version.get() != stamp)
+                abort();
+            return value;
+        }
+
+        public void write(Variable variable, long value) {
+            checkOwner(variable);
+            if (!speculative) {
+                variable.value = value;
+                return;
+            }
+
+            for (int i = 0; i < writeCount; i++) {
+                if (writeVariables[i] == variable) {
+                    writeValues[i] = value;
+                    return;
+                }
+            }
+            if (writeCount == writeVariables.length) {
+                writeVariables = Arrays.copyOf(writeVariables, 2 * writeCount);
+                writeValues = Arrays.copyOf(writeValues, 2 * writeCount);
+            }
+            writeVariables[writeCount] = variable;
+            writeValues[writeCount] = value;
+            writeCount++;
+        }
+
+        /* Implementation details */
+        private void begin(boolean speculative, long stamp) {
+            this.speculative = speculative;
+            this.stamp = stamp;
+            aborted = false;
+            writeCount = 0;
+        }
+
+        private void abort() {
+            aborted = true;
+            throw AbortException.INSTANCE;
+        }
+
+        // Publishes the buffered writes. Returns false if another section committed first
+        private boolean commit() {
+            if (aborted)
+                return false;
+            if (writeCount == 0)
+                return lock.version.get() == stamp;         // read-only: nothing to publish
+
+            // An odd version makes concurrent readers abort while the writes are applied
+            if (!lock.version.compareAndSet(stamp, stamp + 1))
+                return false;
+            for (int i = 0; i < writeCount; i++) {
+                writeVariables[i].value = writeValues[i];
+            }
+            lock.version.set(stamp + 2);
+            return true;
+        }
+
+        private void checkOwner(Variable variable) {
+            if (!active)
+                throw new IllegalStateException("Transaction used outside its critical section");
+            if (variable.owner != lock)
+                throw new IllegalArgumentException("Variable does not belong to this lock");
+        }
+    }
+
+    // Thrown to unwind an aborted speculative attempt. Preallocated and without a stack trace
+    private static final class AbortException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final AbortException INSTANCE = new AbortException();
+
+        private AbortException() {
+            super("Speculative attempt aborted", null, false, false);
+        }
+    }
+
+    private final AtomicLong version = new AtomicLong(0);       // odd while writes are applied or a fallback runs
+    private final Lock fallbackLock;
+    private final int maxSpeculativeAttempts;
+    private final ThreadLocal<Transaction> transaction = ThreadLocal.withInitial(() -> new Transaction(this));
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder aborts = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public SpeculativeLock() {
+        this(new TestAndTestAndSetLock(), DEFAULT_MAX_SPECULATIVE_ATTEMPTS);
+    }
+
+    /**
+     * @param fallbackLock lock taken by sections that aborted maxSpeculativeAttempts times
+     * @param maxSpeculativeAttempts speculative attempts before falling back. 0 always takes the lock
+     */
+    public SpeculativeLock(Lock fallbackLock, int maxSpeculativeAttempts) {
+        if (maxSpeculativeAttempts < 0)
+            throw new IllegalArgumentException("maxSpeculativeAttempts must not be negative: " + maxSpeculativeAttempts);
+
+        this.fallbackLock = fallbackLock;
+        this.maxSpeculativeAttempts = maxSpeculativeAttempts;
+    }
+
+    public Variable newVariable(long initialValue) {
+        return new Variable(this, initialValue);
+    }
+
+    // Runs the critical section and returns its result
+    @SuppressWarnings("unchecked")
+    public <R> R execute(Function<Transaction, R> criticalSection) {
+        Transaction tx = enter();
+        try {
+            run(tx, criticalSection, OBJECT_SECTION);
+            return (R) tx.result;
+        } finally {
+            tx.result = null;
+            tx.active = false;
+        }
+    }
+
+    // Same as execute(), for sections returning a long. Does not allocate
+    public long executeAsLong(ToLongFunction<Transaction> criticalSection) {
+        Transaction tx = enter();
+        try {
+            return run(tx, criticalSection, LONG_SECTION);
+        } finally {
+            tx.active = false;
+        }
+    }
+
+    /* Statistics */
+    // Speculative attempts that committed
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    // Speculative attempts that aborted because of a conflicting commit or fallback
+    public long getAbortCount() {
+        return aborts.sum();
+    }
+
+    // Critical sections that ran under the fallback lock
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    public void resetStatistics() {
+        commits.reset();
+        aborts.reset();
+        fallbacks.reset();
+    }
+
+    /* Implementation details */
+    // Runs a critical section of type S and returns its result as a long. The two adapters below
+    // capture nothing, so passing them does not allocate
+    private interface SectionRunner<S> {
+        long run(S criticalSection, Transaction tx);
+    }
+
+    private static final SectionRunner<Function<Transaction, ?>> OBJECT_SECTION = (criticalSection, tx) -> {
+        tx.result = criticalSection.apply(tx);
+        return 0;
+    };
+
+    private static final SectionRunner<ToLongFunction<Transaction>> LONG_SECTION = (criticalSection, tx) -> criticalSection.applyAsLong(tx);
+
+    // Speculates up to maxSpeculativeAttempts times, then runs the section under the fallback lock
+    private <S> long run(Transaction tx, S criticalSection, SectionRunner<S> runner) {
+        for (int attempt = 0; attempt < maxSpeculativeAttempts; attempt++) {
+            tx.begin(true, awaitEvenVersion());
+            long result;
+            try {
+                result = runner.run(criticalSection, tx);
+            } catch (AbortException e) {
+                aborts.increment();
+                continue;
+            }
+            if (tx.commit()) {
+                commits.increment();
+                return result;
+            }
+            aborts.increment();
+        }
+
+        fallbackLock.lock();
+        long stamp = lockVersion();
+        try {
+            tx.begin(false, stamp);
+            fallbacks.increment();
+            return runner.run(criticalSection, tx);
+        } finally {
+            version.set(stamp + 2);
+            fallbackLock.unlock();
+        }
+    }
+
+    private Transaction enter() {
+        Transaction tx = transaction.get();
+        if (tx.active)
+            throw new IllegalStateException("Critical sections of a SpeculativeLock cannot be nested");
+        tx.active = true;
+        return tx;
+    }
+
+    private long awaitEvenVersion() {
+        long stamp;
+        while (((stamp = version.get()) & 1) != 0) {
+            Thread.onSpinWait();
+        }
+        return stamp;
+    }
+
+    // Called while holding the fallback lock. Waits for a committing section to finish,
+    // then makes the version odd so that speculating sections abort and new ones wait
+    private long lockVersion() {
+        while (true) {
+            long stamp = awaitEvenVersion();
+            if (version.compareAndSet(stamp, stamp + 1))
+                return stamp;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package diranieh.locks;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Interruptible and timed acquisition for the spin locks in this package whose only
+ * non-blocking primitive is tryLock(), such as {@link ALock}, {@link SpinReaderWriterLock} and
+ * {@link StripedReaderWriterLock}.
+ *
+ * The waiting thread simply retries tryLock(), checking for an interrupt and for the deadline
+ * between attempts. It never joins the lock's queue (if any), so giving up leaves nothing behind,
+ * but a lock that is never free between two acquisitions can starve it until the deadline
+ */
+final class SpinAcquire {
+    private SpinAcquire() {
+    }
+
+    // Spins on lock.tryLock() until the lock is acquired, the timeout expires (if timed)
+    // or the thread is interrupted
+    static boolean tryAcquire(Lock lock, boolean timed, long nanosTimeout) throws InterruptedException {
+        long deadline = System.nanoTime() + nanosTimeout;
+        while (true) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (lock.tryLock())
+                return true;
+            if (timed && System.nanoTime() - deadline >= 0)
+                return false;
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package diranieh.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * SpinReaderWriterLock is a reader-writer spin lock with a centralized state word.
+ *
+ * The state holds the number of active readers in its upper bits and a writer bit in
+ * bit 0. A reader acquires the lock by incrementing the reader count with a CAS while
+ * there is no writer; a writer acquires it by setting the writer bit with a CAS once
+ * there are no readers and no writer. Threads spin instead of blocking, so the lock suits
+ * short critical sections on read-mostly paths where parking would cost more than waiting.
+ *
+ * To keep a stream of readers from starving writers, a writer first announces itself in
+ * waitingWriters and new readers wait while any writer is waiting. Readers that already
+ * hold the lock drain out and the writer acquires it.
+ *
+ * Every reader updates the same state word, so read throughput does not scale with the
+ * number of cores; see {@link StripedReaderWriterLock} for a lock whose readers do not share
+ * a cache line. Neither lock is reentrant
+ */
+public class SpinReaderWriterLock implements ReadWriteLock {
+    private static final int WRITER = 1;
+    private static final int READER = 2;
+
+    private final AtomicInteger state = new AtomicInteger(0);              // (reader count * READER) | WRITER
+    private final AtomicInteger waitingWriters = new AtomicInteger(0);     // writers trying to acquire the lock
+    private final Lock readerLock = new ReaderLock();
+    private final Lock writerLock = new WriterLock();
+
+    private class ReaderLock implements Lock {
+        @Override
+        public void lock() {
+            while (!tryLock()) {
+                Thread.onSpinWait();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            SpinAcquire.tryAcquire(this, false, 0);
+        }
+
+        @Override
+        public boolean tryLock() {
+            // Give way to waiting writers
+            if (waitingWriters.get() > 0)
+                return false;
+
+            int s = state.get();
+            return (s & WRITER) == 0 && state.compareAndSet(s, s + READER);
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return SpinAcquire.tryAcquire(this, true, unit.toNanos(time));
+        }
+
+        @Override
+        public void unlock() {
+            if (state.get() < READER)
+                throw new IllegalMonitorStateException("Cannot unlock. No locking readers active");
+            state.addAndGet(-READER);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class WriterLock implements Lock {
+        @Override
+        public void lock() {
+            waitingWriters.incrementAndGet();
+            while (!acquire()) {
+                Thread.onSpinWait();
+            }
+            waitingWriters.decrementAndGet();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            waitingWriters.incrementAndGet();
+            try {
+                SpinAcquire.tryAcquire(this, false, 0);
+            } finally {
+                waitingWriters.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            return acquire();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            waitingWriters.incrementAndGet();
+            try {
+                return SpinAcquire.tryAcquire(this, true, unit.toNanos(time));
+            } finally {
+                waitingWriters.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void unlock() {
+            if (state.get() != WRITER)
+                throw new IllegalMonitorStateException("Cannot unlock. No locking writer active");
+            state.set(0);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        // Succeeds only if there are no readers and no writer
+        private boolean acquire() {
+            return state.get() == 0 && state.compareAndSet(0, WRITER);
+        }
+    }
+
+    @Override
+    public Lock readLock() {
+        return readerLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writerLock;
+    }
+
+    /* Package-private visibility for testing*/
+    boolean hasReaders() {
+        return state.get() >= READER;
+    }
+
+    boolean hasWriter() {
+        return (state.get() & WRITER) != 0;
+    }
+}
@@ -0,0 +1,46 @@
+package diranieh.locks;
+
+/**
+ * An adaptive {@link WaitPolicy}: a waiter spins up to a spin limit and then parks.
+ *
+ * The spin limit tunes itself from the outcome of previous waits, similar to the adaptive
+ * spinning of the JVM's monitors. A waiter that acquired the lock while still spinning shows
+ * that hand-offs currently complete within the limit, so the limit is doubled (up to
+ * MAX_SPINS). A waiter that had to park shows that spinning was wasted, so the limit is
+ * halved (down to MIN_SPINS). On a single processor spinning can never help because the
+ * lock holder cannot run while the waiter spins, so waiters park immediately.
+ *
+ * The spin limit is shared by all threads using the policy and is updated without
+ * synchronization; a lost update only delays the tuning, it never affects correctness
+ */
+public class SpinThenParkWaitPolicy implements WaitPolicy {
+    private static final boolean MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+    private static final int MIN_SPINS = 1 << 4;
+    private static final int MAX_SPINS = 1 << 14;
+    private static final int INITIAL_SPINS = 1 << 8;
+
+    private volatile int spinLimit;
+
+    public SpinThenParkWaitPolicy() {
+        spinLimit = MULTIPROCESSOR ? INITIAL_SPINS : 0;
+    }
+
+    @Override
+    public boolean shouldPark(int spins) {
+        return spins >= spinLimit;
+    }
+
+    @Override
+    public void onAcquire(int spins, boolean parked) {
+        if (!MULTIPROCESSOR)
+            return;
+
+        int limit = spinLimit;
+        if (parked) {
+            if (limit > MIN_SPINS)
+                spinLimit = limit >>> 1;        // spinning did not pay off. Spin less
+        } else if (spins > limit >>> 1 && limit < MAX_SPINS) {
+            spinLimit = limit << 1;             // acquired while spinning, near the limit. Spin more
+        }
+    }
+}
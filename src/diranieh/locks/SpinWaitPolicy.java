@@ -0,0 +1,16 @@
+package diranieh.locks;
+
+/**
+ * A {@link WaitPolicy} that never parks. Waiters spin until the lock is handed over, which
+ * gives the lowest hand-off latency when every thread has its own core (for example, when
+ * threads are pinned) but wastes a core per waiter once threads outnumber cores
+ */
+public class SpinWaitPolicy implements WaitPolicy {
+    @Override
+    public boolean shouldPark(int spins) {
+        return false;
+    }
+
+    @Override
+    public void onAcquire(int spins, boolean parked) { /* Nothing to tune */ }
+}
@@ -0,0 +1,230 @@
+package diranieh.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * StripedReaderWriterLock is a scalable reader-writer spin lock with distributed reader
+ * indicators.
+ *
+ * Instead of one reader count, readers announce themselves in one of several counters
+ * (stripes), each on its own cache line. A thread always uses the same stripe, chosen by
+ * hashing its id, so readers running on different cores rarely touch the same line and
+ * read acquisition scales with the number of cores.
+ *
+ * The price is paid by writers, which are expected to be rare:
+ *  - A reader increments its stripe and then checks the writer flag. If a writer is active
+ *    or waiting, the reader decrements its stripe again and waits for the writer to finish.
+ *  - A writer sets the writer flag (which also excludes other writers) and then waits until
+ *    every stripe is zero.
+ * Because both sides first publish their own intent and only then check for the other side,
+ * at least one of them always sees the other, so a reader and a writer can never both enter.
+ * Setting the writer flag stops new readers at once, which gives writers preference.
+ *
+ * Neither lock is reentrant
+ */
+public class StripedReaderWriterLock implements ReadWriteLock {
+    private static final int STRIPE_PADDING = 8;        // longs per cache line (64 bytes)
+
+    private final AtomicLongArray readers;              // one reader count per stripe, STRIPE_PADDING apart
+    private final int mask;                             // number of stripes - 1
+    private final AtomicBoolean writer = new AtomicBoolean(false);
+    private final Lock readerLock = new ReaderLock();
+    private final Lock writerLock = new WriterLock();
+
+    // Two stripes per processor, rounded up to a power of two
+    public StripedReaderWriterLock() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedReaderWriterLock(int stripes) {
+        if (stripes <= 0 || stripes > (1 << 16))
+            throw new IllegalArgumentException("stripes must be in the range [1, 2^16]: " + stripes);
+
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;     // round up to a power of two
+        mask = size - 1;
+
+        // Stripe j lives at index (j + 1) * STRIPE_PADDING so that the first stripe does not
+        // share a cache line with the array header
+        readers = new AtomicLongArray((size + 1) * STRIPE_PADDING);
+    }
+
+    private class ReaderLock implements Lock {
+        @Override
+        public void lock() {
+            while (!tryLock()) {
+                // Wait for the writer to finish before announcing this reader again
+                while (writer.get()) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            SpinAcquire.tryAcquire(this, false, 0);
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (writer.get())
+                return false;
+
+            // Announce this reader, then check again for a writer that may have arrived in between
+            int index = stripeOfCurrentThread();
+            readers.incrementAndGet(index);
+            if (!writer.get())
+                return true;
+
+            readers.decrementAndGet(index);
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return SpinAcquire.tryAcquire(this, true, unit.toNanos(time));
+        }
+
+        @Override
+        public void unlock() {
+            int index = stripeOfCurrentThread();
+            if (readers.decrementAndGet(index) < 0) {
+                readers.incrementAndGet(index);         // undo
+                throw new IllegalMonitorStateException("Cannot unlock. Read lock not held by this thread");
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class WriterLock implements Lock {
+        @Override
+        public void lock() {
+            // Test-and-test-and-set on the writer flag excludes other writers and stops new readers
+            while (writer.get() || writer.getAndSet(true)) {
+                Thread.onSpinWait();
+            }
+
+            // Wait for active readers to drain out
+            for (int stripe = 0; stripe <= mask; stripe++) {
+                int index = indexOf(stripe);
+                while (readers.get(index) > 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            tryAcquire(false, 0);
+        }
+
+        // Succeeds only if there is no writer and no active reader
+        @Override
+        public boolean tryLock() {
+            if (writer.get() || writer.getAndSet(true))
+                return false;
+
+            if (hasReaders()) {
+                writer.set(false);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return tryAcquire(true, unit.toNanos(time));
+        }
+
+        @Override
+        public void unlock() {
+            if (!writer.get())
+                throw new IllegalMonitorStateException("Cannot unlock. No locking writer active");
+            writer.set(false);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        // Like lock(), but gives up (clearing the writer flag if it was set) when the
+        // timeout expires or the thread is interrupted
+        private boolean tryAcquire(boolean timed, long nanosTimeout) throws InterruptedException {
+            long deadline = System.nanoTime() + nanosTimeout;
+            while (writer.get() || writer.getAndSet(true)) {
+                checkInterrupted();
+                if (timed && System.nanoTime() - deadline >= 0)
+                    return false;
+                Thread.onSpinWait();
+            }
+
+            try {
+                for (int stripe = 0; stripe <= mask; stripe++) {
+                    int index = indexOf(stripe);
+                    while (readers.get(index) > 0) {
+                        checkInterrupted();
+                        if (timed && System.nanoTime() - deadline >= 0) {
+                            writer.set(false);
+                            return false;
+                        }
+                        Thread.onSpinWait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                writer.set(false);
+                throw e;
+            }
+            return true;
+        }
+
+        private void checkInterrupted() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public Lock readLock() {
+        return readerLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writerLock;
+    }
+
+    /* Package-private visibility for testing*/
+    boolean hasReaders() {
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            if (readers.get(indexOf(stripe)) > 0)
+                return true;
+        }
+        return false;
+    }
+
+    boolean hasWriter() {
+        return writer.get();
+    }
+
+    /* Implementation details */
+    private int stripeOfCurrentThread() {
+        // Spread thread ids over the stripes (Fibonacci hashing) so that consecutive ids
+        // created by the same pool do not end up on neighbouring stripes only
+        long id = Thread.currentThread().getId();
+        int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+        return indexOf(hash & mask);
+    }
+
+    private static int indexOf(int stripe) {
+        return (stripe + 1) * STRIPE_PADDING;
+    }
+}
@@ -12,14 +12,18 @@ import java.util.concurrent.locks.Lock;
  * forces other processors to discard their own cached copies of the lock, so every
  * spinning thread encounters a cache miss almost every time, and must use the bus to
  * fetch the new, but unchanged value
+ *
+ * A virtual thread does not spin: it parks until the lock is released (see {@link VirtualThreads})
  * */
 public class TestAndSetLock implements Lock {
     AtomicBoolean state = new AtomicBoolean(false);
+    private final ParkedWaiters parkedWaiters = new ParkedWaiters();
 
     @Override
     public void unlock() {
         // Setting the state to false means the lock is free
         state.set(false);
+        parkedWaiters.unparkOne();
     }
 
     @Override
@@ -29,6 +33,12 @@ public class TestAndSetLock implements Lock {
         // returns true it  means the lock is held and we have to try again until
         // getAndSet returns false. Therefore, repeatedly apply getAndSet until
         // it returns false (lock is free)
+        if (!state.getAndSet(true))
+            return;
+        if (VirtualThreads.isCurrentThreadVirtual()) {
+            parkedWaiters.acquire(this);
+            return;
+        }
         while (state.getAndSet(true)) {/* Do nothng. Try again*/}
     }
 
@@ -39,8 +49,8 @@ public class TestAndSetLock implements Lock {
 
     @Override
     public boolean tryLock() {
-        // TODO
-        return false;
+        // Succeeds only if getAndSet(true) finds the lock free
+        return !state.getAndSet(true);
     }
 
     @Override
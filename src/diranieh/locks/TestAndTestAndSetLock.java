@@ -11,18 +11,28 @@ import java.util.concurrent.locks.Lock;
  * the value is loaded into B’s cache via the shared memory bus. As long as A holds the
  * lock, B repeatedly rereads the value, but hits in the cache every time. B thus produces
  * no bus traffic, and does not slow down other threads’ memory accesses
+ *
+ * A virtual thread does not spin: it parks until the lock is released (see {@link VirtualThreads})
  * */
 public class TestAndTestAndSetLock implements Lock {
     AtomicBoolean state = new AtomicBoolean(false);
+    private final ParkedWaiters parkedWaiters = new ParkedWaiters();
 
     @Override
     public void unlock() {
         // Setting the state to false means the lock is free
         state.set(false);
+        parkedWaiters.unparkOne();
     }
 
     @Override
     public void lock() {
+        if (tryLock())
+            return;
+        if (VirtualThreads.isCurrentThreadVirtual()) {
+            parkedWaiters.acquire(this);
+            return;
+        }
 
         while (true) {
             // First test
@@ -46,8 +56,8 @@ public class TestAndTestAndSetLock implements Lock {
 
     @Override
     public boolean tryLock() {
-        // TODO
-        return false;
+        // Test before test-and-set so that a held lock does not cause bus traffic
+        return !state.get() && !state.getAndSet(true);
     }
 
     @Override
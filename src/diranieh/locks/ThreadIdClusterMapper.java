@@ -0,0 +1,15 @@
+package diranieh.locks;
+
+/**
+ * Default {@link ClusterMapper} that spreads threads over clusters by thread id.
+ *
+ * This mapping knows nothing about the machine's topology, so it only gives the benefit of
+ * a {@link CohortLock} when threads are pinned to sockets in the same round-robin order in
+ * which they were created. It is mostly useful for testing
+ */
+public class ThreadIdClusterMapper implements ClusterMapper {
+    @Override
+    public int getCluster(Thread thread, int clusterCount) {
+        return (int) (thread.getId() % clusterCount);
+    }
+}
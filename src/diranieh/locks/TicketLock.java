@@ -0,0 +1,139 @@
+package diranieh.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * TicketLock is a FIFO spin lock that needs O(1) space: two counters, whatever the number of
+ * threads.
+ *
+ * Like the ticket dispenser at a counter, a thread takes the next ticket (an atomic increment
+ * of nextTicket) and waits until nowServing shows its ticket. Releasing the lock increments
+ * nowServing, which hands the lock to the thread holding the next ticket, so threads acquire
+ * the lock in the order they took their tickets. Unlike {@link ALock} there is no capacity to
+ * choose, and unlike {@link CLHLock} and {@link MCSLock} there are no per-thread nodes, so no
+ * ThreadLocal: the thread that holds the lock needs no state to release it. This suits pools
+ * of many short-lived threads.
+ *
+ * The price is that all waiters spin on the same nowServing counter, so every release
+ * invalidates the counter in the cache of every waiter; see {@link PartitionedTicketLock}.
+ * The two counters are kept on separate cache lines so that taking a ticket does not disturb
+ * the waiters.
+ *
+ * Only the thread holding the next ticket can take the lock, so if that thread is not running
+ * every other waiter spins in vain. A waiter therefore yields its processor after spinning for
+ * a while (at once on a single processor) to let the next thread in line run.
+ *
+ * Timed and interruptible acquisition take a ticket too, so they are served in order and are
+ * not starved by a steady stream of lock() calls. A ticket cannot be returned: a waiter that
+ * gives up leaves it in a set of {@link AbandonedTickets}, and the thread that releases the lock
+ * to that ticket skips it
+ */
+public class TicketLock implements Lock {
+    private static final int PADDING = 8;                  // longs per cache line (64 bytes)
+    private static final int SPINS_BEFORE_YIELD = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    private static final int NEXT_TICKET = PADDING;        // first counter moved past the array header
+    private static final int NOW_SERVING = 2 * PADDING;
+
+    private final AtomicLongArray counters = new AtomicLongArray(3 * PADDING);
+    private final AbandonedTickets abandoned = new AbandonedTickets();
+
+    @Override
+    public void lock() {
+        long ticket = counters.getAndIncrement(NEXT_TICKET);
+        int spins = 0;
+        while (counters.get(NOW_SERVING) != ticket) {
+            if (++spins < SPINS_BEFORE_YIELD)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        tryAcquire(false, 0);
+    }
+
+    // Takes a ticket only if it would be served at once
+    @Override
+    public boolean tryLock() {
+        long serving = counters.get(NOW_SERVING);
+        return counters.get(NEXT_TICKET) == serving && counters.compareAndSet(NEXT_TICKET, serving, serving + 1);
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(true, unit.toNanos(time));
+    }
+
+    @Override
+    public void unlock() {
+        // Only the thread holding the lock changes nowServing, so no atomic increment is needed
+        long serving = counters.get(NOW_SERVING);
+        if (serving == counters.get(NEXT_TICKET))
+            throw new IllegalMonitorStateException("Cannot unlock. Lock is not held");
+
+        // Serve the next ticket, skipping the tickets whose waiters gave up
+        long next = serving + 1;
+        counters.set(NOW_SERVING, next);
+        while (abandoned.remove(next)) {
+            counters.set(NOW_SERVING, ++next);
+        }
+    }
+
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    /* Instrumentation. Both are snapshots that may be out of date as soon as they return */
+    public boolean isLocked() {
+        return counters.get(NEXT_TICKET) != counters.get(NOW_SERVING);
+    }
+
+    // Number of threads waiting for the lock, not counting the holder
+    public int getQueueLength() {
+        long serving = counters.get(NOW_SERVING);
+        return (int) Math.max(counters.get(NEXT_TICKET) - serving - 1 - abandoned.size(), 0);
+    }
+
+    /* Implementation details */
+    // Waits for a ticket until it is served, the timeout expires (if timed) or the thread is
+    // interrupted. Returns false on timeout and throws on interrupt, abandoning the ticket
+    // in both cases
+    private boolean tryAcquire(boolean timed, long nanosTimeout) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        long deadline = System.nanoTime() + nanosTimeout;
+        long ticket = counters.getAndIncrement(NEXT_TICKET);
+        int spins = 0;
+        while (counters.get(NOW_SERVING) != ticket) {
+            boolean interrupted = Thread.interrupted();
+            if (interrupted || (timed && System.nanoTime() - deadline >= 0)) {
+                abandoned.add(ticket);
+                if (counters.get(NOW_SERVING) != ticket || !abandoned.remove(ticket)) {
+                    if (interrupted)
+                        throw new InterruptedException();
+                    return false;
+                }
+
+                // Served while giving up: the lock is held after all
+                if (interrupted) {
+                    unlock();
+                    throw new InterruptedException();
+                }
+                return true;
+            }
+
+            if (++spins < SPINS_BEFORE_YIELD)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+        return true;
+    }
+}
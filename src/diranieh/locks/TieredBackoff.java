@@ -0,0 +1,61 @@
+package diranieh.locks;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link BackoffStrategy} that escalates through three tiers as attempts keep failing:
+ *  1. spin: the first spinAttempts back-offs spin for 2, 4, 8, ... iterations of Thread.onSpinWait()
+ *  2. yield: the next yieldAttempts back-offs call Thread.yield() to let another runnable
+ *     thread, possibly the one holding the resource, use the core
+ *  3. park: later back-offs park for minParkNanos, doubling with every attempt up to maxParkNanos
+ *
+ * Short waits are served by spinning at no scheduling cost, while a thread that keeps failing
+ * eventually gives up its core. This matters when there are more threads than cores, where
+ * pure spinning can keep the thread that would make progress from running
+ */
+public class TieredBackoff implements BackoffStrategy {
+    private static final int MAX_SPIN_SHIFT = 16;
+
+    private final int spinAttempts;
+    private final int yieldAttempts;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    // 10 spinning attempts (up to 1024 iterations), 5 yielding attempts, then park from 1 usec up to 1 msec
+    public TieredBackoff() {
+        this(10, 5, 1_000, 1_000_000);
+    }
+
+    public TieredBackoff(int spinAttempts, int yieldAttempts, long minParkNanos, long maxParkNanos) {
+        if (spinAttempts < 0 || yieldAttempts < 0)
+            throw new IllegalArgumentException("Attempts must not be negative: " + spinAttempts + ", " + yieldAttempts);
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos)
+            throw new IllegalArgumentException("Invalid park times. Need 0 < minParkNanos <= maxParkNanos: "
+                    + minParkNanos + ", " + maxParkNanos);
+
+        this.spinAttempts = spinAttempts;
+        this.yieldAttempts = yieldAttempts;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void backOff(int attempt) {
+        if (attempt <= spinAttempts) {
+            int spins = 1 << Math.min(attempt, MAX_SPIN_SHIFT);
+            for (int i = 0; i < spins; i++) {
+                Thread.onSpinWait();
+            }
+        } else if (attempt <= spinAttempts + yieldAttempts) {
+            Thread.yield();
+        } else {
+            // Returns early if the thread is interrupted, leaving the interrupt status set
+            LockSupport.parkNanos(parkTime(attempt - spinAttempts - yieldAttempts));
+        }
+    }
+
+    /* Implementation details */
+    private long parkTime(int parkAttempt) {
+        return ExponentialSpinBackoff.exponentialCeiling(minParkNanos, parkAttempt, maxParkNanos);
+    }
+}
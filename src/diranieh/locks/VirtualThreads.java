@@ -0,0 +1,45 @@
+package diranieh.locks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Detects virtual threads for the spin locks in this package.
+ *
+ * A virtual thread runs on a small pool of carrier threads (by default one per core) and only
+ * leaves its carrier when it blocks. A virtual thread that busy-waits for a lock keeps its
+ * carrier busy: a few spinning waiters can occupy every carrier, and if the lock holder is not
+ * mounted (it blocked or yielded inside its critical section) it can never run again to release
+ * the lock. The spin locks therefore park, which unmounts the virtual thread, instead of
+ * spinning when the waiting thread is virtual. Platform threads keep spinning as before.
+ *
+ * Thread.isVirtual() only exists from Java 21. It is looked up once through a method handle;
+ * on older runtimes there are no virtual threads and isCurrentThreadVirtual() is always false
+ */
+final class VirtualThreads {
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    private VirtualThreads() {
+    }
+
+    static boolean isCurrentThreadVirtual() {
+        if (IS_VIRTUAL == null)
+            return false;
+
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot call Thread.isVirtual()", e);
+        }
+    }
+
+    /* Implementation details */
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;        // before Java 21
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package diranieh.locks;
+
+/**
+ * Decides how a thread waiting for a queue lock ({@link CLHLock}, {@link MCSLock}) spends its
+ * time: spinning keeps the hand-off latency minimal but burns a core per waiter, while parking
+ * frees the core at the cost of a wake-up when the lock is handed over.
+ *
+ * A waiter spins (calling Thread.onSpinWait()) as long as shouldPark() returns false, then
+ * parks until the releasing thread unparks it. Once the waiter acquires the lock it reports
+ * how long it waited through onAcquire(), which allows a policy to tune itself.
+ *
+ * Implemented by {@link SpinWaitPolicy} and {@link SpinThenParkWaitPolicy}
+ */
+public interface WaitPolicy {
+    // Returns true if a waiter that has already spun the given number of times should park
+    boolean shouldPark(int spins);
+
+    // Called by a waiter after it acquired the lock having spun the given number of times
+    // and, if parked is true, having parked at least once
+    void onAcquire(int spins, boolean parked);
+}
@@ -0,0 +1,79 @@
+package diranieh.locks.profiling;
+
+import diranieh.utilities.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the statistics recorded by a {@link ProfiledLock}.
+ *
+ * Wait times are recorded for contended acquisitions only, i.e. acquisitions where the lock
+ * was not free when requested. Hold times are recorded for every acquisition. All times are
+ * in nanoseconds
+ */
+public class LockProfile {
+    private final String name;
+    private final long acquisitionCount;
+    private final long contendedAcquisitionCount;
+    private final LatencyHistogram waitTimes;
+    private final LatencyHistogram holdTimes;
+    private final Map<String, Long> topCallSites;
+
+    LockProfile(String name, long acquisitionCount, long contendedAcquisitionCount,
+                LatencyHistogram waitTimes, LatencyHistogram holdTimes, Map<String, Long> topCallSites) {
+        this.name = name;
+        this.acquisitionCount = acquisitionCount;
+        this.contendedAcquisitionCount = contendedAcquisitionCount;
+        this.waitTimes = waitTimes;
+        this.holdTimes = holdTimes;
+        this.topCallSites = Collections.unmodifiableMap(topCallSites);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAcquisitionCount() {
+        return acquisitionCount;
+    }
+
+    public long getContendedAcquisitionCount() {
+        return contendedAcquisitionCount;
+    }
+
+    // Fraction of acquisitions that had to wait for the lock
+    public double getContentionRatio() {
+        return acquisitionCount == 0 ? 0 : (double) contendedAcquisitionCount / acquisitionCount;
+    }
+
+    public long getWaitTime(double percentile) {
+        return waitTimes.getValueAtPercentile(percentile);
+    }
+
+    public long getMaxWaitTime() {
+        return waitTimes.getMaxValue();
+    }
+
+    public long getHoldTime(double percentile) {
+        return holdTimes.getValueAtPercentile(percentile);
+    }
+
+    public long getMaxHoldTime() {
+        return holdTimes.getMaxValue();
+    }
+
+    // Call site -> number of sampled contended acquisitions, most contended first
+    public Map<String, Long> getTopCallSites() {
+        return topCallSites;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: acquisitions=%d contended=%d wait(p50/p99/p99.9/max)=%d/%d/%d/%d ns " +
+                        "hold(p50/p99/p99.9/max)=%d/%d/%d/%d ns",
+                name, acquisitionCount, contendedAcquisitionCount,
+                getWaitTime(50), getWaitTime(99), getWaitTime(99.9), getMaxWaitTime(),
+                getHoldTime(50), getHoldTime(99), getHoldTime(99.9), getMaxHoldTime());
+    }
+}
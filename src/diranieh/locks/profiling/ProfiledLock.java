@@ -0,0 +1,390 @@
+package diranieh.locks.profiling;
+
+import diranieh.utilities.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * ProfiledLock is a decorator that records contention statistics for any exclusive
+ * {@link Lock}, such as the locks in diranieh.locks.
+ *
+ * Every acquisition first calls the delegate's tryLock(). If that succeeds the acquisition is
+ * uncontended; otherwise the thread waits in the delegate's lock() and the acquisition is counted
+ * as contended, with its wait time recorded. Note that for queue locks, tryLock() only succeeds
+ * when no thread is queued, so this never lets a thread overtake waiting threads.
+ *
+ * All statistics are updated by the thread that holds the lock, so updates never compete with
+ * each other. They are still kept under a monitor of their own rather than under the profiled
+ * lock: taking a snapshot or resetting then never acquires the profiled lock, so it does not add
+ * contention to the lock being measured and can be done from inside its critical section. The
+ * monitor is only ever contended by a snapshot, so an acquisition costs one tryLock(), two
+ * uncontended monitor enters and two System.nanoTime() calls (for the hold time), and nothing is
+ * allocated on the hot path.
+ *
+ * When call-site sampling is enabled, one in every callSiteSamplingPeriod contended acquisitions
+ * walks the stack to find the caller of the lock and counts it. Sampling happens before the
+ * thread starts waiting, so its cost is not added to the lock's hold time.
+ *
+ * Conditions returned by newCondition() end the hold time when await() releases the lock and
+ * start a new one when it reacquires it, so the time spent waiting is not counted as holding.
+ * The profile can be exposed through JMX with registerMBean(). The MBean serves all attributes
+ * of one poll from a single cached snapshot, taken again once it is older than a second
+ */
+public class ProfiledLock implements Lock, ProfiledLockMXBean {
+    private static final int TOP_CALL_SITES = 10;
+    private static final long MBEAN_PROFILE_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Lock delegate;
+    private final String name;
+
+    // Only accessed by the thread that holds the lock
+    private long acquiredAt;
+
+    // Guarded by stats. Updated by the thread that holds the lock
+    private final Object stats = new Object();
+    private long acquisitionCount;
+    private long contendedAcquisitionCount;
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LatencyHistogram holdTimes = new LatencyHistogram();
+
+    private volatile LockProfile mbeanProfile;      // snapshot served to the MBean getters
+    private volatile long mbeanProfileTakenAt;
+
+    private volatile int callSiteSamplingPeriod;
+    private final Map<String, LongAdder> callSites = new ConcurrentHashMap<>();
+
+    public ProfiledLock(Lock delegate, String name) {
+        this(delegate, name, 0);
+    }
+
+    /**
+     * @param delegate exclusive lock to profile
+     * @param name name of the lock in snapshots and in its JMX ObjectName
+     * @param callSiteSamplingPeriod one in every callSiteSamplingPeriod contended acquisitions
+     *                               records its call site. 0 disables sampling
+     */
+    public ProfiledLock(Lock delegate, String name, int callSiteSamplingPeriod) {
+        if (callSiteSamplingPeriod < 0)
+            throw new IllegalArgumentException("callSiteSamplingPeriod must not be negative: " + callSiteSamplingPeriod);
+
+        this.delegate = delegate;
+        this.name = name;
+        this.callSiteSamplingPeriod = callSiteSamplingPeriod;
+    }
+
+    @Override
+    public void lock() {
+        if (delegate.tryLock()) {
+            onAcquired();
+            return;
+        }
+
+        sampleCallSite();
+        long start = System.nanoTime();
+        delegate.lock();
+        onContendedAcquired(start);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (delegate.tryLock()) {
+            onAcquired();
+            return;
+        }
+
+        sampleCallSite();
+        long start = System.nanoTime();
+        delegate.lockInterruptibly();
+        onContendedAcquired(start);
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (!delegate.tryLock())
+            return false;
+
+        onAcquired();
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (delegate.tryLock()) {
+            onAcquired();
+            return true;
+        }
+
+        sampleCallSite();
+        long start = System.nanoTime();
+        if (!delegate.tryLock(time, unit))
+            return false;
+
+        onContendedAcquired(start);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        onReleased();
+        delegate.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return new ProfiledCondition(delegate.newCondition());
+    }
+
+    // Takes a consistent snapshot of the statistics. Does not acquire the profiled lock
+    public LockProfile snapshot() {
+        LatencyHistogram waitTimesCopy = new LatencyHistogram();
+        LatencyHistogram holdTimesCopy = new LatencyHistogram();
+        long acquisitions;
+        long contendedAcquisitions;
+
+        synchronized (stats) {
+            acquisitions = acquisitionCount;
+            contendedAcquisitions = contendedAcquisitionCount;
+            waitTimes.copyInto(waitTimesCopy);
+            holdTimes.copyInto(holdTimesCopy);
+        }
+
+        return new LockProfile(name, acquisitions, contendedAcquisitions, waitTimesCopy, holdTimesCopy, topCallSites());
+    }
+
+    // Registers this lock with the platform MBean server as diranieh.locks:type=ProfiledLock,name=<name>
+    public ObjectName registerMBean() {
+        try {
+            ObjectName objectName = new ObjectName("diranieh.locks:type=ProfiledLock,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register MBean for lock " + name, e);
+        }
+    }
+
+    /* ProfiledLockMXBean */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getAcquisitionCount() {
+        return mbeanProfile().getAcquisitionCount();
+    }
+
+    @Override
+    public long getContendedAcquisitionCount() {
+        return mbeanProfile().getContendedAcquisitionCount();
+    }
+
+    @Override
+    public long getWaitTimeP50() {
+        return mbeanProfile().getWaitTime(50);
+    }
+
+    @Override
+    public long getWaitTimeP99() {
+        return mbeanProfile().getWaitTime(99);
+    }
+
+    @Override
+    public long getWaitTimeP999() {
+        return mbeanProfile().getWaitTime(99.9);
+    }
+
+    @Override
+    public long getWaitTimeMax() {
+        return mbeanProfile().getMaxWaitTime();
+    }
+
+    @Override
+    public long getHoldTimeP50() {
+        return mbeanProfile().getHoldTime(50);
+    }
+
+    @Override
+    public long getHoldTimeP99() {
+        return mbeanProfile().getHoldTime(99);
+    }
+
+    @Override
+    public long getHoldTimeP999() {
+        return mbeanProfile().getHoldTime(99.9);
+    }
+
+    @Override
+    public long getHoldTimeMax() {
+        return mbeanProfile().getMaxHoldTime();
+    }
+
+    @Override
+    public Map<String, Long> getTopCallSites() {
+        return mbeanProfile().getTopCallSites();
+    }
+
+    @Override
+    public int getCallSiteSamplingPeriod() {
+        return callSiteSamplingPeriod;
+    }
+
+    @Override
+    public void setCallSiteSamplingPeriod(int callSiteSamplingPeriod) {
+        if (callSiteSamplingPeriod < 0)
+            throw new IllegalArgumentException("callSiteSamplingPeriod must not be negative: " + callSiteSamplingPeriod);
+        this.callSiteSamplingPeriod = callSiteSamplingPeriod;
+    }
+
+    @Override
+    public void reset() {
+        synchronized (stats) {
+            acquisitionCount = 0;
+            contendedAcquisitionCount = 0;
+            waitTimes.reset();
+            holdTimes.reset();
+        }
+        callSites.clear();
+        mbeanProfile = null;
+    }
+
+    /* Implementation details */
+    // Wraps a condition of the delegate so that waiting does not count as holding the lock
+    private class ProfiledCondition implements Condition {
+        private final Condition condition;
+
+        ProfiledCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            onReleased();
+            try {
+                condition.await();
+            } finally {
+                acquiredAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            onReleased();
+            try {
+                condition.awaitUninterruptibly();
+            } finally {
+                acquiredAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            onReleased();
+            try {
+                return condition.awaitNanos(nanosTimeout);
+            } finally {
+                acquiredAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            onReleased();
+            try {
+                return condition.await(time, unit);
+            } finally {
+                acquiredAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            onReleased();
+            try {
+                return condition.awaitUntil(deadline);
+            } finally {
+                acquiredAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void signal() {
+            condition.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            condition.signalAll();
+        }
+    }
+
+    private void onAcquired() {
+        acquiredAt = System.nanoTime();
+        synchronized (stats) {
+            acquisitionCount++;
+        }
+    }
+
+    private void onContendedAcquired(long waitStart) {
+        long now = System.nanoTime();
+        acquiredAt = now;
+        synchronized (stats) {
+            acquisitionCount++;
+            contendedAcquisitionCount++;
+            waitTimes.record(now - waitStart);
+        }
+    }
+
+    // Called with the lock held, just before it is released
+    private void onReleased() {
+        long holdTime = System.nanoTime() - acquiredAt;
+        synchronized (stats) {
+            holdTimes.record(holdTime);
+        }
+    }
+
+    // Snapshot shared by the getters of one JMX poll
+    private LockProfile mbeanProfile() {
+        LockProfile profile = mbeanProfile;
+        if (profile == null || System.nanoTime() - mbeanProfileTakenAt > MBEAN_PROFILE_MAX_AGE_NANOS) {
+            profile = snapshot();
+            mbeanProfileTakenAt = System.nanoTime();
+            mbeanProfile = profile;
+        }
+        return profile;
+    }
+
+    // Called on the contended path only, before waiting. Records the first frame outside this class
+    private void sampleCallSite() {
+        int period = callSiteSamplingPeriod;
+        if (period == 0 || ThreadLocalRandom.current().nextInt(period) != 0)
+            return;
+
+        String callSite = StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().equals(ProfiledLock.class.getName()))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown"));
+        callSites.computeIfAbsent(callSite, key -> new LongAdder()).increment();
+    }
+
+    private Map<String, Long> topCallSites() {
+        Map<String, Long> top = new LinkedHashMap<>();
+        callSites.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_CALL_SITES)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+}
@@ -0,0 +1,35 @@
+package diranieh.locks.profiling;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ProfiledLock}. The getters read one cached {@link LockProfile}
+ * snapshot, taken again once it is older than a second, so the attributes of one poll are
+ * consistent with each other and polling never acquires the profiled lock.
+ * Times are in nanoseconds
+ */
+public interface ProfiledLockMXBean {
+    String getName();
+
+    long getAcquisitionCount();
+    long getContendedAcquisitionCount();
+
+    long getWaitTimeP50();
+    long getWaitTimeP99();
+    long getWaitTimeP999();
+    long getWaitTimeMax();
+
+    long getHoldTimeP50();
+    long getHoldTimeP99();
+    long getHoldTimeP999();
+    long getHoldTimeMax();
+
+    // Call site -> number of sampled contended acquisitions, most contended first
+    Map<String, Long> getTopCallSites();
+
+    // One in every callSiteSamplingPeriod contended acquisitions records its call site. 0 disables sampling
+    int getCallSiteSamplingPeriod();
+    void setCallSiteSamplingPeriod(int callSiteSamplingPeriod);
+
+    void reset();
+}
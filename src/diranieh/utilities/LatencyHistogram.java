@@ -0,0 +1,118 @@
+package diranieh.utilities;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size, log-linear histogram of nanosecond latencies in the spirit of HdrHistogram.
+ *
+ * Values are grouped by their most significant bit (an exponent) and each power of two is split
+ * into SUB_BUCKET_COUNT linear sub-buckets, so every recorded value is kept with a relative error
+ * of at most 1/SUB_BUCKET_COUNT (about 6%). Values below SUB_BUCKET_COUNT * 2 are recorded exactly.
+ *
+ * The bucket array is allocated once on construction and record() only increments a slot, so
+ * recording is allocation-free and cheap enough for hot paths. A histogram is NOT thread-safe:
+ * each thread is expected to record into its own instance and instances are combined with add()
+ * once recording has stopped (or on a snapshot copy)
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;       // 16 sub-buckets per power of two
+    private static final int EXACT_LIMIT = SUB_BUCKET_COUNT << 1;           // values below 32 are exact
+    private static final int MAX_EXPONENT = 63 - SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT + 2) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long maxValue;
+    private long sum;
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value > maxValue)
+            maxValue = value;
+    }
+
+    // Adds all recorded values of another histogram to this one
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    // Copies the recorded values of this histogram into target, overwriting target
+    public void copyInto(LatencyHistogram target) {
+        System.arraycopy(counts, 0, target.counts, 0, BUCKET_COUNT);
+        target.totalCount = totalCount;
+        target.sum = sum;
+        target.maxValue = maxValue;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        maxValue = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * @param percentile a percentile in the range [0, 100], e.g. 99.9
+     * @return the highest value (within the histogram's precision) at or below which the given
+     * percentage of recorded values fall, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+
+        // Number of values that must be at or below the returned value
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target)
+                return Math.min(highestValueOf(i), maxValue);
+        }
+        return maxValue;
+    }
+
+    /* Implementation details */
+    // Values below EXACT_LIMIT map directly to their own slot. Larger values with most significant
+    // bit m are shifted right by e = m - SUB_BUCKET_BITS, which leaves a sub-bucket in the range
+    // [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT). The exponent then selects the group of sub-buckets
+    private static int indexOf(long value) {
+        if (value < EXACT_LIMIT)
+            return (int) value;
+
+        int exponent = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent);
+        return (exponent + 1) * SUB_BUCKET_COUNT + (subBucket - SUB_BUCKET_COUNT);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < EXACT_LIMIT)
+            return index;
+
+        int exponent = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = (index % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
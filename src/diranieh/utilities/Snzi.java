@@ -0,0 +1,233 @@
+package diranieh.utilities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scalable NonZero Indicator (SNZI, Ellen, Lev, Luchangco and Moir, 2007).
+ *
+ * Many places only need to know whether anyone is present (are there readers? is the set empty?)
+ * rather than how many. A single counter answers that, but every arrival and departure updates
+ * the same cache line. A SNZI answers only the question query() = "has there been more
+ * arrive() than depart()?" and in exchange spreads arrivals and departures over a tree:
+ *  - a thread arrives at (and later departs from) a leaf chosen by hashing its id
+ *  - a node only arrives at its parent when its own count goes from 0 to non-zero, and only
+ *    departs from its parent when its count returns to 0, so while a node's count stays above
+ *    zero its arrivals and departures never reach the upper levels
+ *  - the root keeps an indicator bit, on its own cache line, which query() reads. Query cost is
+ *    therefore O(1) and queries are not disturbed by counting below
+ *
+ * A node whose count goes from 0 to 1 first moves to an intermediate "half" state, arrives at
+ * its parent and only then moves to 1. Other threads arriving meanwhile help by arriving at the
+ * parent too; the extra parent arrivals are undone once the node reaches 1. Each non-root node
+ * keeps (doubled count, version) in one long, so that "half" is 1 and a CAS can tell a node
+ * that went back to zero and became half again from one that never changed.
+ *
+ * The root keeps (count, announce bit, version). The arrival that moves the root from 0 sets
+ * the announce bit, then sets the indicator and clears the bit. The departure that moves the
+ * root to 0 clears the indicator only if the root's version did not change in between, using a
+ * versioned indicator to emulate the paper's load-linked/store-conditional
+ */
+public class Snzi {
+    private static final int PADDING = 8;               // longs per cache line (64 bytes)
+    private static final int MAX_HEIGHT = 11;           // at most 1024 leaves
+    private static final int ROOT = 1;                  // nodes are numbered heap-style: children of n are 2n and 2n + 1
+    private static final int HALF = 1;                  // doubled counts of non-root nodes
+    private static final int ONE = 2;
+
+    private final AtomicLong root = new AtomicLong(0);         // (version << 32) | (count << 1) | announce
+    private final AtomicLong indicator = new AtomicLong(0);    // (version << 1) | nonZero
+    private final AtomicLongArray nodes;                        // non-root nodes: (version << 32) | doubled count
+    private final int leafCount;
+
+    // One leaf per processor (rounded up to a power of two)
+    public Snzi() {
+        this(heightFor(Runtime.getRuntime().availableProcessors()));
+    }
+
+    // A tree of the given height has 2^(height - 1) leaves. A height of 1 is the root alone
+    public Snzi(int height) {
+        if (height < 1 || height > MAX_HEIGHT)
+            throw new IllegalArgumentException("height must be in the range [1, " + MAX_HEIGHT + "]: " + height);
+
+        leafCount = 1 << (height - 1);
+        nodes = new AtomicLongArray((2 * leafCount + 1) * PADDING);
+    }
+
+    // Height of a tree with one leaf per expected thread, rounded up to a power of two
+    public static int heightFor(int threadCount) {
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+
+        int height = 1;
+        while (height < MAX_HEIGHT && (1 << (height - 1)) < threadCount) {
+            height++;
+        }
+        return height;
+    }
+
+    // Arrives at the leaf of the calling thread and returns that leaf, to be passed to depart()
+    public int arrive() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+        int leaf = leafCount + (hash & (leafCount - 1));
+        arriveAt(leaf);
+        return leaf;
+    }
+
+    // Departs from the leaf returned by an earlier arrive(), which may have been called by
+    // another thread
+    public void depart(int leaf) {
+        if (leaf < leafCount || leaf >= 2 * leafCount)
+            throw new IllegalArgumentException("Not a leaf of this SNZI: " + leaf);
+        departFrom(leaf);
+    }
+
+    // True if there have been more arrivals than departures
+    public boolean query() {
+        return (indicator.get() & 1) != 0;
+    }
+
+    /* Package-private visibility for testing*/
+    int getLeafCount() {
+        return leafCount;
+    }
+
+    // Number of threads present below the given node (or at the root), ignoring a half state
+    long countAt(int node) {
+        return node == ROOT ? rootCount(root.get()) : count(nodes.get(indexOf(node))) / ONE;
+    }
+
+    /* Implementation details */
+    private void arriveAt(int node) {
+        if (node == ROOT) {
+            arriveAtRoot();
+            return;
+        }
+
+        int index = indexOf(node);
+        int parent = node >> 1;
+        boolean succeeded = false;
+        int undoArrivals = 0;
+        while (!succeeded) {
+            long x = nodes.get(index);
+            int c = count(x);
+            int v = version(x);
+            if (c >= ONE && nodes.compareAndSet(index, x, pack(c + ONE, v)))
+                succeeded = true;
+            if (c == 0) {
+                long half = pack(HALF, v + 1);
+                if (nodes.compareAndSet(index, x, half)) {
+                    succeeded = true;
+                    x = half;
+                    c = HALF;
+                    v = v + 1;
+                }
+            }
+            if (c == HALF) {
+                // Help the arrival in progress: arrive at the parent, then complete the half state
+                arriveAt(parent);
+                if (!nodes.compareAndSet(index, x, pack(ONE, v)))
+                    undoArrivals++;
+            }
+        }
+
+        // Another thread completed the half state first: our arrivals at the parent were extra
+        while (undoArrivals-- > 0) {
+            departFrom(parent);
+        }
+    }
+
+    private void departFrom(int node) {
+        if (node == ROOT) {
+            departFromRoot();
+            return;
+        }
+
+        int index = indexOf(node);
+        while (true) {
+            long x = nodes.get(index);
+            int c = count(x);
+            if (c < ONE)
+                throw new IllegalStateException("Cannot depart. No matching arrival");
+            if (nodes.compareAndSet(index, x, pack(c - ONE, version(x)))) {
+                if (c == ONE)
+                    departFrom(node >> 1);
+                return;
+            }
+        }
+    }
+
+    private void arriveAtRoot() {
+        long x;
+        long next;
+        do {
+            x = root.get();
+            int c = rootCount(x);
+            next = c == 0 ? packRoot(1, true, version(x) + 1) : packRoot(c + 1, isAnnounced(x), version(x));
+        } while (!root.compareAndSet(x, next));
+
+        if (isAnnounced(next)) {
+            setIndicator();
+            root.compareAndSet(next, packRoot(rootCount(next), false, version(next)));
+        }
+    }
+
+    private void departFromRoot() {
+        while (true) {
+            long x = root.get();
+            int c = rootCount(x);
+            if (c < 1)
+                throw new IllegalStateException("Cannot depart. No matching arrival");
+            if (root.compareAndSet(x, packRoot(c - 1, false, version(x)))) {
+                if (c >= 2)
+                    return;
+
+                // Clear the indicator, unless an arrival moved the root from 0 again since
+                while (true) {
+                    long i = indicator.get();
+                    if (version(root.get()) != version(x))
+                        return;
+                    if (indicator.compareAndSet(i, ((i >>> 1) + 1) << 1))
+                        return;
+                }
+            }
+        }
+    }
+
+    // Sets the indicator and bumps its version so that a pending clear fails
+    private void setIndicator() {
+        long i;
+        do {
+            i = indicator.get();
+        } while (!indicator.compareAndSet(i, (((i >>> 1) + 1) << 1) | 1));
+    }
+
+    private static long pack(int count, int version) {
+        return ((long) version << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    private static long packRoot(int count, boolean announce, int version) {
+        return ((long) version << 32) | ((long) count << 1) | (announce ? 1 : 0);
+    }
+
+    private static int count(long x) {
+        return (int) x;
+    }
+
+    private static int rootCount(long x) {
+        return (int) (x & 0xFFFFFFFFL) >>> 1;
+    }
+
+    private static boolean isAnnounced(long x) {
+        return (x & 1) != 0;
+    }
+
+    private static int version(long x) {
+        return (int) (x >>> 32);
+    }
+
+    private static int indexOf(int node) {
+        return node * PADDING;
+    }
+}
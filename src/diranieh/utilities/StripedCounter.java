@@ -0,0 +1,179 @@
+package diranieh.utilities;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A striped counter in the spirit of java.util.concurrent.atomic.LongAdder, for counters that
+ * are updated on hot paths by many threads and read rarely (sizes, hit counts, metrics).
+ *
+ * While there is no contention every update is a CAS on a single base value. The first time a
+ * CAS on the base fails, an array of cells is allocated and from then on each thread adds to
+ * the cell chosen by its probe, a per-thread hash. Cells are padded onto their own cache line,
+ * so threads updating different cells do not invalidate each other's caches. A thread whose CAS
+ * on its cell fails moves to another cell (rehashes its probe), and after repeated collisions
+ * the number of cells in use is doubled, up to the number of processors rounded up to a power
+ * of two. The cell array is allocated once at its largest size, so growing only widens the mask
+ * and never copies counts.
+ *
+ * Reading the counter sums the base and the cells in use:
+ *  - sum() is exact when there are no concurrent updates, but updates made while it runs may or
+ *    may not be included
+ *  - approximateSum() reads the same values without ordering them against other memory accesses.
+ *    It suits heuristics such as resize thresholds, where a slightly stale value does no harm
+ *  - sumThenReset() atomically takes the value of each cell, so no update is lost between the
+ *    sum and the reset
+ */
+public class StripedCounter {
+    private static final int PADDING = 8;                  // longs per cache line (64 bytes)
+    private static final int MAX_CELLS = maxCells();
+    private static final int COLLISIONS_BEFORE_GROWING = 2;
+    private static final VarHandle CELLS;
+    private static final VarHandle MASK;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            CELLS = lookup.findVarHandle(StripedCounter.class, "cells", AtomicLongArray.class);
+            MASK = lookup.findVarHandle(StripedCounter.class, "mask", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Per-thread cell selection, shared by all counters
+    private static final class Probe {
+        private int hash;
+        private int collisions = 0;
+
+        Probe() {
+            // Spread thread ids (Fibonacci hashing); the hash must never be zero for xorshift
+            int h = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32);
+            hash = h == 0 ? 1 : h;
+        }
+    }
+
+    private static final ThreadLocal<Probe> PROBE = ThreadLocal.withInitial(Probe::new);
+
+    private final AtomicLong base = new AtomicLong(0);
+    private volatile AtomicLongArray cells = null;     // allocated on first contention
+    private volatile int mask = 0;                      // cells in use - 1
+
+    public void increment() {
+        add(1);
+    }
+
+    public void decrement() {
+        add(-1);
+    }
+
+    public void add(long x) {
+        AtomicLongArray cs = cells;
+        if (cs == null) {
+            long b = base.get();
+            if (base.compareAndSet(b, b + x))
+                return;
+            cs = createCells();
+        }
+
+        Probe probe = PROBE.get();
+        int index = indexOf(probe.hash & mask);
+        long v = cs.get(index);
+        if (cs.compareAndSet(index, v, v + x)) {
+            probe.collisions = 0;
+            return;
+        }
+
+        // Another thread updated the same cell: move to another cell and, after repeated
+        // collisions, spread all threads over more cells
+        probe.hash = rehash(probe.hash);
+        if (++probe.collisions >= COLLISIONS_BEFORE_GROWING) {
+            probe.collisions = 0;
+            grow();
+        }
+        cs.getAndAdd(indexOf(probe.hash & mask), x);
+    }
+
+    public long sum() {
+        long sum = base.get();
+        AtomicLongArray cs = cells;
+        if (cs != null) {
+            int cellCount = mask + 1;
+            for (int i = 0; i < cellCount; i++) {
+                sum += cs.get(indexOf(i));
+            }
+        }
+        return sum;
+    }
+
+    public long approximateSum() {
+        long sum = base.getOpaque();
+        AtomicLongArray cs = (AtomicLongArray) CELLS.getOpaque(this);
+        if (cs != null) {
+            int cellCount = mask + 1;
+            for (int i = 0; i < cellCount; i++) {
+                sum += cs.getOpaque(indexOf(i));
+            }
+        }
+        return sum;
+    }
+
+    public long sumThenReset() {
+        long sum = base.getAndSet(0);
+        AtomicLongArray cs = cells;
+        if (cs != null) {
+            int cellCount = mask + 1;
+            for (int i = 0; i < cellCount; i++) {
+                sum += cs.getAndSet(indexOf(i), 0);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+
+    /* Package-private visibility for testing*/
+    int getCellCount() {
+        return cells == null ? 0 : mask + 1;
+    }
+
+    static int getMaxCellCount() {
+        return MAX_CELLS;
+    }
+
+    /* Implementation details */
+    private AtomicLongArray createCells() {
+        // Cell i lives at index (i + 1) * PADDING so that the first cell does not share a cache
+        // line with the array header. Only one thread's array is installed
+        CELLS.compareAndSet(this, null, new AtomicLongArray((MAX_CELLS + 1) * PADDING));
+        return cells;
+    }
+
+    private void grow() {
+        int m = mask;
+        if (m + 1 < MAX_CELLS)
+            MASK.compareAndSet(this, m, (m << 1) | 1);
+    }
+
+    // Marsaglia xorshift: cheap, and never maps a non-zero hash to zero
+    private static int rehash(int h) {
+        h ^= h << 13;
+        h ^= h >>> 17;
+        h ^= h << 5;
+        return h;
+    }
+
+    private static int indexOf(int cell) {
+        return (cell + 1) * PADDING;
+    }
+
+    private static int maxCells() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return processors == 1 ? 1 : Integer.highestOneBit(processors - 1) << 1;
+    }
+}
@@ -0,0 +1,160 @@
+package diranieh.utilities;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Hands out dense thread indices in [0, capacity) for arrays indexed by thread, such as the
+ * leaves of a combining tree or the per-thread dequeues of a work-stealing pool.
+ *
+ * Each thread gets its index on its first call to get() and keeps it until it releases it
+ * (release()) or dies. Indices are always allocated lowest first, so with N live threads the
+ * indices in use are close to [0, N), and an index given up by one thread is handed to the next
+ * thread that asks. The indices of threads that died without calling release() are reclaimed
+ * the next time an index is allocated: allocation checks the owners of the indices in use, which
+ * costs O(indices in use) but only happens once per thread. Asking for more indices than the
+ * capacity throws IllegalStateException.
+ *
+ * Allocation and release are synchronized; they are rare. After the first call, get() reads
+ * the index from a per-thread slot (a ThreadLocal lookup and a plain field read). Threads
+ * created by newThread() go further: their index is allocated when they start, released when
+ * they finish, and get() on them is a plain read of a field of the thread itself
+ */
+public class ThreadIndexAllocator {
+    // Per-thread index. Only read and written by the thread it belongs to
+    private static final class Slot {
+        private int index = -1;
+    }
+
+    private final class IndexedThread extends Thread {
+        private int index = -1;
+
+        IndexedThread(Runnable task) {
+            super(task);
+        }
+
+        ThreadIndexAllocator allocator() {
+            return ThreadIndexAllocator.this;
+        }
+
+        @Override
+        public void run() {
+            index = allocate(this);
+            try {
+                super.run();
+            } finally {
+                int allocated = index;
+                index = -1;
+                if (allocated >= 0)
+                    free(allocated, this);
+            }
+        }
+    }
+
+    private final int capacity;
+    private final BitSet used;                          // guarded by this
+    private final WeakReference<Thread>[] owners;       // guarded by this
+    private final ThreadLocal<Slot> slots = ThreadLocal.withInitial(Slot::new);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ThreadIndexAllocator(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+
+        this.capacity = capacity;
+        used = new BitSet(capacity);
+        owners = (WeakReference<Thread>[]) new WeakReference[capacity];
+    }
+
+    // Index of the calling thread, allocated on its first call
+    public int get() {
+        Thread current = Thread.currentThread();
+        if (current instanceof IndexedThread) {
+            IndexedThread thread = (IndexedThread) current;
+            if (thread.index >= 0 && thread.allocator() == this)
+                return thread.index;
+        }
+
+        Slot slot = slots.get();
+        if (slot.index < 0)
+            slot.index = allocate(current);
+        return slot.index;
+    }
+
+    // Gives up the calling thread's index so that another thread can use it. The calling thread
+    // gets a (possibly different) index if it calls get() again
+    public void release() {
+        Thread current = Thread.currentThread();
+        if (current instanceof IndexedThread && ((IndexedThread) current).allocator() == this) {
+            IndexedThread thread = (IndexedThread) current;
+            if (thread.index >= 0) {
+                free(thread.index, current);
+                thread.index = -1;
+            }
+        }
+
+        Slot slot = slots.get();
+        if (slot.index >= 0) {
+            free(slot.index, current);
+            slot.index = -1;
+        }
+        slots.remove();
+    }
+
+    // Creates (but does not start) a thread whose index is allocated when it starts and
+    // released when it finishes
+    public Thread newThread(Runnable task) {
+        return new IndexedThread(task);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /* Package-private visibility for testing*/
+    synchronized int getAllocatedCount() {
+        return used.cardinality();
+    }
+
+    // Frees every index, whether or not its owner is alive. Threads that still hold an index
+    // keep using it. Only meant for test runners that reuse an allocator between tests
+    synchronized void releaseAll() {
+        used.clear();
+        Arrays.fill(owners, null);
+    }
+
+    /* Implementation details */
+    private synchronized int allocate(Thread owner) {
+        reclaimIndicesOfDeadThreads();
+
+        int index = used.nextClearBit(0);
+        if (index >= capacity)
+            throw new IllegalStateException("All " + capacity + " thread indices are in use");
+
+        used.set(index);
+        owners[index] = new WeakReference<>(owner);
+        return index;
+    }
+
+    // Frees the index only if the given thread still owns it: after releaseAll() (or a reclaim)
+    // it may already belong to another thread
+    private synchronized void free(int index, Thread owner) {
+        WeakReference<Thread> current = owners[index];
+        if (current != null && current.get() == owner) {
+            used.clear(index);
+            owners[index] = null;
+        }
+    }
+
+    private void reclaimIndicesOfDeadThreads() {
+        for (int index = used.nextSetBit(0); index >= 0; index = used.nextSetBit(index + 1)) {
+            WeakReference<Thread> owner = owners[index];
+            Thread thread = owner == null ? null : owner.get();
+            if (thread == null || !thread.isAlive()) {
+                used.clear(index);
+                owners[index] = null;
+            }
+        }
+    }
+}
@@ -2,28 +2,32 @@ package diranieh.utilities;
 
 /**
  * Assign sequential Ids to threads in a thread-safe manner. For example,
- *  if thread A is the 1st thread to call get(), it will get 0 (nextId is then POST incremented to 1)
- *  if thread B is the 2nd thread to call get(), it will get 1 (nextId is then POST incremented to 2)
- *  if thread C is the 3rd thread to call get(), it will get 2 (nextId is then POST incremented to 3)
+ *  if thread A is the 1st thread to call get(), it will get 0
+ *  if thread B is the 2nd thread to call get(), it will get 1
+ *  if thread C is the 3rd thread to call get(), it will get 2
  * and so on
+ *
+ * Ids come from a shared {@link ThreadIndexAllocator}, so two threads never get the same id and
+ * the id of a thread that has finished is given to the next new thread. Ids therefore stay below
+ * the number of live threads and can index arrays sized for them (the leaves of a CombiningTree,
+ * the dequeues of a work-stealing pool). At most threadNumberGenerator.capacity (system property,
+ * default 1024) threads can hold an id at the same time
  */
 public class ThreadNumberGenerator {
-    private volatile static int nextId = 0;
-
-    // Always helps to think of ThreadLocal<T> as a Map<Thread, T> which stores
-    // thread-specific values
-    private static ThreadLocal<Integer> threadNumber = ThreadLocal.withInitial(() -> nextId++);
+    private static final ThreadIndexAllocator allocator =
+            new ThreadIndexAllocator(Integer.getInteger("threadNumberGenerator.capacity", 1 << 10));
 
     public static int get() {
-        return threadNumber.get();
+        return allocator.get();
     }
 
+    // Gives up the calling thread's id
     public static void reset() {
-        threadNumber.set(0);
+        allocator.release();
     }
 
     /* Used by test runner ONLY to allow running multiple tests */
     public static void IndexReset() {
-        nextId = 0;
+        allocator.releaseAll();
     }
 }
@@ -0,0 +1,301 @@
+package diranieh.blockingsync.readerwriterlocks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BigReaderWriterLockTest {
+    /*  Invariants and post conditions */
+    @Test
+    public void has_no_readers_or_writers_on_construction() {
+        // Arrange and act
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock();
+
+        // Assert
+        assertFalse(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertTrue(readerWriterLock.isWriterPreference());
+        assertFalse(readerWriterLock.isFair());
+    }
+
+    @Test
+    public void should_have_reader_and_no_writer() {
+        // Arrange
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock();
+
+        // Act
+        Lock readerLock = readerWriterLock.getReaderLock();
+        readerLock.lock();
+
+        // Assert
+        assertTrue(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+
+        // Release lock
+        readerLock.unlock();
+        assertFalse(readerWriterLock.hasReaders());
+    }
+
+    @Test
+    public void should_have_writer_and_no_reader() {
+        // Arrange
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock();
+
+        // Act
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        writerLock.lock();
+
+        // Assert
+        assertTrue(readerWriterLock.hasWriter());
+        assertFalse(readerWriterLock.hasReaders());
+
+        // Release lock
+        writerLock.unlock();
+        assertFalse(readerWriterLock.hasWriter());
+    }
+
+    @Test
+    public void should_throw_when_unlocking_without_lock() {
+        // Arrange
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock();
+
+        // Act and assert
+        assertThrows(IllegalStateException.class, () -> readerWriterLock.getReaderLock().unlock());
+        assertThrows(IllegalStateException.class, () -> readerWriterLock.gerWriterLock().unlock());
+        assertFalse(readerWriterLock.hasReaders());
+    }
+
+    /* Locking behavior */
+    @Test
+    public void should_not_try_lock_writer_when_reader_active_and_reader_when_writer_active() throws InterruptedException {
+        // Arrange
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+
+        // Act and assert: a reader blocks a writer
+        readerLock.lock();
+        assertFalse(writerLock.tryLock());
+        assertFalse(writerLock.tryLock(50, TimeUnit.MILLISECONDS));
+        assertFalse(readerWriterLock.hasWriter());
+        assertTrue(readerLock.tryLock());             // the timed-out writer no longer stops readers
+        readerLock.unlock();
+        readerLock.unlock();
+
+        // A writer blocks readers and writers
+        assertTrue(writerLock.tryLock());
+        assertFalse(readerLock.tryLock());
+        assertFalse(readerLock.tryLock(50, TimeUnit.MILLISECONDS));
+        Thread writerThread = new Thread(() -> assertFalse(writerLock.tryLock()));
+        writerThread.start();
+        writerThread.join();
+        writerLock.unlock();
+
+        assertFalse(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+    }
+
+    @Test
+    public void should_block_writer_when_readers_active() throws InterruptedException {
+        /* Arrange */
+        BigReaderWriterLock readerWriteLock = new BigReaderWriterLock();
+        Lock readerLock = readerWriteLock.getReaderLock();
+        readerLock.lock();
+
+        Thread writerThread = new Thread(() -> {
+            try {
+                Lock writerLock = readerWriteLock.gerWriterLock();
+                writerLock.lockInterruptibly();      // should block until interrupted
+                fail("Got a writer lock when a reader lock was active");
+            } catch (InterruptedException e) {
+                System.out.println("writer thread interrupted");
+            }
+        });
+
+        /* Act */
+        writerThread.start();
+        Thread.sleep(500);
+        writerThread.interrupt();
+        writerThread.join();
+
+        // Assert: the interrupted writer withdrew, so new readers get in again
+        assertFalse(writerThread.isAlive());
+        assertFalse(readerWriteLock.hasWriter());
+        assertTrue(readerLock.tryLock());
+
+        // Release locks
+        readerLock.unlock();
+        readerLock.unlock();
+    }
+
+    @Test
+    public void should_let_waiting_writer_in_before_new_readers() throws InterruptedException {
+        // Arrange
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        List<String> order = new ArrayList<>();
+        readerLock.lock();
+
+        Thread writerThread = new Thread(() -> {
+            writerLock.lock();
+            order.add("writer");
+            writerLock.unlock();
+        });
+        writerThread.start();
+        while (!readerWriterLock.hasWriter()) {
+            Thread.sleep(1);
+        }
+
+        Thread readerThread = new Thread(() -> {
+            readerLock.lock();
+            synchronized (order) {
+                order.add("reader");
+            }
+            readerLock.unlock();
+        });
+        readerThread.start();
+        Thread.sleep(200);
+
+        // Act: the new reader waits behind the announced writer
+        assertTrue(order.isEmpty());
+        readerLock.unlock();
+        writerThread.join();
+        readerThread.join();
+
+        // Assert
+        assertEquals(List.of("writer", "reader"), order);
+    }
+
+    @Test
+    public void should_let_readers_in_while_writer_waits_without_writer_preference() throws InterruptedException {
+        // Arrange
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock(false, true);
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        readerLock.lock();
+
+        CountDownLatch writerDone = new CountDownLatch(1);
+        Thread writerThread = new Thread(() -> {
+            writerLock.lock();
+            writerLock.unlock();
+            writerDone.countDown();
+        });
+        writerThread.start();
+        Thread.sleep(200);
+
+        // Act: another reader still gets in while the writer waits
+        Thread readerThread = new Thread(() -> {
+            assertTrue(readerLock.tryLock());
+            readerLock.unlock();
+        });
+        readerThread.start();
+        readerThread.join();
+        assertEquals(1, writerDone.getCount());
+
+        // Assert: the writer gets in once the readers are gone
+        readerLock.unlock();
+        assertTrue(writerDone.await(5, TimeUnit.SECONDS));
+        assertTrue(readerWriterLock.isFair());
+        assertFalse(readerWriterLock.isWriterPreference());
+    }
+
+    /* Downgrading */
+    @Test
+    public void should_downgrade_writer_to_reader() throws InterruptedException {
+        // Arrange
+        BigReaderWriterLock readerWriterLock = new BigReaderWriterLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        writerLock.lock();
+
+        // Act
+        readerWriterLock.downgrade();
+        Thread readerThread = new Thread(() -> {
+            Lock readerLock = readerWriterLock.getReaderLock();
+            readerLock.lock();      // should not block
+            readerLock.unlock();
+        });
+        readerThread.start();
+        readerThread.join(1000);
+
+        // Assert
+        assertFalse(readerThread.isAlive());
+        assertTrue(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertFalse(writerLock.tryLock());
+        assertThrows(IllegalStateException.class, readerWriterLock::downgrade);
+
+        // Release lock
+        readerWriterLock.getReaderLock().unlock();
+        assertFalse(readerWriterLock.hasReaders());
+    }
+
+    @Test
+    public void should_synchronize_multiple_readers_multiple_writers() throws Exception {
+        for (boolean writerPreference : new boolean[]{true, false}) {
+            // Arrange
+            final int readerThreads = 8;
+            final int writerThreads = 4;
+            final int iterations = 2000;
+            BigReaderWriterLock readerWriterLock = new BigReaderWriterLock(writerPreference, false);
+            Lock readerLock = readerWriterLock.getReaderLock();
+            Lock writerLock = readerWriterLock.gerWriterLock();
+            CyclicBarrier barrier = new CyclicBarrier(readerThreads + writerThreads);
+            AtomicInteger activeReaders = new AtomicInteger(0);
+            AtomicInteger activeWriters = new AtomicInteger(0);
+            AtomicInteger violations = new AtomicInteger(0);
+            long[] value = new long[1];
+            List<Thread> threads = new ArrayList<>();
+
+            for (int i = 0; i < readerThreads + writerThreads; i++) {
+                boolean isWriter = i < writerThreads;
+                threads.add(new Thread(() -> {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int j = 0; j < iterations; j++) {
+                        if (isWriter) {
+                            writerLock.lock();
+                            if (activeWriters.incrementAndGet() != 1 || activeReaders.get() != 0)
+                                violations.incrementAndGet();
+                            value[0]++;
+                            activeWriters.decrementAndGet();
+                            writerLock.unlock();
+                        } else {
+                            readerLock.lock();
+                            activeReaders.incrementAndGet();
+                            if (activeWriters.get() != 0)
+                                violations.incrementAndGet();
+                            activeReaders.decrementAndGet();
+                            readerLock.unlock();
+                        }
+                    }
+                }));
+            }
+
+            // Act
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // Assert
+            assertEquals(0, violations.get());
+            assertEquals((long) writerThreads * iterations, value[0]);
+            assertFalse(readerWriterLock.hasWriter());
+            assertFalse(readerWriterLock.hasReaders());
+        }
+    }
+}
@@ -2,9 +2,12 @@ package diranieh.blockingsync.readerwriterlocks;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -247,6 +250,198 @@ class FairReaderWriterLockTest {
         assertFalse(readerWriterLock.hasReaders());
     }
 
+    /* Upgrading and downgrading */
+    @Test
+    public void should_let_readers_in_with_upgradable_reader_but_not_writer_or_second_upgradable_reader() throws InterruptedException {
+        // Arrange
+        FairReaderWriterLock readerWriterLock = new FairReaderWriterLock();
+        Lock upgradableLock = readerWriterLock.getUpgradableReaderLock();
+        upgradableLock.lock();
+
+        // Act
+        Thread readerThread = new Thread(() -> {
+            Lock readerLock = readerWriterLock.getReaderLock();
+            readerLock.lock();      // should not block
+            readerLock.unlock();
+        });
+        readerThread.start();
+        readerThread.join(1000);
+
+        Thread upgradableThread = new Thread(() -> {
+            try {
+                readerWriterLock.getUpgradableReaderLock().lockInterruptibly();    // should block until interrupted
+                fail("Got an upgradable reader lock when another one was active");
+            } catch (InterruptedException e) {
+                System.out.println("upgradable reader thread interrupted");
+            }
+        });
+        Thread writerThread = new Thread(() -> {
+            try {
+                readerWriterLock.gerWriterLock().lockInterruptibly();              // should block until interrupted
+                fail("Got a writer lock when an upgradable reader lock was active");
+            } catch (InterruptedException e) {
+                System.out.println("writer thread interrupted");
+            }
+        });
+        upgradableThread.start();
+        writerThread.start();
+        Thread.sleep(500);
+        upgradableThread.interrupt();
+        writerThread.interrupt();
+        upgradableThread.join();
+        writerThread.join();
+
+        // Assert
+        assertFalse(readerThread.isAlive());
+        assertTrue(readerWriterLock.hasUpgrader());
+        assertFalse(readerWriterLock.hasWriter());
+
+        // Release lock
+        upgradableLock.unlock();
+        assertFalse(readerWriterLock.hasUpgrader());
+    }
+
+    @Test
+    public void should_upgrade_once_readers_leave() throws InterruptedException {
+        // Arrange
+        FairReaderWriterLock readerWriterLock = new FairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        readerLock.lock();
+        CountDownLatch upgraded = new CountDownLatch(1);
+
+        Thread upgraderThread = new Thread(() -> {
+            readerWriterLock.getUpgradableReaderLock().lock();
+            readerWriterLock.upgrade();         // should block until the reader leaves
+            upgraded.countDown();
+            readerWriterLock.gerWriterLock().unlock();
+        });
+
+        // Act
+        upgraderThread.start();
+        Thread.sleep(500);
+        assertEquals(1, upgraded.getCount());
+        readerLock.unlock();
+        upgraderThread.join(5000);
+
+        // Assert
+        assertEquals(0, upgraded.getCount());
+        assertFalse(readerWriterLock.hasWriter());
+        assertFalse(readerWriterLock.hasUpgrader());
+        assertFalse(readerWriterLock.hasReaders());
+    }
+
+    @Test
+    public void should_downgrade_writer_to_reader() throws InterruptedException {
+        // Arrange
+        FairReaderWriterLock readerWriterLock = new FairReaderWriterLock();
+        readerWriterLock.gerWriterLock().lock();
+
+        // Act
+        readerWriterLock.downgrade();
+        Thread readerThread = new Thread(() -> {
+            Lock readerLock = readerWriterLock.getReaderLock();
+            readerLock.lock();      // should not block
+            readerLock.unlock();
+        });
+        readerThread.start();
+        readerThread.join(1000);
+
+        // Assert
+        assertFalse(readerThread.isAlive());
+        assertTrue(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+
+        // Release lock
+        readerWriterLock.getReaderLock().unlock();
+        assertFalse(readerWriterLock.hasReaders());
+    }
+
+    @Test
+    public void should_try_lock_upgradable_reader_only_when_no_writer_or_upgrader() throws InterruptedException {
+        // Arrange
+        FairReaderWriterLock readerWriterLock = new FairReaderWriterLock();
+        Lock upgradableLock = readerWriterLock.getUpgradableReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+
+        // Act and assert: only one upgradable reader at a time
+        assertTrue(upgradableLock.tryLock());
+        assertFalse(upgradableLock.tryLock());
+        assertFalse(upgradableLock.tryLock(50, TimeUnit.MILLISECONDS));
+        upgradableLock.unlock();
+
+        // Not while a writer is active, but the timed form gets in once the writer leaves
+        writerLock.lock();
+        assertFalse(upgradableLock.tryLock());
+        assertFalse(upgradableLock.tryLock(50, TimeUnit.MILLISECONDS));
+        Thread writerThread = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) { }
+            writerLock.unlock();
+        });
+        writerThread.start();
+        assertTrue(upgradableLock.tryLock(5, TimeUnit.SECONDS));
+        writerThread.join();
+        assertTrue(readerWriterLock.hasUpgrader());
+        upgradableLock.unlock();
+        assertFalse(readerWriterLock.hasUpgrader());
+    }
+
+    @Test
+    public void should_throw_when_upgrading_or_downgrading_without_lock() {
+        // Arrange
+        FairReaderWriterLock readerWriterLock = new FairReaderWriterLock();
+
+        // Act and assert
+        assertThrows(IllegalStateException.class, readerWriterLock::upgrade);
+        assertThrows(IllegalStateException.class, readerWriterLock::downgrade);
+        assertThrows(IllegalStateException.class, () -> readerWriterLock.getUpgradableReaderLock().unlock());
+    }
+
+    // Every thread reads under the upgradable lock and only the first one to find the entry
+    // missing fills it: no other writer can get in between the read and the upgrade
+    @Test
+    public void should_fill_missing_entry_once_when_upgrading() throws InterruptedException {
+        // Arrange
+        final int threadCount = 8;
+        FairReaderWriterLock readerWriterLock = new FairReaderWriterLock();
+        Lock upgradableLock = readerWriterLock.getUpgradableReaderLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        AtomicInteger fills = new AtomicInteger(0);
+        String[] entry = new String[1];
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                upgradableLock.lock();
+                if (entry[0] != null) {
+                    upgradableLock.unlock();
+                } else {
+                    readerWriterLock.upgrade();
+                    entry[0] = "value";
+                    fills.incrementAndGet();
+                    readerWriterLock.downgrade();
+                    assertEquals("value", entry[0]);
+                    readerLock.unlock();
+                }
+            });
+        }
+
+        // Act
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(1, fills.get());
+        assertFalse(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertFalse(readerWriterLock.hasUpgrader());
+    }
+
     private void doDummyWork(String type) {
         System.out.println("[Thread " + Thread.currentThread().getId() + "][Processing]: " + type);
         double result = 0;
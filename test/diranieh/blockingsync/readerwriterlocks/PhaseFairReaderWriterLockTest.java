@@ -0,0 +1,397 @@
+package diranieh.blockingsync.readerwriterlocks;
+
+import diranieh.utilities.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhaseFairReaderWriterLockTest {
+    /*  Invariants and post conditions */
+    @Test
+    public void has_no_readers_or_writers_on_construction() {
+        // Arrange and act
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+
+        // Assert
+        assertFalse(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertFalse(readerWriterLock.hasWaitingWriters());
+    }
+
+    @Test
+    public void should_try_lock_reader_and_writer_only_when_compatible() {
+        // Arrange
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+
+        // Act and assert
+        assertTrue(readerLock.tryLock());
+        assertTrue(readerLock.tryLock());
+        assertFalse(writerLock.tryLock());
+        readerLock.unlock();
+        readerLock.unlock();
+
+        assertTrue(writerLock.tryLock());
+        assertFalse(readerLock.tryLock());
+        assertFalse(writerLock.tryLock());
+        writerLock.unlock();
+
+        assertFalse(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertThrows(IllegalStateException.class, readerLock::unlock);
+        assertThrows(IllegalStateException.class, writerLock::unlock);
+    }
+
+    /* Locking behavior */
+    @Test
+    public void should_block_new_readers_while_writer_waits_for_read_phase() throws InterruptedException {
+        // Arrange
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        List<String> order = new ArrayList<>();
+        readerLock.lock();
+
+        Thread writerThread = new Thread(() -> {
+            writerLock.lock();
+            synchronized (order) {
+                order.add("writer");
+            }
+            writerLock.unlock();
+        });
+        writerThread.start();
+        while (!readerWriterLock.hasWriter()) {
+            Thread.sleep(1);
+        }
+
+        // Act: a reader arriving now waits for the write phase
+        Thread readerThread = new Thread(() -> {
+            readerLock.lock();
+            synchronized (order) {
+                order.add("reader");
+            }
+            readerLock.unlock();
+        });
+        readerThread.start();
+        Thread.sleep(200);
+        assertTrue(order.isEmpty());
+        readerLock.unlock();
+        writerThread.join();
+        readerThread.join();
+
+        // Assert
+        assertEquals(List.of("writer", "reader"), order);
+    }
+
+    @Test
+    public void should_admit_waiting_readers_between_two_writers() throws InterruptedException {
+        // Arrange: a writer holds the lock, a second writer and a reader queue behind it
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        List<String> order = new ArrayList<>();
+        writerLock.lock();
+
+        Thread secondWriter = new Thread(() -> {
+            writerLock.lock();
+            synchronized (order) {
+                order.add("writer");
+            }
+            writerLock.unlock();
+        });
+        secondWriter.start();
+        while (!readerWriterLock.hasWaitingWriters()) {
+            Thread.sleep(1);
+        }
+
+        CountDownLatch readerIn = new CountDownLatch(1);
+        CountDownLatch releaseReader = new CountDownLatch(1);
+        Thread readerThread = new Thread(() -> {
+            readerLock.lock();
+            synchronized (order) {
+                order.add("reader");
+            }
+            readerIn.countDown();
+            try {
+                releaseReader.await();
+            } catch (InterruptedException ignored) { }
+            readerLock.unlock();
+        });
+        readerThread.start();
+        Thread.sleep(200);
+
+        // Act: ending the first write phase lets the reader in ahead of the waiting writer
+        writerLock.unlock();
+        assertTrue(readerIn.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        synchronized (order) {
+            assertEquals(List.of("reader"), order);
+        }
+        releaseReader.countDown();
+        secondWriter.join();
+        readerThread.join();
+
+        // Assert
+        assertEquals(List.of("reader", "writer"), order);
+    }
+
+    @Test
+    public void should_withdraw_interrupted_writer_and_let_waiting_readers_in() throws InterruptedException {
+        // Arrange
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        readerLock.lock();
+
+        Thread writerThread = new Thread(() -> {
+            try {
+                readerWriterLock.gerWriterLock().lockInterruptibly();      // should block until interrupted
+                fail("Got a writer lock when a reader lock was active");
+            } catch (InterruptedException e) {
+                System.out.println("writer thread interrupted");
+            }
+        });
+        writerThread.start();
+        while (!readerWriterLock.hasWriter()) {
+            Thread.sleep(1);
+        }
+
+        CountDownLatch readerIn = new CountDownLatch(1);
+        Thread readerThread = new Thread(() -> {
+            readerLock.lock();      // blocks behind the writer
+            readerIn.countDown();
+            readerLock.unlock();
+        });
+        readerThread.start();
+        Thread.sleep(200);
+        assertEquals(1, readerIn.getCount());
+
+        // Act
+        writerThread.interrupt();
+        writerThread.join();
+
+        // Assert
+        assertTrue(readerIn.await(5, TimeUnit.SECONDS));
+        assertFalse(readerWriterLock.hasWriter());
+        readerLock.unlock();
+        readerThread.join();
+        assertFalse(readerWriterLock.hasReaders());
+    }
+
+    @Test
+    public void should_time_out_reader_while_writer_active() throws InterruptedException {
+        // Arrange
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        writerLock.lock();
+
+        // Act and assert: the timed out reader is not admitted by the next write phase end
+        assertFalse(readerLock.tryLock(50, TimeUnit.MILLISECONDS));
+        writerLock.unlock();
+        assertFalse(readerWriterLock.hasReaders());
+
+        assertTrue(readerLock.tryLock(50, TimeUnit.MILLISECONDS));
+        assertFalse(writerLock.tryLock(50, TimeUnit.MILLISECONDS));
+        readerLock.unlock();
+        assertFalse(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertFalse(readerWriterLock.hasWaitingWriters());
+    }
+
+    @Test
+    public void should_time_out_writer_and_let_waiting_readers_in() throws InterruptedException {
+        // Arrange
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        AtomicInteger acquired = new AtomicInteger(0);
+        readerLock.lock();
+
+        Thread writerThread = new Thread(() -> {
+            try {
+                if (writerLock.tryLock(500, TimeUnit.MILLISECONDS))
+                    acquired.incrementAndGet();
+            } catch (InterruptedException ignored) { }
+        });
+        writerThread.start();
+        while (!readerWriterLock.hasWriter()) {
+            Thread.sleep(1);
+        }
+
+        CountDownLatch readerIn = new CountDownLatch(1);
+        Thread readerThread = new Thread(() -> {
+            readerLock.lock();      // blocks behind the writer
+            readerIn.countDown();
+            readerLock.unlock();
+        });
+        readerThread.start();
+
+        // Act: the writer gives up while the first reader still holds the lock
+        writerThread.join();
+
+        // Assert
+        assertEquals(0, acquired.get());
+        assertTrue(readerIn.await(5, TimeUnit.SECONDS));
+        assertFalse(readerWriterLock.hasWriter());
+        readerLock.unlock();
+        readerThread.join();
+        assertFalse(readerWriterLock.hasReaders());
+
+        // A timed writer gets in once the read phase ends
+        readerLock.lock();
+        Thread secondWriter = new Thread(() -> {
+            try {
+                if (writerLock.tryLock(5, TimeUnit.SECONDS)) {
+                    acquired.incrementAndGet();
+                    writerLock.unlock();
+                }
+            } catch (InterruptedException ignored) { }
+        });
+        secondWriter.start();
+        Thread.sleep(100);
+        readerLock.unlock();
+        secondWriter.join();
+        assertEquals(1, acquired.get());
+        assertFalse(readerWriterLock.hasWriter());
+    }
+
+    @Test
+    public void should_downgrade_writer_to_reader() {
+        // Arrange
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        readerWriterLock.gerWriterLock().lock();
+
+        // Act
+        readerWriterLock.downgrade();
+
+        // Assert
+        assertTrue(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertTrue(readerWriterLock.getReaderLock().tryLock());
+        readerWriterLock.getReaderLock().unlock();
+        readerWriterLock.getReaderLock().unlock();
+        assertFalse(readerWriterLock.hasReaders());
+    }
+
+    /* Latency distribution under mixed load */
+    // Readers and writers hammer the lock. For every acquisition the test records how much of the
+    // other side got in while the thread waited:
+    //  - for a reader, the number of write phases that completed while it waited. Phase fairness
+    //    bounds it by one: the write phase in progress (or next, if a writer is waiting)
+    //  - for a writer, the number of reader critical sections that started while it waited.
+    //    Phase fairness bounds it by the readers of one read phase per writer ahead, plus its own
+    //    read phase: writerThreads * readerThreads
+    // Wait times in nanoseconds are printed alongside. Counts are taken just outside lock(), so a
+    // thread descheduled between the count and lock() can see a few extra phases; the bounds are
+    // therefore asserted on the 99th percentile and the maximum is only printed
+    @Test
+    public void should_bound_reader_and_writer_waits_under_mixed_load() throws Exception {
+        // Arrange
+        final int readerThreads = 6;
+        final int writerThreads = 2;
+        final int readerIterations = 3000;
+        final int writerIterations = 600;
+        PhaseFairReaderWriterLock readerWriterLock = new PhaseFairReaderWriterLock();
+        Lock readerLock = readerWriterLock.getReaderLock();
+        Lock writerLock = readerWriterLock.gerWriterLock();
+        CyclicBarrier barrier = new CyclicBarrier(readerThreads + writerThreads);
+        AtomicLong writePhases = new AtomicLong(0);
+        AtomicLong readsStarted = new AtomicLong(0);
+        AtomicInteger violations = new AtomicInteger(0);
+        AtomicInteger activeReaders = new AtomicInteger(0);
+        LatencyHistogram readerPhasesWaited = new LatencyHistogram();
+        LatencyHistogram writerReadsWaited = new LatencyHistogram();
+        LatencyHistogram readerWaitNanos = new LatencyHistogram();
+        LatencyHistogram writerWaitNanos = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < readerThreads + writerThreads; i++) {
+            boolean isWriter = i < writerThreads;
+            threads.add(new Thread(() -> {
+                LatencyHistogram phases = new LatencyHistogram();
+                LatencyHistogram waits = new LatencyHistogram();
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                for (int j = 0; j < (isWriter ? writerIterations : readerIterations); j++) {
+                    if (isWriter) {
+                        long readsBefore = readsStarted.get();
+                        long start = System.nanoTime();
+                        writerLock.lock();
+                        waits.record(System.nanoTime() - start);
+                        phases.record(readsStarted.get() - readsBefore);
+                        if (activeReaders.get() != 0)
+                            violations.incrementAndGet();
+                        doDummyWork(200);
+                        writePhases.incrementAndGet();
+                        writerLock.unlock();
+                    } else {
+                        long phasesBefore = writePhases.get();
+                        long start = System.nanoTime();
+                        readerLock.lock();
+                        waits.record(System.nanoTime() - start);
+                        phases.record(writePhases.get() - phasesBefore);
+                        readsStarted.incrementAndGet();
+                        activeReaders.incrementAndGet();
+                        doDummyWork(100);
+                        activeReaders.decrementAndGet();
+                        readerLock.unlock();
+                    }
+                    doDummyWork(50);
+                }
+                synchronized (threads) {
+                    (isWriter ? writerReadsWaited : readerPhasesWaited).add(phases);
+                    (isWriter ? writerWaitNanos : readerWaitNanos).add(waits);
+                }
+            }));
+        }
+
+        // Act
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        report("reader write phases waited", readerPhasesWaited);
+        report("reader wait (ns)", readerWaitNanos);
+        report("writer reads waited", writerReadsWaited);
+        report("writer wait (ns)", writerWaitNanos);
+
+        assertEquals(0, violations.get());
+        assertEquals((long) readerThreads * readerIterations, readerPhasesWaited.getTotalCount());
+        assertEquals((long) writerThreads * writerIterations, writerReadsWaited.getTotalCount());
+        assertTrue(readerPhasesWaited.getValueAtPercentile(99) <= 1);
+        assertTrue(writerReadsWaited.getValueAtPercentile(99) <= (long) writerThreads * readerThreads);
+        assertFalse(readerWriterLock.hasReaders());
+        assertFalse(readerWriterLock.hasWriter());
+        assertFalse(readerWriterLock.hasWaitingWriters());
+    }
+
+    private static void report(String name, LatencyHistogram histogram) {
+        System.out.println(String.format("%s: p50=%d p99=%d p99.9=%d max=%d", name,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMaxValue()));
+    }
+
+    private static void doDummyWork(int iterations) {
+        double result = 0;
+        for (int i = 0; i < iterations; i++) {
+            result += Math.sin(i * 3.14159 / 180);
+        }
+    }
+}
@@ -2,8 +2,13 @@ package diranieh.blockingsync.reentrantlock;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -141,6 +146,187 @@ class SimpleReentrantLockTest {
         assertEquals(-1, lock.getOwnerId());
     }
 
+    @Test
+    public void try_lock_fails_while_another_thread_holds_the_lock() throws InterruptedException {
+        // Arrange
+        SimpleReentrantLock lock = new SimpleReentrantLock();
+        lock.lock();
+        boolean[] acquired = new boolean[2];
+
+        // Act
+        Thread thread = new Thread(() -> {
+            try {
+                acquired[0] = lock.tryLock();
+                acquired[1] = lock.tryLock(20, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        // Assert
+        assertFalse(acquired[0]);
+        assertFalse(acquired[1]);
+        assertFalse(lock.hasQueuedThreads());      // the timed-out waiter left the queue
+        assertTrue(lock.tryLock());                // reentrant
+        assertEquals(2, lock.getHoldCount());
+        lock.unlock();
+        lock.unlock();
+    }
+
+    @Test
+    public void timed_try_lock_succeeds_when_lock_is_released_in_time() throws InterruptedException {
+        // Arrange
+        SimpleReentrantLock lock = new SimpleReentrantLock();
+        lock.lock();
+        boolean[] acquired = new boolean[1];
+        Thread thread = new Thread(() -> {
+            try {
+                acquired[0] = lock.tryLock(10, TimeUnit.SECONDS);
+                if (acquired[0])
+                    lock.unlock();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // Act
+        thread.start();
+        waitUntilQueued(lock, 1);
+        lock.unlock();
+        thread.join();
+
+        // Assert
+        assertTrue(acquired[0]);
+        assertEquals(-1, lock.getOwnerId());
+    }
+
+    @Test
+    public void lock_interruptibly_throws_when_interrupted_while_waiting() throws InterruptedException {
+        // Arrange
+        SimpleReentrantLock lock = new SimpleReentrantLock();
+        lock.lock();
+        boolean[] interrupted = new boolean[1];
+        Thread thread = new Thread(() -> {
+            try {
+                lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                interrupted[0] = true;
+            }
+        });
+
+        // Act
+        thread.start();
+        waitUntilQueued(lock, 1);
+        thread.interrupt();
+        thread.join();
+
+        // Assert
+        assertTrue(interrupted[0]);
+        assertEquals(Thread.currentThread().getId(), lock.getOwnerId());
+        lock.unlock();
+        assertFalse(lock.hasQueuedThreads());
+    }
+
+    @Test
+    public void fair_lock_is_acquired_in_arrival_order() throws InterruptedException {
+        // Arrange
+        SimpleReentrantLock lock = new SimpleReentrantLock(true);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        int count = 5;
+        Thread[] threads = new Thread[count];
+        lock.lock();
+
+        // Act: queue the threads one at a time, then release the lock
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                lock.lock();
+                try {
+                    order.add(index);
+                } finally {
+                    lock.unlock();
+                }
+            });
+            threads[i].start();
+            waitUntilQueued(lock, i + 1);
+        }
+        lock.unlock();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertTrue(lock.isFair());
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+    }
+
+    @Test
+    public void condition_await_releases_all_holds_until_signalled() throws InterruptedException {
+        // Arrange
+        SimpleReentrantLock lock = new SimpleReentrantLock();
+        Condition ready = lock.newCondition();
+        CountDownLatch waiting = new CountDownLatch(1);
+        long[] holdCountAfterAwait = new long[1];
+        boolean[] flag = new boolean[1];
+        Thread thread = new Thread(() -> {
+            lock.lock();
+            lock.lock();
+            try {
+                waiting.countDown();
+                while (!flag[0])
+                    ready.await();
+                holdCountAfterAwait[0] = lock.getHoldCount();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+                lock.unlock();
+            }
+        });
+
+        // Act
+        thread.start();
+        waiting.await();
+        lock.lock();            // only possible once the waiter released both holds
+        try {
+            flag[0] = true;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+        thread.join();
+
+        // Assert
+        assertEquals(2, holdCountAfterAwait[0]);
+        assertEquals(-1, lock.getOwnerId());
+    }
+
+    @Test
+    public void condition_await_times_out_and_requires_the_lock() throws InterruptedException {
+        // Arrange
+        SimpleReentrantLock lock = new SimpleReentrantLock();
+        Condition never = lock.newCondition();
+
+        // Act and assert
+        assertThrows(IllegalMonitorStateException.class, never::await);
+        assertThrows(IllegalMonitorStateException.class, never::signal);
+        lock.lock();
+        try {
+            assertFalse(never.await(10, TimeUnit.MILLISECONDS));
+            assertEquals(1, lock.getHoldCount());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void waitUntilQueued(SimpleReentrantLock lock, int count) throws InterruptedException {
+        while (lock.getQueueLength() < count) {
+            Thread.sleep(1);
+        }
+    }
+
     private void doDummyWork(SimpleReentrantLock lock) {
         lock.lock();
         lock.lock();        // Reenter
@@ -0,0 +1,300 @@
+package diranieh.blockingsync.semaphore;
+
+import diranieh.blockingsync.semaphore.AdmissionSemaphore.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionSemaphoreTest {
+    /* Invariants and post conditions */
+    @Test
+    void should_have_full_limit_after_construction() {
+        // Arrange and act
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(8, 2, 32);
+
+        // Assert
+        assertEquals(8, semaphore.getLimit());
+        assertEquals(8, semaphore.availablePermits());
+        assertEquals(0, semaphore.getInFlight());
+        assertEquals(0, semaphore.getQueueLength());
+    }
+
+    @Test
+    void should_throw_on_invalid_arguments_and_unmatched_release() {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(4);
+
+        // Act and assert
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionSemaphore(4, 8, 16));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionSemaphore(4, 1, 16, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> semaphore.acquire(0));
+        assertThrows(IllegalArgumentException.class, () -> semaphore.acquire(5));
+        assertThrows(IllegalMonitorStateException.class, semaphore::release);
+        semaphore.acquire(2);
+        assertThrows(IllegalMonitorStateException.class, () -> semaphore.release(3));
+        assertEquals(2, semaphore.getInFlight());
+    }
+
+    /* Weighted permits */
+    @Test
+    void should_admit_requests_by_weight() throws InterruptedException {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(10);
+
+        // Act and assert
+        semaphore.acquire(6);
+        assertTrue(semaphore.tryAcquire(4));
+        assertFalse(semaphore.tryAcquire(1));
+        assertFalse(semaphore.tryAcquire(1, 50, TimeUnit.MILLISECONDS));
+        assertEquals(0, semaphore.getQueueLength());
+        semaphore.release(6);
+        assertEquals(6, semaphore.availablePermits());
+        assertTrue(semaphore.tryAcquire(5, 50, TimeUnit.MILLISECONDS));
+        semaphore.release(9);
+        assertEquals(0, semaphore.getInFlight());
+    }
+
+    @Test
+    void should_admit_request_heavier_than_limit_alone() throws InterruptedException {
+        // Arrange: the limit shrank below the weight of a request
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(2, 1, 8);
+        semaphore.acquire(1);
+        AtomicInteger admitted = new AtomicInteger(0);
+
+        Thread thread = new Thread(() -> {
+            semaphore.acquire(5);
+            admitted.incrementAndGet();
+            semaphore.release(5);
+        });
+
+        // Act
+        thread.start();
+        waitForQueueLength(semaphore, 1);
+        assertEquals(0, admitted.get());
+        semaphore.release(1);
+        thread.join();
+
+        // Assert
+        assertEquals(1, admitted.get());
+        assertEquals(0, semaphore.getInFlight());
+    }
+
+    /* Ordering */
+    @Test
+    void should_not_let_lighter_requests_overtake_queued_heavy_request() throws InterruptedException {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(4);
+        semaphore.acquire(3);
+        List<String> order = new ArrayList<>();
+
+        Thread heavy = startRecording(semaphore, 4, Priority.NORMAL, "heavy", order);
+        waitForQueueLength(semaphore, 1);
+
+        // Act: one permit is free, but the light request queues behind the heavy one
+        assertFalse(semaphore.tryAcquire(1));
+        Thread light = startRecording(semaphore, 1, Priority.NORMAL, "light", order);
+        waitForQueueLength(semaphore, 2);
+        semaphore.release(3);
+        heavy.join();
+        light.join();
+
+        // Assert
+        assertEquals(List.of("heavy", "light"), order);
+    }
+
+    @Test
+    void should_admit_higher_priority_waiters_first() throws InterruptedException {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(1);
+        semaphore.acquire();
+        List<String> order = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        threads.add(startRecording(semaphore, 1, Priority.LOW, "low", order));
+        waitForQueueLength(semaphore, 1);
+        threads.add(startRecording(semaphore, 1, Priority.NORMAL, "normal1", order));
+        waitForQueueLength(semaphore, 2);
+        threads.add(startRecording(semaphore, 1, Priority.NORMAL, "normal2", order));
+        waitForQueueLength(semaphore, 3);
+        threads.add(startRecording(semaphore, 1, Priority.HIGH, "high", order));
+        waitForQueueLength(semaphore, 4);
+
+        // Act
+        semaphore.release();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(List.of("high", "normal1", "normal2", "low"), order);
+        assertEquals(0, semaphore.getInFlight());
+    }
+
+    /* Timeouts and interrupts */
+    @Test
+    void should_withdraw_timed_out_and_interrupted_waiters() throws InterruptedException {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(2);
+        semaphore.acquire(2);
+        AtomicInteger interrupted = new AtomicInteger(0);
+
+        Thread thread = new Thread(() -> {
+            try {
+                semaphore.acquireInterruptibly(1, Priority.HIGH);   // should block until interrupted
+                fail("Semaphore was acquired");
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+
+        // Act
+        assertFalse(semaphore.tryAcquire(1, Priority.LOW, 50, TimeUnit.MILLISECONDS));
+        thread.start();
+        waitForQueueLength(semaphore, 1);
+        thread.interrupt();
+        thread.join();
+
+        // Assert
+        assertEquals(1, interrupted.get());
+        assertEquals(0, semaphore.getQueueLength());
+        assertEquals(2, semaphore.getInFlight());
+        semaphore.release(2);
+        assertEquals(0, semaphore.getInFlight());
+    }
+
+    /* Adaptive limit */
+    @Test
+    void should_decrease_limit_on_slow_samples_and_increase_it_on_fast_samples() throws InterruptedException {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(20, 4, 40);
+        final long fast = TimeUnit.MICROSECONDS.toNanos(100);
+        final long slow = TimeUnit.MILLISECONDS.toNanos(1);
+
+        // Act: slow samples, each more than one round trip after the previous cut
+        semaphore.acquire();
+        semaphore.release(1, fast);
+        assertEquals(fast, semaphore.getMinLatency());
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(2);
+            semaphore.acquire();
+            semaphore.release(1, slow);
+        }
+        int decreased = semaphore.getLimit();
+
+        // Slow samples within one round trip of the last cut do not cut again
+        semaphore.acquire();
+        semaphore.release(1, TimeUnit.SECONDS.toNanos(10));
+        semaphore.acquire();
+        semaphore.release(1, TimeUnit.SECONDS.toNanos(10));
+        assertEquals(decreased, semaphore.getLimit());
+
+        // Fast samples with the limit at least half in use grow it again
+        int before = semaphore.getLimit();
+        semaphore.acquire(before / 2 + 1);
+        for (int i = 0; i < 10 * before; i++) {
+            semaphore.acquire();
+            semaphore.release(1, fast);
+        }
+        semaphore.release(before / 2 + 1);
+
+        // Assert
+        assertTrue(decreased < 20, "limit was not decreased: " + decreased);
+        assertTrue(decreased >= 4);
+        assertTrue(semaphore.getLimit() > before, "limit was not increased: " + semaphore.getLimit());
+        assertTrue(semaphore.getLimit() <= 40);
+    }
+
+    @Test
+    void should_not_increase_limit_when_mostly_idle() {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(10, 1, 100);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            semaphore.acquire();
+            semaphore.release(1, 1000);
+        }
+
+        // Assert
+        assertEquals(10, semaphore.getLimit());
+    }
+
+    @Test
+    void should_ignore_samples_with_fixed_limit() {
+        // Arrange
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(5);
+
+        // Act
+        semaphore.acquire();
+        semaphore.release(1, 1000);
+        semaphore.acquire();
+        semaphore.release(1, TimeUnit.SECONDS.toNanos(1));
+
+        // Assert
+        assertEquals(5, semaphore.getLimit());
+    }
+
+    /* Stress */
+    @Test
+    void should_bound_weight_in_flight_under_contention() throws InterruptedException {
+        // Arrange
+        final int limit = 8;
+        final int threadCount = 64;
+        final int iterations = 300;
+        AdmissionSemaphore semaphore = new AdmissionSemaphore(limit);
+        AtomicInteger inFlight = new AtomicInteger(0);
+        AtomicInteger violations = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadCount; i++) {
+            final int permits = 1 + i % 3;
+            final Priority priority = Priority.values()[i % Priority.values().length];
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    semaphore.acquire(permits, priority);
+                    if (inFlight.addAndGet(permits) > limit)
+                        violations.incrementAndGet();
+                    inFlight.addAndGet(-permits);
+                    semaphore.release(permits);
+                }
+            }));
+        }
+
+        // Act
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(0, violations.get());
+        assertEquals(0, semaphore.getInFlight());
+        assertEquals(0, semaphore.getQueueLength());
+    }
+
+    /* Helpers */
+    private static Thread startRecording(AdmissionSemaphore semaphore, int permits, Priority priority, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            semaphore.acquire(permits, priority);
+            synchronized (order) {
+                order.add(name);
+            }
+            semaphore.release(permits);
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void waitForQueueLength(AdmissionSemaphore semaphore, int length) throws InterruptedException {
+        while (semaphore.getQueueLength() != length) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -2,8 +2,13 @@ package diranieh.blockingsync.semaphore;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.fail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class SimpleSemaphoreTest {
     /* Invariants and post conditions */
@@ -88,4 +93,216 @@ class SimpleSemaphoreTest {
         thread.join();
         assertEquals(0, semaphore.getSlotsUsed());
     }
-}
\ No newline at end of file
+
+    @Test
+    void should_acquire_and_release_multiple_slots() {
+        // Arrange
+        SimpleSemaphore semaphore = new SimpleSemaphore(10);
+
+        // Act & Asserts
+        semaphore.acquire(4);
+        assertEquals(4, semaphore.getSlotsUsed());
+        assertTrue(semaphore.tryAcquire(6));
+        assertFalse(semaphore.tryAcquire());
+        semaphore.release(7);
+        assertEquals(3, semaphore.getSlotsUsed());
+        assertEquals(7, semaphore.availablePermits());
+        semaphore.release(3);
+        assertEquals(0, semaphore.getSlotsUsed());
+    }
+
+    @Test
+    void should_throw_on_invalid_arguments_and_unmatched_release() {
+        // Arrange
+        SimpleSemaphore semaphore = new SimpleSemaphore(2);
+
+        // Act & Asserts
+        assertThrows(IllegalArgumentException.class, () -> new SimpleSemaphore(0));
+        assertThrows(IllegalArgumentException.class, () -> semaphore.acquire(3));
+        assertThrows(IllegalArgumentException.class, () -> semaphore.release(-1));
+        assertThrows(IllegalMonitorStateException.class, semaphore::release);
+        semaphore.acquire();
+        assertThrows(IllegalMonitorStateException.class, () -> semaphore.release(2));
+        assertEquals(1, semaphore.getSlotsUsed());
+    }
+
+    @Test
+    void should_time_out_when_slots_are_unavailable() throws InterruptedException {
+        // Arrange
+        SimpleSemaphore semaphore = new SimpleSemaphore(2);
+        semaphore.acquire();
+
+        // Act & Asserts
+        long start = System.nanoTime();
+        assertFalse(semaphore.tryAcquire(2, 100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertFalse(semaphore.hasQueuedThreads());
+        assertTrue(semaphore.tryAcquire(1, 100, TimeUnit.MILLISECONDS));
+        assertEquals(2, semaphore.getSlotsUsed());
+    }
+
+    @Test
+    void should_throw_when_interrupted_while_waiting() throws InterruptedException {
+        // Arrange
+        SimpleSemaphore semaphore = new SimpleSemaphore(1);
+        semaphore.acquire();
+        AtomicInteger interrupted = new AtomicInteger(0);
+
+        Thread thread = new Thread(() -> {
+            try {
+                semaphore.acquireInterruptibly();      // should block until interrupted
+                fail("Semaphore was acquired");
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+
+        // Act
+        thread.start();
+        while (!semaphore.hasQueuedThreads()) {
+            Thread.sleep(1);
+        }
+        thread.interrupt();
+        thread.join();
+
+        // Assert: the waiter left the queue and the slot count is unchanged
+        assertEquals(1, interrupted.get());
+        assertEquals(0, semaphore.getQueueLength());
+        assertEquals(1, semaphore.getSlotsUsed());
+    }
+
+    @Test
+    void should_restore_interrupt_status_after_uninterruptible_acquire() throws InterruptedException {
+        // Arrange
+        SimpleSemaphore semaphore = new SimpleSemaphore(1);
+        semaphore.acquire();
+        AtomicInteger interruptedAfterAcquire = new AtomicInteger(0);
+
+        Thread thread = new Thread(() -> {
+            semaphore.acquire();        // keeps waiting when interrupted
+            if (Thread.currentThread().isInterrupted())
+                interruptedAfterAcquire.incrementAndGet();
+            semaphore.release();
+        });
+
+        // Act
+        thread.start();
+        while (!semaphore.hasQueuedThreads()) {
+            Thread.sleep(1);
+        }
+        thread.interrupt();
+        Thread.sleep(100);
+        assertTrue(thread.isAlive());
+        semaphore.release();
+        thread.join();
+
+        // Assert
+        assertEquals(1, interruptedAfterAcquire.get());
+        assertEquals(0, semaphore.getSlotsUsed());
+    }
+
+    @Test
+    void should_hand_out_slots_in_arrival_order_when_fair() throws InterruptedException {
+        // Arrange
+        final int waiterCount = 5;
+        SimpleSemaphore semaphore = new SimpleSemaphore(1, true);
+        semaphore.acquire();
+        List<Integer> order = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < waiterCount; i++) {
+            final int id = i;
+            Thread thread = new Thread(() -> {
+                semaphore.acquire();
+                synchronized (order) {
+                    order.add(id);
+                }
+                semaphore.release();
+            });
+            threads.add(thread);
+            thread.start();
+            while (semaphore.getQueueLength() != i + 1) {
+                Thread.sleep(1);
+            }
+        }
+
+        // Act
+        semaphore.release();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+        assertEquals(0, semaphore.getSlotsUsed());
+    }
+
+    @Test
+    void should_wake_as_many_waiters_as_released_slots_allow() throws InterruptedException {
+        // Arrange
+        final int waiterCount = 3;
+        SimpleSemaphore semaphore = new SimpleSemaphore(waiterCount);
+        semaphore.acquire(waiterCount);
+        CountDownLatch acquired = new CountDownLatch(waiterCount);
+        CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < waiterCount; i++) {
+            new Thread(() -> {
+                semaphore.acquire();
+                acquired.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException ignored) { }
+                semaphore.release();
+            }).start();
+        }
+        while (semaphore.getQueueLength() != waiterCount) {
+            Thread.sleep(1);
+        }
+
+        // Act: a single release of all slots lets every waiter in
+        semaphore.release(waiterCount);
+
+        // Assert
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(waiterCount, semaphore.getSlotsUsed());
+        done.countDown();
+    }
+
+    @Test
+    void should_bound_in_flight_threads() throws InterruptedException {
+        // Arrange
+        final int totalCapacity = 4;
+        final int threadCount = 200;
+        final int iterations = 200;
+        SimpleSemaphore semaphore = new SimpleSemaphore(totalCapacity);
+        AtomicInteger inFlight = new AtomicInteger(0);
+        AtomicInteger violations = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadCount; i++) {
+            final int permits = 1 + i % 2;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    semaphore.acquire(permits);
+                    if (inFlight.addAndGet(permits) > totalCapacity)
+                        violations.incrementAndGet();
+                    inFlight.addAndGet(-permits);
+                    semaphore.release(permits);
+                }
+            }));
+        }
+
+        // Act
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(0, violations.get());
+        assertEquals(0, semaphore.getSlotsUsed());
+        assertFalse(semaphore.hasQueuedThreads());
+    }
+}
@@ -51,7 +51,7 @@ public class ClosedAddressStepDefinitions implements En {
 
         Then("only these items should exist", (DataTable data) -> {
             List<Integer> numbers = data.asList(Integer.class);
-            Assertions.assertEquals(2, hashSet.size.get());
+            Assertions.assertEquals(2, hashSet.size.sum());
             numbers.forEach(number -> {
                 Assertions.assertTrue( hashSet.contains(number));
             });
@@ -122,7 +122,7 @@ public class ClosedAddressStepDefinitions implements En {
         });
 
         Then("total item count is {int}", (Integer totalItemCount) -> {
-            assertEquals(totalItemCount, hashSet.size.get());
+            assertEquals(totalItemCount.longValue(), hashSet.size.sum());
         });
 
         And("all items are added from all threads", () -> {
@@ -0,0 +1,20 @@
+package diranieh.concurrentQueues;
+
+import diranieh.locks.MCSLock;
+
+// Runs every BoundedConcurrentBlockingQueue test with MCSLocks (and their conditions) instead of ReentrantLocks
+class BoundedConcurrentBlockingQueueOnMCSLockTest extends BoundedConcurrentBlockingQueueTest {
+    @Override
+    public Queue<Integer> createQueue(int capacity) {
+        return new BoundedConcurrentBlockingQueue<Integer>(capacity, MCSLock::new);
+    }
+
+    @Override
+    public Queue<Integer> createAndPopulateQueue(int capacity, Iterable<Integer> items) throws InterruptedException {
+        BoundedConcurrentBlockingQueue<Integer> queue = new BoundedConcurrentBlockingQueue<>(capacity, MCSLock::new);
+        for (Integer item: items) {
+            queue.enqueue(item);
+        }
+        return queue;
+    }
+}
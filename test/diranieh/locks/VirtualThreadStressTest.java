@@ -0,0 +1,89 @@
+package diranieh.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs thousands of virtual threads against each spin lock. A lock whose waiters spin keeps
+ * every carrier thread busy, so the virtual thread holding the lock (unmounted by the yield in
+ * the critical section) never gets a carrier back and the run hangs. The locks park virtual
+ * waiters instead, so every task should finish.
+ *
+ * Run with -Djdk.virtualThreadScheduler.parallelism=2 to make carriers scarce. The tests are
+ * skipped before Java 21, where virtual threads do not exist
+ */
+class VirtualThreadStressTest {
+    private static final int THREADS = 2_000;
+    private static final int INCREMENTS = 50;
+
+    private long _counter;
+
+    @Test
+    void test_and_set_lock_should_not_starve_virtual_threads() throws Exception {
+        runAgainst(new TestAndSetLock());
+    }
+
+    @Test
+    void test_and_test_and_set_lock_should_not_starve_virtual_threads() throws Exception {
+        runAgainst(new TestAndTestAndSetLock());
+    }
+
+    @Test
+    void anderson_lock_should_not_starve_virtual_threads() throws Exception {
+        runAgainst(new ALock(THREADS));
+    }
+
+    @Test
+    void clh_lock_should_not_starve_virtual_threads() throws Exception {
+        runAgainst(new CLHLock());
+    }
+
+    @Test
+    void mcs_lock_should_not_starve_virtual_threads() throws Exception {
+        runAgainst(new MCSLock());
+    }
+
+    private void runAgainst(Lock lock) throws Exception {
+        // Arrange
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        assumeTrue(executor != null, "Virtual threads need Java 21 or later");
+        _counter = 0;
+
+        // Act
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < INCREMENTS; j++) {
+                    lock.lock();
+                    try {
+                        _counter++;
+                        if ((j & 7) == 0)
+                            Thread.yield();     // unmount while holding the lock
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        // Assert
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS), "Starvation or carrier deadlock");
+        assertEquals((long) THREADS * INCREMENTS, _counter);
+    }
+
+    // Looked up reflectively so that the tests compile (and are skipped) before Java 21
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
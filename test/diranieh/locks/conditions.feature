@@ -0,0 +1,23 @@
+Feature: Conditions for queue locks
+
+  Scenario Outline: signalling waiting threads
+    Given a condition of a <implementation> lock
+    When <waiterCount> threads await the condition
+    And the condition is signalled once
+    Then 1 waiting threads return holding the lock
+    When the condition is signalled to all
+    Then <waiterCount> waiting threads return holding the lock
+    Examples:
+      | implementation | waiterCount |
+      | "CLHLock"      | 3           |
+      | "MCSLock"      | 3           |
+
+  Scenario Outline: timed and interrupted waits
+    Given a condition of a <implementation> lock
+    Then a timed await without a signal times out holding the lock
+    And an interrupted await throws holding the lock
+    And a waiter that timed out does not take the signal of a later waiter
+    Examples:
+      | implementation |
+      | "CLHLock"      |
+      | "MCSLock"      |
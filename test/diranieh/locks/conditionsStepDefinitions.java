@@ -0,0 +1,194 @@
+package diranieh.locks;
+
+import io.cucumber.java8.En;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+public class conditionsStepDefinitions implements En {
+
+    private Lock _lock;
+    private Condition _condition;
+    private List<Thread> _waiters;
+    private AtomicInteger _returned;
+    private boolean _signalled;         // protected by _lock. The condition predicate
+
+    public conditionsStepDefinitions() {
+        Given("a condition of a {string} lock", (String implementation) -> {
+            switch (implementation) {
+                case "CLHLock":
+                    _lock = new CLHLock();
+                    break;
+                case "MCSLock":
+                    _lock = new MCSLock();
+                    break;
+            }
+            _condition = _lock.newCondition();
+        });
+
+        When("{int} threads await the condition", (Integer waiterCount) -> {
+            _waiters = new ArrayList<>();
+            _returned = new AtomicInteger(0);
+            CountDownLatch waiting = new CountDownLatch(waiterCount);
+            for (int i = 0; i < waiterCount; i++) {
+                Thread thread = new Thread(() -> {
+                    _lock.lock();
+                    try {
+                        waiting.countDown();
+                        _condition.awaitUninterruptibly();
+                        _returned.incrementAndGet();
+                    } finally {
+                        _lock.unlock();
+                    }
+                });
+                _waiters.add(thread);
+                thread.start();
+            }
+            waiting.await();
+            waitForWaiters(waiterCount);
+        });
+
+        And("the condition is signalled once", () -> {
+            _lock.lock();
+            try {
+                _condition.signal();
+            } finally {
+                _lock.unlock();
+            }
+        });
+
+        When("the condition is signalled to all", () -> {
+            _lock.lock();
+            try {
+                _condition.signalAll();
+            } finally {
+                _lock.unlock();
+            }
+            for (Thread thread : _waiters) {
+                thread.join();
+            }
+        });
+
+        Then("{int} waiting threads return holding the lock", (Integer count) -> {
+            // Returning waiters increment the count while holding the lock
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (_returned.get() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);       // give any wrongly woken waiter time to show up
+            Assert.assertEquals(count.intValue(), _returned.get());
+        });
+
+        Then("a timed await without a signal times out holding the lock", () -> {
+            _lock.lock();
+            try {
+                long start = System.nanoTime();
+                Assert.assertFalse(_condition.await(20, TimeUnit.MILLISECONDS));
+                Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+
+                // Still holding the lock: another thread cannot take it
+                Assert.assertFalse(tryLockFromAnotherThread());
+            } finally {
+                _lock.unlock();
+            }
+        });
+
+        And("an interrupted await throws holding the lock", () -> {
+            AtomicBoolean interruptedHoldingLock = new AtomicBoolean(false);
+            CountDownLatch waiting = new CountDownLatch(1);
+            Thread thread = new Thread(() -> {
+                _lock.lock();
+                try {
+                    waiting.countDown();
+                    _condition.await();
+                } catch (InterruptedException exception) {
+                    // Other threads can only observe this flag once the lock is released
+                    interruptedHoldingLock.set(true);
+                } finally {
+                    _lock.unlock();
+                }
+            });
+            thread.start();
+            waiting.await();
+            waitForWaiters(1);
+            thread.interrupt();
+            thread.join();
+
+            Assert.assertTrue(interruptedHoldingLock.get());
+        });
+
+        And("a waiter that timed out does not take the signal of a later waiter", () -> {
+            // A waiter times out, then a second waiter waits for the predicate. The signal
+            // must reach the second waiter, not the node left behind by the first
+            _lock.lock();
+            try {
+                Assert.assertFalse(_condition.await(1, TimeUnit.MILLISECONDS));
+            } finally {
+                _lock.unlock();
+            }
+
+            _signalled = false;
+            CountDownLatch waiting = new CountDownLatch(1);
+            Thread thread = new Thread(() -> {
+                _lock.lock();
+                try {
+                    waiting.countDown();
+                    while (!_signalled) {
+                        _condition.awaitUninterruptibly();
+                    }
+                } finally {
+                    _lock.unlock();
+                }
+            });
+            thread.start();
+            waiting.await();
+            waitForWaiters(1);
+
+            _lock.lock();
+            try {
+                _signalled = true;
+                _condition.signal();
+            } finally {
+                _lock.unlock();
+            }
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+            Assert.assertFalse(thread.isAlive());
+        });
+    }
+
+    // Waits until the given number of threads are parked on the condition (they released the lock)
+    private void waitForWaiters(int count) throws InterruptedException {
+        QueueLockCondition condition = (QueueLockCondition) _condition;
+        while (true) {
+            _lock.lock();
+            try {
+                if (condition.getWaiterCount() == count)
+                    return;
+            } finally {
+                _lock.unlock();
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    // Tries the lock from a new thread, releasing it again if acquired
+    private boolean tryLockFromAnotherThread() throws InterruptedException {
+        AtomicBoolean acquired = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            if (_lock.tryLock()) {
+                acquired.set(true);
+                _lock.unlock();
+            }
+        });
+        thread.start();
+        thread.join();
+        return acquired.get();
+    }
+}
@@ -0,0 +1,24 @@
+Feature: Flat-combining delegation lock
+
+  Scenario Outline: delegated counter updates
+    Given a flat-combining lock protecting a counter
+    And <threadCount> threads each increment the counter <incrementCount> times through the flat-combining lock
+    When the threads delegate their increments
+    Then the delegated counter is <finalCount>
+    And every increment returned a distinct value
+    And the combiners ran <finalCount> operations
+    Examples:
+      | threadCount | incrementCount | finalCount |
+      | 1           | 3              | 3          |
+      | 8           | 5000           | 40000      |
+
+  Scenario: delegated map updates
+    Given a flat-combining lock protecting a map
+    When 4 threads each add 1000 distinct keys to the map through the flat-combining lock
+    Then the map holds 4000 keys
+
+  Scenario: failing and nested operations
+    Given a flat-combining lock protecting a counter
+    Then an operation that throws rethrows its exception to the caller
+    And an operation that calls the flat-combining lock again fails
+    And the flat-combining lock still runs operations
@@ -0,0 +1,118 @@
+package diranieh.locks;
+
+import io.cucumber.java8.En;
+import org.junit.Assert;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+public class flatCombiningLockStepDefinitions implements En {
+
+    // Counter protected by the lock. Not thread-safe on its own
+    private static class Counter {
+        long value;
+    }
+
+    private FlatCombiningLock<Counter> _counterLock;
+    private FlatCombiningLock<Map<Integer, Integer>> _mapLock;
+    private Integer _threadCount;
+    private Integer _incrementCount;
+    private Map<Long, Boolean> _returnedValues;
+
+    public flatCombiningLockStepDefinitions() {
+        Given("a flat-combining lock protecting a counter", () -> {
+            _counterLock = new FlatCombiningLock<>(new Counter());
+        });
+
+        Given("a flat-combining lock protecting a map", () -> {
+            _mapLock = new FlatCombiningLock<>(new HashMap<>());
+        });
+
+        And("{int} threads each increment the counter {int} times through the flat-combining lock", (Integer threadCount, Integer incrementCount) -> {
+            _threadCount = threadCount;
+            _incrementCount = incrementCount;
+        });
+
+        When("the threads delegate their increments", () -> {
+            _returnedValues = new ConcurrentHashMap<>();
+            runThreads(_threadCount, index -> {
+                for (int j = 0; j < _incrementCount; j++) {
+                    long value = _counterLock.apply(counter -> ++counter.value);
+                    _returnedValues.put(value, Boolean.TRUE);
+                }
+            });
+        });
+
+        Then("the delegated counter is {int}", (Integer finalCount) -> {
+            Assert.assertEquals(finalCount.longValue(), (long) _counterLock.apply(counter -> counter.value));
+        });
+
+        And("every increment returned a distinct value", () -> {
+            Assert.assertEquals(_threadCount * _incrementCount, _returnedValues.size());
+        });
+
+        And("the combiners ran {int} operations", (Integer operationCount) -> {
+            // The read in the previous step was one more operation
+            Assert.assertEquals(operationCount + 1, _counterLock.getCombinedOperationCount());
+            Assert.assertTrue(_counterLock.getCombiningPassCount() > 0);
+            Assert.assertTrue(_counterLock.getLinkedRecordCount() <= _threadCount + 1);
+        });
+
+        When("{int} threads each add {int} distinct keys to the map through the flat-combining lock", (Integer threadCount, Integer keyCount) -> {
+            runThreads(threadCount, index -> {
+                for (int j = 0; j < keyCount; j++) {
+                    int key = index * keyCount + j;
+                    _mapLock.execute(() -> null);       // interleave a Supplier with the Function calls
+                    _mapLock.apply(map -> map.put(key, key));
+                }
+            });
+        });
+
+        Then("the map holds {int} keys", (Integer keyCount) -> {
+            Assert.assertEquals(keyCount.intValue(), (int) _mapLock.apply(Map::size));
+        });
+
+        Then("an operation that throws rethrows its exception to the caller", () -> {
+            Assert.assertThrows(ArithmeticException.class, () -> _counterLock.apply(counter -> 1 / counter.value));
+        });
+
+        And("an operation that calls the flat-combining lock again fails", () -> {
+            Assert.assertThrows(IllegalStateException.class,
+                    () -> _counterLock.apply(counter -> _counterLock.apply(inner -> inner.value)));
+        });
+
+        And("the flat-combining lock still runs operations", () -> {
+            Assert.assertEquals(1L, (long) _counterLock.apply(counter -> ++counter.value));
+            Assert.assertEquals(2L, (long) _counterLock.execute(() -> 2L));
+        });
+    }
+
+    private interface Work {
+        void run(int threadIndex);
+    }
+
+    private static void runThreads(int threadCount, Work work) throws InterruptedException {
+        final CountDownLatch countDownLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    countDownLatch.await();
+                    work.run(index);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();     // restore interrupt status
+                }
+            });
+            threads[i].start();
+        }
+
+        // All threads ready to go. Run all threads and wait for them to finish
+        countDownLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -7,12 +7,95 @@ Feature: Spinning lock implementations
     When multiple threads increment the counter
     Then Final count is <finalCount>
     Examples:
-      | implementation   | threadCount | incrementCount | finalCount |
-      | "ALock"          | 1           | 3              | 3          |
-      | "ALock"          | 10          | 10             | 100        |
-      | "BackoffLock"    | 1           | 3              | 3          |
-      | "BackoffLock"    | 10          | 2000           | 20000      |
-      | "CLHLock"        | 1           | 3              | 3          |
-      | "CLHLock"        | 10          | 1000          | 10000      |
-      | "MCSLock"        | 1           | 3              | 3          |
-      | "MCSLock"        | 5           | 1000           | 5000       |
+      | implementation           | threadCount | incrementCount | finalCount |
+      | "ALock"                  | 1           | 3              | 3          |
+      | "ALock"                  | 10          | 10             | 100        |
+      | "BackoffLock"            | 1           | 3              | 3          |
+      | "BackoffLock"            | 10          | 2000           | 20000      |
+      | "ExponentialBackoffLock" | 10          | 2000           | 20000      |
+      | "TieredBackoffLock"      | 10          | 2000           | 20000      |
+      | "AdaptiveBackoffLock"    | 10          | 2000           | 20000      |
+      | "CLHLock"                | 1           | 3              | 3          |
+      | "CLHLock"                | 10          | 1000           | 10000      |
+      | "MCSLock"                | 1           | 3              | 3          |
+      | "MCSLock"                | 5           | 1000           | 5000       |
+      | "SpinningCLHLock"        | 5           | 1000           | 5000       |
+      | "SpinningMCSLock"        | 5           | 1000           | 5000       |
+      | "CohortLock"             | 1           | 3              | 3          |
+      | "CohortLock"             | 10          | 1000           | 10000      |
+      | "TicketLock"             | 1           | 3              | 3          |
+      | "TicketLock"             | 10          | 1000           | 10000      |
+      | "PartitionedTicketLock"  | 1           | 3              | 3          |
+      | "PartitionedTicketLock"  | 10          | 1000           | 10000      |
+
+
+  Scenario Outline: timed locking
+    Given <threadCount> threads are running
+    And locking implementation is <implementation>
+    And Each running thread increments a shared counter <incrementCount> using a <timeout> microsecond timed lock
+    When multiple threads increment the counter
+    Then Final count is <finalCount>
+    Examples:
+      | implementation          | threadCount | incrementCount | timeout | finalCount |
+      | "ALock"                 | 4           | 200            | 50      | 800        |
+      | "BackoffLock"           | 4           | 200            | 50      | 800        |
+      | "TieredBackoffLock"     | 4           | 200            | 50      | 800        |
+      | "CLHLock"               | 4           | 200            | 50      | 800        |
+      | "MCSLock"               | 4           | 200            | 50      | 800        |
+      | "SpinningCLHLock"       | 4           | 200            | 50      | 800        |
+      | "SpinningMCSLock"       | 4           | 200            | 50      | 800        |
+      | "CohortLock"            | 4           | 200            | 50      | 800        |
+      | "TicketLock"            | 4           | 200            | 50      | 800        |
+      | "PartitionedTicketLock" | 4           | 200            | 50      | 800        |
+
+  Scenario Outline: abandoned waiters do not block their successors
+    Given <threadCount> threads are running
+    And locking implementation is <implementation>
+    When the lock is held while <waiterCount> threads time out waiting for it
+    Then the lock can be acquired after it is released
+    Examples:
+      | implementation          | threadCount | waiterCount |
+      | "ALock"                 | 4           | 3           |
+      | "BackoffLock"           | 4           | 3           |
+      | "CLHLock"               | 4           | 3           |
+      | "MCSLock"               | 4           | 3           |
+      | "CohortLock"            | 4           | 3           |
+      | "TicketLock"            | 4           | 3           |
+      | "PartitionedTicketLock" | 4           | 3           |
+
+  Scenario Outline: interrupting a waiting thread
+    Given <threadCount> threads are running
+    And locking implementation is <implementation>
+    When the lock is held while a waiting thread is interrupted
+    Then the waiting thread stops waiting
+    And the lock can be acquired after it is released
+    Examples:
+      | implementation          | threadCount |
+      | "ALock"                 | 2           |
+      | "BackoffLock"           | 2           |
+      | "CLHLock"               | 2           |
+      | "MCSLock"               | 2           |
+      | "CohortLock"            | 2           |
+      | "TicketLock"            | 2           |
+      | "PartitionedTicketLock" | 2           |
+
+  Scenario Outline: timed and interruptible waiters are served in turn
+    Given <threadCount> threads are running
+    And locking implementation is <implementation>
+    When the threads keep taking the lock while one thread waits with a timeout and another interruptibly
+    Then both waiting threads acquire the lock
+    And the lock can be acquired after it is released
+    Examples:
+      | implementation          | threadCount |
+      | "TicketLock"            | 4           |
+      | "PartitionedTicketLock" | 4           |
+
+  Scenario Outline: tryLock ignores the interrupt status
+    Given <threadCount> threads are running
+    And locking implementation is <implementation>
+    Then an interrupted thread can tryLock the free lock and stays interrupted
+    And the lock can be acquired after it is released
+    Examples:
+      | implementation | threadCount |
+      | "CLHLock"      | 1           |
+      | "MCSLock"      | 1           |
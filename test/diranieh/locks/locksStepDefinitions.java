@@ -4,6 +4,9 @@ import io.cucumber.java8.En;
 import org.junit.Assert;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 
 public class locksStepDefinitions implements En {
@@ -12,6 +15,9 @@ public class locksStepDefinitions implements En {
     private Integer _threadCount;
     private Integer _incrementCount;
     private Integer _count;
+    private Integer _timeoutMicros;
+    private AtomicBoolean _waiterInterrupted;
+    private AtomicInteger _waitersServed;
 
     public locksStepDefinitions() {
         Given("{int} threads are running", (Integer threadCount) -> {
@@ -26,11 +32,36 @@ public class locksStepDefinitions implements En {
                 case "BackoffLock":
                     _lock = new BackoffLock();
                     break;
+                case "ExponentialBackoffLock":
+                    _lock = new BackoffLock(new ExponentialSpinBackoff(128, 65_536));
+                    break;
+                case "TieredBackoffLock":
+                    _lock = new BackoffLock(new TieredBackoff());
+                    break;
+                case "AdaptiveBackoffLock":
+                    _lock = new BackoffLock(new AdaptiveBackoff(128, 65_536));
+                    break;
                 case "CLHLock":
                     _lock = new CLHLock();
                     break;
                 case "MCSLock":
                     _lock = new MCSLock();
+                    break;
+                case "SpinningCLHLock":
+                    _lock = new CLHLock(new SpinWaitPolicy());
+                    break;
+                case "SpinningMCSLock":
+                    _lock = new MCSLock(new SpinWaitPolicy());
+                    break;
+                case "CohortLock":
+                    _lock = new CohortLock(2);
+                    break;
+                case "TicketLock":
+                    _lock = new TicketLock();
+                    break;
+                case "PartitionedTicketLock":
+                    _lock = new PartitionedTicketLock(4);
+                    break;
             }
         });
 
@@ -38,6 +69,12 @@ public class locksStepDefinitions implements En {
             _incrementCount = incrementCount;
         });
 
+        And("Each running thread increments a shared counter {int} using a {int} microsecond timed lock",
+                (Integer incrementCount, Integer timeoutMicros) -> {
+            _incrementCount = incrementCount;
+            _timeoutMicros = timeoutMicros;
+        });
+
         When("multiple threads increment the counter", () -> {
             _count = 0;
             final CountDownLatch countDownLatch = new CountDownLatch(1);
@@ -53,7 +90,7 @@ public class locksStepDefinitions implements En {
                         countDownLatch.await();
 
                         for (int j = 0; j < _incrementCount; j++) {
-                            _lock.lock();
+                            acquire();
                             try {
                                 _count++;
                             } finally {
@@ -84,5 +121,145 @@ public class locksStepDefinitions implements En {
         Then("Final count is {int}", (Integer finalCount) -> {
             Assert.assertEquals(finalCount, _count);
         });
+
+        When("the lock is held while {int} threads time out waiting for it", (Integer waiterCount) -> {
+            _lock.lock();
+            try {
+                Thread[] threads = new Thread[waiterCount];
+                boolean[] acquired = new boolean[waiterCount];
+                for (int i = 0; i < waiterCount; i++) {
+                    int threadIndex = i;
+                    threads[threadIndex] = new Thread(() -> {
+                        try {
+                            acquired[threadIndex] = _lock.tryLock(50, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException exception) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                    threads[threadIndex].start();
+                }
+
+                for (int i = 0; i < waiterCount; i++) {
+                    threads[i].join();
+                    Assert.assertFalse("Timed waiter acquired a held lock", acquired[i]);
+                }
+            } finally {
+                _lock.unlock();
+            }
+        });
+
+        When("the lock is held while a waiting thread is interrupted", () -> {
+            _waiterInterrupted = new AtomicBoolean(false);
+            _lock.lock();
+            try {
+                Thread waiter = new Thread(() -> {
+                    try {
+                        _lock.lockInterruptibly();
+                        _lock.unlock();
+                    } catch (InterruptedException exception) {
+                        _waiterInterrupted.set(true);
+                    }
+                });
+                waiter.start();
+                Thread.sleep(100);
+
+                waiter.interrupt();
+                waiter.join(5000);
+                Assert.assertFalse(waiter.isAlive());
+            } finally {
+                _lock.unlock();
+            }
+        });
+
+        Then("the waiting thread stops waiting", () -> {
+            Assert.assertTrue(_waiterInterrupted.get());
+        });
+
+        When("the threads keep taking the lock while one thread waits with a timeout and another interruptibly", () -> {
+            _waitersServed = new AtomicInteger(0);
+            AtomicBoolean stop = new AtomicBoolean(false);
+            Thread[] threads = new Thread[_threadCount];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    while (!stop.get()) {
+                        _lock.lock();
+                        _lock.unlock();
+                    }
+                });
+                threads[i].start();
+            }
+
+            Thread timedWaiter = new Thread(() -> {
+                try {
+                    if (_lock.tryLock(5, TimeUnit.SECONDS)) {
+                        _waitersServed.incrementAndGet();
+                        _lock.unlock();
+                    }
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Thread interruptibleWaiter = new Thread(() -> {
+                try {
+                    _lock.lockInterruptibly();
+                    _waitersServed.incrementAndGet();
+                    _lock.unlock();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Thread.sleep(50);
+            timedWaiter.start();
+            interruptibleWaiter.start();
+            timedWaiter.join(10_000);
+            interruptibleWaiter.join(10_000);
+            interruptibleWaiter.interrupt();
+
+            stop.set(true);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            interruptibleWaiter.join();
+        });
+
+        Then("both waiting threads acquire the lock", () -> {
+            Assert.assertEquals(2, _waitersServed.get());
+        });
+
+        Then("an interrupted thread can tryLock the free lock and stays interrupted", () -> {
+            Thread.currentThread().interrupt();
+            try {
+                Assert.assertTrue(_lock.tryLock());
+                _lock.unlock();
+                Assert.assertTrue(Thread.currentThread().isInterrupted());
+            } finally {
+                Thread.interrupted();       // clear interrupt status
+            }
+        });
+
+        Then("the lock can be acquired after it is released", () -> {
+            // Acquire from another thread so that a lock stuck behind an abandoned waiter
+            // fails the test instead of hanging it
+            AtomicBoolean acquired = new AtomicBoolean(false);
+            Thread thread = new Thread(() -> {
+                _lock.lock();
+                acquired.set(true);
+                _lock.unlock();
+            });
+            thread.setDaemon(true);
+            thread.start();
+            thread.join(5000);
+            Assert.assertTrue("Lock could not be acquired after abandoned waiters", acquired.get());
+        });
+    }
+
+    // Acquires the lock either by blocking or, if a timeout was given, by retrying a timed tryLock
+    private void acquire() throws InterruptedException {
+        if (_timeoutMicros == null) {
+            _lock.lock();
+            return;
+        }
+
+        while (!_lock.tryLock(_timeoutMicros, TimeUnit.MICROSECONDS)) { /* timed out. Try again */ }
     }
 }
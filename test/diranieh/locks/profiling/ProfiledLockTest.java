@@ -0,0 +1,182 @@
+package diranieh.locks.profiling;
+
+import diranieh.locks.MCSLock;
+import diranieh.locks.TestAndTestAndSetLock;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfiledLockTest {
+    /* Invariants and post conditions */
+    @Test
+    void has_empty_profile_on_construction() {
+        // Arrange and act
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "empty");
+        LockProfile profile = lock.snapshot();
+
+        // Assert
+        assertEquals("empty", profile.getName());
+        assertEquals(0, profile.getAcquisitionCount());
+        assertEquals(0, profile.getContendedAcquisitionCount());
+        assertEquals(0, profile.getMaxHoldTime());
+        assertTrue(profile.getTopCallSites().isEmpty());
+    }
+
+    @Test
+    void should_count_uncontended_acquisitions() {
+        // Arrange
+        ProfiledLock lock = new ProfiledLock(new TestAndTestAndSetLock(), "uncontended");
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            lock.lock();
+            lock.unlock();
+        }
+        assertTrue(lock.tryLock());
+        lock.unlock();
+
+        // Assert
+        LockProfile profile = lock.snapshot();
+        assertEquals(11, profile.getAcquisitionCount());
+        assertEquals(0, profile.getContendedAcquisitionCount());
+    }
+
+    @Test
+    void should_record_hold_time() throws InterruptedException {
+        // Arrange
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "hold");
+
+        // Act
+        lock.lock();
+        Thread.sleep(20);
+        lock.unlock();
+
+        // Assert
+        LockProfile profile = lock.snapshot();
+        assertTrue(profile.getMaxHoldTime() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void should_not_count_condition_wait_as_hold_time() throws InterruptedException {
+        // Arrange
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "condition");
+        Condition condition = lock.newCondition();
+
+        // Act: nobody signals, so await() times out with the lock released
+        lock.lock();
+        assertFalse(condition.await(200, TimeUnit.MILLISECONDS));
+        lock.unlock();
+
+        // Assert: two holds, before and after waiting, neither including the wait
+        LockProfile profile = lock.snapshot();
+        assertEquals(1, profile.getAcquisitionCount());
+        assertTrue(profile.getMaxHoldTime() < TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void should_snapshot_and_reset_inside_critical_section() {
+        // Arrange: MCSLock is not reentrant
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "inside");
+        lock.lock();
+        lock.unlock();
+
+        // Act and assert
+        lock.lock();
+        assertEquals(2, lock.snapshot().getAcquisitionCount());
+        lock.reset();
+        assertEquals(0, lock.snapshot().getAcquisitionCount());
+        lock.unlock();
+    }
+
+    @Test
+    void should_record_contended_acquisition_and_call_site() throws InterruptedException {
+        // Arrange: sample every contended acquisition
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "contended", 1);
+        CountDownLatch waiting = new CountDownLatch(1);
+        lock.lock();
+
+        // Act: This thread should block until the main thread releases the lock
+        Thread thread = new Thread(() -> {
+            waiting.countDown();
+            lock.lock();
+            lock.unlock();
+        });
+        thread.start();
+        waiting.await();
+        Thread.sleep(50);
+        lock.unlock();
+        thread.join();
+
+        // Assert
+        LockProfile profile = lock.snapshot();
+        assertEquals(2, profile.getAcquisitionCount());
+        assertEquals(1, profile.getContendedAcquisitionCount());
+        assertTrue(profile.getMaxWaitTime() > 0);
+        assertEquals(1, profile.getTopCallSites().size());
+        assertTrue(profile.getTopCallSites().keySet().iterator().next().contains(ProfiledLockTest.class.getName()));
+    }
+
+    @Test
+    void should_not_count_failed_timed_acquisition() throws InterruptedException {
+        // Arrange
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "timed");
+        lock.lock();
+
+        // Act
+        Thread thread = new Thread(() -> {
+            try {
+                assertFalse(lock.tryLock(10, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        thread.join();
+        lock.unlock();
+
+        // Assert
+        assertEquals(1, lock.snapshot().getAcquisitionCount());
+    }
+
+    @Test
+    void should_reset_statistics() {
+        // Arrange
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "reset");
+        lock.lock();
+        lock.unlock();
+
+        // Act
+        lock.reset();
+
+        // Assert
+        assertEquals(0, lock.snapshot().getAcquisitionCount());
+    }
+
+    @Test
+    void should_expose_profile_through_jmx() throws Exception {
+        // Arrange
+        ProfiledLock lock = new ProfiledLock(new MCSLock(), "jmx");
+        ObjectName objectName = lock.registerMBean();
+        lock.lock();
+        lock.unlock();
+
+        // Act
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Object acquisitions = server.getAttribute(objectName, "AcquisitionCount");
+        lock.lock();
+        Object maxHoldTime = server.getAttribute(objectName, "HoldTimeMax");      // served while the lock is held
+        lock.unlock();
+        server.unregisterMBean(objectName);
+
+        // Assert
+        assertEquals(1L, acquisitions);
+        assertTrue((Long) maxHoldTime <= lock.snapshot().getMaxHoldTime());
+    }
+}
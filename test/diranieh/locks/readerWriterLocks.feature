@@ -0,0 +1,25 @@
+Feature: Reader-writer spin lock implementations
+
+  Scenario Outline: readers and writers
+    Given reader-writer locking implementation is <implementation>
+    And <readerCount> reader threads each read a shared record <readCount> times
+    And <writerCount> writer threads each update the shared record <writeCount> times
+    When readers and writers run concurrently
+    Then the shared record was updated <finalCount> times
+    And no reader saw a partially updated record
+    Examples:
+      | implementation            | readerCount | readCount | writerCount | writeCount | finalCount |
+      | "SpinReaderWriterLock"    | 1           | 3         | 1           | 3          | 3          |
+      | "SpinReaderWriterLock"    | 6           | 2000      | 2           | 500        | 1000       |
+      | "StripedReaderWriterLock" | 1           | 3         | 1           | 3          | 3          |
+      | "StripedReaderWriterLock" | 6           | 2000      | 2           | 500        | 1000       |
+
+  Scenario Outline: readers share the lock and writers exclude everyone
+    Given reader-writer locking implementation is <implementation>
+    Then a read lock can be acquired while another thread holds a read lock
+    And a write lock cannot be acquired while another thread holds a read lock
+    And neither lock can be acquired while another thread holds the write lock
+    Examples:
+      | implementation            |
+      | "SpinReaderWriterLock"    |
+      | "StripedReaderWriterLock" |
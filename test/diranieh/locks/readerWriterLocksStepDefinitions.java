@@ -0,0 +1,161 @@
+package diranieh.locks;
+
+import io.cucumber.java8.En;
+import org.junit.Assert;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+public class readerWriterLocksStepDefinitions implements En {
+
+    private ReadWriteLock _lock;
+    private Integer _readerCount;
+    private Integer _readCount;
+    private Integer _writerCount;
+    private Integer _writeCount;
+
+    // Shared record: a writer updates both fields, so a reader must always see them equal
+    private int _first;
+    private int _second;
+    private AtomicInteger _tornReads;
+
+    public readerWriterLocksStepDefinitions() {
+        Given("reader-writer locking implementation is {string}", (String implementation) -> {
+            switch (implementation) {
+                case "SpinReaderWriterLock":
+                    _lock = new SpinReaderWriterLock();
+                    break;
+                case "StripedReaderWriterLock":
+                    _lock = new StripedReaderWriterLock();
+                    break;
+            }
+        });
+
+        And("{int} reader threads each read a shared record {int} times", (Integer readerCount, Integer readCount) -> {
+            _readerCount = readerCount;
+            _readCount = readCount;
+        });
+
+        And("{int} writer threads each update the shared record {int} times", (Integer writerCount, Integer writeCount) -> {
+            _writerCount = writerCount;
+            _writeCount = writeCount;
+        });
+
+        When("readers and writers run concurrently", () -> {
+            _first = 0;
+            _second = 0;
+            _tornReads = new AtomicInteger(0);
+            final CountDownLatch countDownLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[_readerCount + _writerCount];
+
+            for (int i = 0; i < threads.length; i++) {
+                boolean isWriter = i < _writerCount;
+                threads[i] = new Thread(() -> {
+                    try {
+                        countDownLatch.await();
+                        if (isWriter)
+                            write();
+                        else
+                            read();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();     // restore interrupt status
+                    }
+                });
+                threads[i].start();
+            }
+
+            // All threads ready to go. Run all threads and wait for them to finish
+            countDownLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        Then("the shared record was updated {int} times", (Integer finalCount) -> {
+            Assert.assertEquals(finalCount.intValue(), _first);
+            Assert.assertEquals(finalCount.intValue(), _second);
+        });
+
+        And("no reader saw a partially updated record", () -> {
+            Assert.assertEquals(0, _tornReads.get());
+        });
+
+        Then("a read lock can be acquired while another thread holds a read lock", () -> {
+            _lock.readLock().lock();
+            try {
+                Assert.assertTrue(tryLockFromAnotherThread(_lock.readLock()));
+            } finally {
+                _lock.readLock().unlock();
+            }
+        });
+
+        And("a write lock cannot be acquired while another thread holds a read lock", () -> {
+            _lock.readLock().lock();
+            try {
+                Assert.assertFalse(tryLockFromAnotherThread(_lock.writeLock()));
+            } finally {
+                _lock.readLock().unlock();
+            }
+        });
+
+        And("neither lock can be acquired while another thread holds the write lock", () -> {
+            _lock.writeLock().lock();
+            try {
+                Assert.assertFalse(tryLockFromAnotherThread(_lock.readLock()));
+                Assert.assertFalse(tryLockFromAnotherThread(_lock.writeLock()));
+            } finally {
+                _lock.writeLock().unlock();
+            }
+
+            // Both locks are available again once the writer is done
+            Assert.assertTrue(tryLockFromAnotherThread(_lock.writeLock()));
+        });
+    }
+
+    private void write() {
+        for (int j = 0; j < _writeCount; j++) {
+            _lock.writeLock().lock();
+            try {
+                _first++;
+                Thread.yield();         // widen the window in which a reader could see a torn record
+                _second++;
+            } finally {
+                _lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void read() {
+        for (int j = 0; j < _readCount; j++) {
+            _lock.readLock().lock();
+            try {
+                if (_first != _second)
+                    _tornReads.incrementAndGet();
+            } finally {
+                _lock.readLock().unlock();
+            }
+        }
+    }
+
+    // Tries the lock with a short timeout from a new thread, releasing it again if acquired
+    private boolean tryLockFromAnotherThread(Lock lock) throws InterruptedException {
+        AtomicBoolean acquired = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            try {
+                if (lock.tryLock(50, TimeUnit.MILLISECONDS)) {
+                    acquired.set(true);
+                    lock.unlock();
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        thread.join();
+        return acquired.get();
+    }
+}
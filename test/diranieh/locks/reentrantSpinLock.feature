@@ -0,0 +1,41 @@
+Feature: Reentrant and owner-tracking wrapper for spin locks
+
+  Scenario Outline: re-entering a lock
+    Given a reentrant lock over <implementation>
+    When the current thread acquires the reentrant lock 3 times
+    Then the reentrant lock hold count is 3
+    And another thread cannot acquire the reentrant lock
+    When the current thread releases the reentrant lock 3 times
+    Then another thread can acquire the reentrant lock
+    Examples:
+      | implementation          |
+      | "TestAndSetLock"        |
+      | "TestAndTestAndSetLock" |
+      | "CLHLock"               |
+      | "MCSLock"               |
+
+  Scenario Outline: only the owner can unlock
+    Given a reentrant lock over <implementation>
+    Then unlocking the reentrant lock without holding it fails
+    And unlocking the reentrant lock while another thread holds it fails
+    Examples:
+      | implementation          |
+      | "TestAndTestAndSetLock" |
+      | "CLHLock"               |
+      | "MCSLock"               |
+
+  Scenario Outline: nested locking by concurrent threads
+    Given a reentrant lock over <implementation>
+    When <threadCount> threads each increment a shared counter <incrementCount> times holding the reentrant lock twice
+    Then the shared counter is <finalCount>
+    Examples:
+      | implementation          | threadCount | incrementCount | finalCount |
+      | "TestAndTestAndSetLock" | 5           | 1000           | 5000       |
+      | "CLHLock"               | 5           | 1000           | 5000       |
+      | "MCSLock"               | 5           | 1000           | 5000       |
+
+  Scenario: lock-order inversion is detected
+    Given two reentrant locks sharing a lock-order checker
+    When a thread acquires the first lock and then the second lock
+    Then acquiring the first lock while holding the second lock fails with a lock-order inversion
+    And acquiring the second lock while holding the first lock still succeeds
@@ -0,0 +1,183 @@
+package diranieh.locks;
+
+import io.cucumber.java8.En;
+import org.junit.Assert;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+public class reentrantSpinLockStepDefinitions implements En {
+
+    private ReentrantSpinLock _lock;
+    private ReentrantSpinLock _first;
+    private ReentrantSpinLock _second;
+    private int _count;
+
+    public reentrantSpinLockStepDefinitions() {
+        Given("a reentrant lock over {string}", (String implementation) -> {
+            switch (implementation) {
+                case "TestAndSetLock":
+                    _lock = new ReentrantSpinLock(new TestAndSetLock());
+                    break;
+                case "TestAndTestAndSetLock":
+                    _lock = new ReentrantSpinLock(new TestAndTestAndSetLock());
+                    break;
+                case "CLHLock":
+                    _lock = new ReentrantSpinLock(new CLHLock());
+                    break;
+                case "MCSLock":
+                    _lock = new ReentrantSpinLock(new MCSLock());
+                    break;
+            }
+        });
+
+        When("the current thread acquires the reentrant lock {int} times", (Integer times) -> {
+            for (int i = 0; i < times; i++) {
+                _lock.lock();
+            }
+        });
+
+        When("the current thread releases the reentrant lock {int} times", (Integer times) -> {
+            for (int i = 0; i < times; i++) {
+                _lock.unlock();
+            }
+            Assert.assertFalse(_lock.isHeldByCurrentThread());
+        });
+
+        Then("the reentrant lock hold count is {int}", (Integer holdCount) -> {
+            Assert.assertTrue(_lock.isHeldByCurrentThread());
+            Assert.assertEquals(holdCount.intValue(), _lock.getHoldCount());
+        });
+
+        Then("another thread cannot acquire the reentrant lock", () -> {
+            Assert.assertFalse(tryLockFromAnotherThread(_lock));
+        });
+
+        Then("another thread can acquire the reentrant lock", () -> {
+            Assert.assertTrue(tryLockFromAnotherThread(_lock));
+        });
+
+        Then("unlocking the reentrant lock without holding it fails", () -> {
+            Assert.assertThrows(IllegalMonitorStateException.class, () -> _lock.unlock());
+            Assert.assertTrue(tryLockFromAnotherThread(_lock));
+        });
+
+        And("unlocking the reentrant lock while another thread holds it fails", () -> {
+            CountDownLatch acquired = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread owner = new Thread(() -> {
+                _lock.lock();
+                acquired.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    _lock.unlock();
+                }
+            });
+            owner.start();
+            acquired.await();
+
+            Assert.assertThrows(IllegalMonitorStateException.class, () -> _lock.unlock());
+
+            // The failed unlock left the lock with its owner
+            Assert.assertFalse(tryLockFromAnotherThread(_lock));
+            release.countDown();
+            owner.join();
+            Assert.assertTrue(tryLockFromAnotherThread(_lock));
+        });
+
+        When("{int} threads each increment a shared counter {int} times holding the reentrant lock twice",
+                (Integer threadCount, Integer incrementCount) -> {
+            _count = 0;
+            final CountDownLatch countDownLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[threadCount];
+
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        countDownLatch.await();
+                        for (int j = 0; j < incrementCount; j++) {
+                            _lock.lock();
+                            try {
+                                _lock.lock();       // re-enter
+                                try {
+                                    _count++;
+                                } finally {
+                                    _lock.unlock();
+                                }
+                            } finally {
+                                _lock.unlock();
+                            }
+                        }
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();     // restore interrupt status
+                    }
+                });
+                threads[i].start();
+            }
+
+            // All threads ready to go. Run all threads and wait for them to finish
+            countDownLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        Then("the shared counter is {int}", (Integer finalCount) -> {
+            Assert.assertEquals(finalCount.intValue(), _count);
+        });
+
+        Given("two reentrant locks sharing a lock-order checker", () -> {
+            LockOrderChecker checker = new LockOrderChecker();
+            _first = new ReentrantSpinLock(new CLHLock(), "first", checker);
+            _second = new ReentrantSpinLock(new MCSLock(), "second", checker);
+        });
+
+        When("a thread acquires the first lock and then the second lock", () -> {
+            Thread thread = new Thread(() -> {
+                _first.lock();
+                _second.lock();
+                _second.unlock();
+                _first.unlock();
+            });
+            thread.start();
+            thread.join();
+        });
+
+        Then("acquiring the first lock while holding the second lock fails with a lock-order inversion", () -> {
+            _second.lock();
+            try {
+                IllegalStateException thrown = Assert.assertThrows(IllegalStateException.class, () -> _first.lock());
+                Assert.assertTrue(thrown.getMessage().contains("Lock-order inversion"));
+                Assert.assertFalse(_first.isHeldByCurrentThread());
+            } finally {
+                _second.unlock();
+            }
+        });
+
+        And("acquiring the second lock while holding the first lock still succeeds", () -> {
+            _first.lock();
+            _second.lock();
+            Assert.assertTrue(_second.isHeldByCurrentThread());
+            _second.unlock();
+            _first.unlock();
+        });
+    }
+
+    // Tries the lock from a new thread, releasing it again if acquired
+    private boolean tryLockFromAnotherThread(Lock lock) throws InterruptedException {
+        AtomicBoolean acquired = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            if (lock.tryLock()) {
+                acquired.set(true);
+                lock.unlock();
+            }
+        });
+        thread.start();
+        thread.join();
+        return acquired.get();
+    }
+}
@@ -0,0 +1,19 @@
+Feature: Sequence lock with optimistic reads
+
+  Scenario Outline: optimistic readers and writers
+    Given a sequence lock whose writers are excluded by <writerLock>
+    And <readerCount> optimistic reader threads each read a shared pair <readCount> times
+    And <writerCount> writer threads each update the shared pair <writeCount> times
+    When optimistic readers and writers run concurrently
+    Then the shared pair was updated <finalCount> times
+    And every validated read saw a consistent pair
+    Examples:
+      | writerLock              | readerCount | readCount | writerCount | writeCount | finalCount |
+      | "TestAndTestAndSetLock" | 1           | 3         | 1           | 3          | 3          |
+      | "TestAndTestAndSetLock" | 6           | 20000     | 2           | 500        | 1000       |
+      | "MCSLock"               | 6           | 20000     | 2           | 500        | 1000       |
+
+  Scenario: a write invalidates earlier stamps
+    Given a sequence lock whose writers are excluded by "TestAndTestAndSetLock"
+    Then a stamp taken before a write is not valid after it
+    And unlocking a sequence lock that is not write-locked fails
@@ -0,0 +1,124 @@
+package diranieh.locks;
+
+import io.cucumber.java8.En;
+import org.junit.Assert;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class sequenceLockStepDefinitions implements En {
+
+    // Shared record: a writer updates both fields, so a validated read must always see them equal
+    private static class Pair {
+        int first;
+        int second;
+    }
+
+    private SequenceLock _lock;
+    private Pair _pair;
+    private Integer _readerCount;
+    private Integer _readCount;
+    private Integer _writerCount;
+    private Integer _writeCount;
+    private AtomicInteger _tornReads;
+
+    public sequenceLockStepDefinitions() {
+        Given("a sequence lock whose writers are excluded by {string}", (String writerLock) -> {
+            switch (writerLock) {
+                case "TestAndTestAndSetLock":
+                    _lock = new SequenceLock(new TestAndTestAndSetLock());
+                    break;
+                case "MCSLock":
+                    _lock = new SequenceLock(new MCSLock());
+                    break;
+            }
+            _pair = new Pair();
+        });
+
+        And("{int} optimistic reader threads each read a shared pair {int} times", (Integer readerCount, Integer readCount) -> {
+            _readerCount = readerCount;
+            _readCount = readCount;
+        });
+
+        And("{int} writer threads each update the shared pair {int} times", (Integer writerCount, Integer writeCount) -> {
+            _writerCount = writerCount;
+            _writeCount = writeCount;
+        });
+
+        When("optimistic readers and writers run concurrently", () -> {
+            _tornReads = new AtomicInteger(0);
+            final CountDownLatch countDownLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[_readerCount + _writerCount];
+
+            for (int i = 0; i < threads.length; i++) {
+                boolean isWriter = i < _writerCount;
+                threads[i] = new Thread(() -> {
+                    try {
+                        countDownLatch.await();
+                        if (isWriter)
+                            write();
+                        else
+                            read();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();     // restore interrupt status
+                    }
+                });
+                threads[i].start();
+            }
+
+            // All threads ready to go. Run all threads and wait for them to finish
+            countDownLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        Then("the shared pair was updated {int} times", (Integer finalCount) -> {
+            Assert.assertEquals(finalCount.intValue(), _pair.first);
+            Assert.assertEquals(finalCount.intValue(), _pair.second);
+            Assert.assertFalse(_lock.hasWriter());
+        });
+
+        And("every validated read saw a consistent pair", () -> {
+            Assert.assertEquals(0, _tornReads.get());
+        });
+
+        Then("a stamp taken before a write is not valid after it", () -> {
+            long stamp = _lock.beginRead();
+            Assert.assertTrue(_lock.validate(stamp));
+
+            _lock.lockWrite();
+            Assert.assertTrue(_lock.hasWriter());
+            Assert.assertFalse(_lock.validate(stamp));
+            _lock.unlockWrite();
+
+            Assert.assertFalse(_lock.validate(stamp));
+            Assert.assertTrue(_lock.validate(_lock.beginRead()));
+        });
+
+        And("unlocking a sequence lock that is not write-locked fails", () -> {
+            Assert.assertThrows(IllegalMonitorStateException.class, () -> _lock.unlockWrite());
+        });
+    }
+
+    private void write() {
+        for (int j = 0; j < _writeCount; j++) {
+            _lock.lockWrite();
+            try {
+                _pair.first++;
+                Thread.yield();         // widen the window in which a reader could see a torn record
+                _pair.second++;
+            } finally {
+                _lock.unlockWrite();
+            }
+        }
+    }
+
+    private void read() {
+        for (int j = 0; j < _readCount; j++) {
+            long difference = _lock.readLong(_pair, pair -> pair.first - pair.second);
+            if (difference != 0)
+                _tornReads.incrementAndGet();
+        }
+    }
+}
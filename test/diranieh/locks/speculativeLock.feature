@@ -0,0 +1,27 @@
+Feature: Speculative lock with optimistic versioned execution
+
+  Scenario Outline: concurrent transfers and reads
+    Given a speculative lock with <maxAttempts> speculative attempts
+    And two accounts holding 1000 each
+    When <writerCount> threads each transfer between the accounts <transferCount> times while <readerCount> threads each read the total <readCount> times
+    Then the accounts still hold 2000 in total
+    And every speculative read saw a total of 2000
+    And committed and fallen back sections add up to <executions>
+    Examples:
+      | maxAttempts | writerCount | transferCount | readerCount | readCount | executions |
+      | 4           | 1           | 3             | 1           | 3         | 6          |
+      | 4           | 3           | 2000          | 3           | 2000      | 12000      |
+      | 1           | 3           | 2000          | 3           | 2000      | 12000      |
+      | 0           | 3           | 2000          | 3           | 2000      | 12000      |
+
+  Scenario: uncontended sections commit speculatively
+    Given a speculative lock with 4 speculative attempts
+    And two accounts holding 1000 each
+    When one thread transfers between the accounts 100 times
+    Then 100 sections committed, none aborted and none fell back
+
+  Scenario: misuse is rejected
+    Given a speculative lock with 4 speculative attempts
+    And two accounts holding 1000 each
+    Then a nested critical section is rejected
+    And a variable of another speculative lock is rejected
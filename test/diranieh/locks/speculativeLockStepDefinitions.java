@@ -0,0 +1,111 @@
+package diranieh.locks;
+
+import io.cucumber.java8.En;
+import org.junit.Assert;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class speculativeLockStepDefinitions implements En {
+
+    private SpeculativeLock _lock;
+    private SpeculativeLock.Variable _first;
+    private SpeculativeLock.Variable _second;
+    private AtomicInteger _wrongTotals;
+
+    public speculativeLockStepDefinitions() {
+        Given("a speculative lock with {int} speculative attempts", (Integer maxAttempts) -> {
+            _lock = new SpeculativeLock(new TestAndTestAndSetLock(), maxAttempts);
+        });
+
+        And("two accounts holding {int} each", (Integer amount) -> {
+            _first = _lock.newVariable(amount);
+            _second = _lock.newVariable(amount);
+        });
+
+        When("{int} threads each transfer between the accounts {int} times while {int} threads each read the total {int} times",
+                (Integer writerCount, Integer transferCount, Integer readerCount, Integer readCount) -> {
+            _wrongTotals = new AtomicInteger(0);
+            final CountDownLatch countDownLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[writerCount + readerCount];
+
+            for (int i = 0; i < threads.length; i++) {
+                boolean isWriter = i < writerCount;
+                threads[i] = new Thread(() -> {
+                    try {
+                        countDownLatch.await();
+                        if (isWriter) {
+                            for (int j = 0; j < transferCount; j++) {
+                                transfer(j % 2 == 0 ? 1 : -1);
+                            }
+                        } else {
+                            for (int j = 0; j < readCount; j++) {
+                                if (readTotal() != 2000)
+                                    _wrongTotals.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();     // restore interrupt status
+                    }
+                });
+                threads[i].start();
+            }
+
+            // All threads ready to go. Run all threads and wait for them to finish
+            countDownLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        When("one thread transfers between the accounts {int} times", (Integer transferCount) -> {
+            for (int j = 0; j < transferCount; j++) {
+                transfer(1);
+            }
+        });
+
+        Then("the accounts still hold {int} in total", (Integer total) -> {
+            Assert.assertEquals(total.longValue(), readTotal());
+        });
+
+        And("every speculative read saw a total of {int}", (Integer total) -> {
+            Assert.assertEquals(0, _wrongTotals.get());
+        });
+
+        And("committed and fallen back sections add up to {int}", (Integer executions) -> {
+            // The final readTotal() of the previous step is a section as well
+            Assert.assertEquals(executions + 1, _lock.getCommitCount() + _lock.getFallbackCount());
+        });
+
+        Then("{int} sections committed, none aborted and none fell back", (Integer commits) -> {
+            Assert.assertEquals(commits.longValue(), _lock.getCommitCount());
+            Assert.assertEquals(0, _lock.getAbortCount());
+            Assert.assertEquals(0, _lock.getFallbackCount());
+        });
+
+        Then("a nested critical section is rejected", () -> {
+            Assert.assertThrows(IllegalStateException.class,
+                    () -> _lock.executeAsLong(tx -> _lock.executeAsLong(inner -> inner.read(_first))));
+
+            // The lock is usable again afterwards
+            Assert.assertEquals(2000, readTotal());
+        });
+
+        And("a variable of another speculative lock is rejected", () -> {
+            SpeculativeLock.Variable foreign = new SpeculativeLock().newVariable(0);
+            Assert.assertThrows(IllegalArgumentException.class, () -> _lock.executeAsLong(tx -> tx.read(foreign)));
+        });
+    }
+
+    private void transfer(long amount) {
+        _lock.executeAsLong(tx -> {
+            tx.write(_first, tx.read(_first) - amount);
+            tx.write(_second, tx.read(_second) + amount);
+            return 0;
+        });
+    }
+
+    private long readTotal() {
+        return _lock.executeAsLong(tx -> tx.read(_first) + tx.read(_second));
+    }
+}
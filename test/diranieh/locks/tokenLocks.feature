@@ -0,0 +1,45 @@
+Feature: Queue locks that hand out their nodes as tokens
+
+  Scenario Outline: locking with tokens
+    Given a token lock <implementation>
+    And <threadCount> threads each increment a shared counter <incrementCount> times under the token lock
+    When the threads increment the counter under the token lock
+    Then the token lock counter is <finalCount>
+    And the token lock is free
+    Examples:
+      | implementation | threadCount | incrementCount | finalCount |
+      | "CLHTokenLock" | 1           | 3              | 3          |
+      | "CLHTokenLock" | 10          | 1000           | 10000      |
+      | "MCSTokenLock" | 1           | 3              | 3          |
+      | "MCSTokenLock" | 10          | 1000           | 10000      |
+
+  Scenario Outline: mixing tryLock and lock under contention
+    Given a token lock <implementation>
+    And <threadCount> threads each increment a shared counter <incrementCount> times under the token lock
+    When the threads increment the counter under the token lock, alternating tryLock and lock
+    Then the token lock counter is <finalCount>
+    And no two threads held the token lock at once
+    And the token lock is free
+    Examples:
+      | implementation | threadCount | incrementCount | finalCount |
+      | "CLHTokenLock" | 10          | 2000           | 20000      |
+      | "MCSTokenLock" | 10          | 2000           | 20000      |
+
+  Scenario Outline: tryLock and misuse
+    Given a token lock <implementation>
+    Then tryLock on the token lock fails while another thread holds it
+    And unlocking the token lock without a token fails
+    Examples:
+      | implementation |
+      | "CLHTokenLock" |
+      | "MCSTokenLock" |
+
+  Scenario Outline: one thread holding many token locks
+    Given <lockCount> token locks <implementation>
+    When one thread acquires all the token locks and releases them in reverse order <rounds> times
+    Then all the token locks are free
+    And the thread keeps at most 16 pooled nodes
+    Examples:
+      | implementation | lockCount | rounds |
+      | "CLHTokenLock" | 100       | 10     |
+      | "MCSTokenLock" | 100       | 10     |
@@ -0,0 +1,208 @@
+package diranieh.locks;
+
+import io.cucumber.java8.En;
+import org.junit.Assert;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class tokenLocksStepDefinitions implements En {
+
+    // Adapts both token locks to one shape so that the steps can be shared
+    private interface TokenLock {
+        Object lock();
+        Object tryLock();
+        void unlock(Object token);
+        boolean isLocked();
+        int pooledNodeCount();
+    }
+
+    private TokenLock _lock;
+    private TokenLock[] _locks;
+    private Integer _threadCount;
+    private Integer _incrementCount;
+    private int _counter;
+    private final AtomicInteger _holders = new AtomicInteger(0);
+    private final AtomicInteger _overlaps = new AtomicInteger(0);
+
+    public tokenLocksStepDefinitions() {
+        Given("a token lock {string}", (String implementation) -> {
+            _lock = createLock(implementation);
+        });
+
+        Given("{int} token locks {string}", (Integer lockCount, String implementation) -> {
+            _locks = new TokenLock[lockCount];
+            for (int i = 0; i < lockCount; i++) {
+                _locks[i] = createLock(implementation);
+            }
+        });
+
+        And("{int} threads each increment a shared counter {int} times under the token lock", (Integer threadCount, Integer incrementCount) -> {
+            _threadCount = threadCount;
+            _incrementCount = incrementCount;
+        });
+
+        When("the threads increment the counter under the token lock", () -> {
+            _counter = 0;
+            final CountDownLatch countDownLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[_threadCount];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        countDownLatch.await();
+                        for (int j = 0; j < _incrementCount; j++) {
+                            Object token = _lock.lock();
+                            try {
+                                _counter++;
+                            } finally {
+                                _lock.unlock(token);
+                            }
+                        }
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();     // restore interrupt status
+                    }
+                });
+                threads[i].start();
+            }
+
+            // All threads ready to go. Run all threads and wait for them to finish
+            countDownLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        When("the threads increment the counter under the token lock, alternating tryLock and lock", () -> {
+            _counter = 0;
+            final CountDownLatch countDownLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[_threadCount];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        countDownLatch.await();
+                        for (int j = 0; j < _incrementCount; j++) {
+                            // Retry tryLock a few times, then queue up with lock()
+                            Object token = null;
+                            for (int attempt = 0; token == null && attempt < 4; attempt++) {
+                                token = _lock.tryLock();
+                            }
+                            if (token == null)
+                                token = _lock.lock();
+                            try {
+                                if (_holders.incrementAndGet() != 1)
+                                    _overlaps.incrementAndGet();
+                                _counter++;
+                                _holders.decrementAndGet();
+                            } finally {
+                                _lock.unlock(token);
+                            }
+                        }
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();     // restore interrupt status
+                    }
+                });
+                threads[i].start();
+            }
+
+            // All threads ready to go. Run all threads and wait for them to finish
+            countDownLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        And("no two threads held the token lock at once", () -> {
+            Assert.assertEquals(0, _overlaps.get());
+        });
+
+        Then("the token lock counter is {int}", (Integer finalCount) -> {
+            Assert.assertEquals(finalCount.intValue(), _counter);
+        });
+
+        And("the token lock is free", () -> {
+            Assert.assertFalse(_lock.isLocked());
+        });
+
+        Then("tryLock on the token lock fails while another thread holds it", () -> {
+            final CountDownLatch locked = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                Object token = _lock.lock();
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();     // restore interrupt status
+                } finally {
+                    _lock.unlock(token);
+                }
+            });
+            holder.start();
+            locked.await();
+
+            Assert.assertNull(_lock.tryLock());
+            release.countDown();
+            holder.join();
+
+            Object token = _lock.tryLock();
+            Assert.assertNotNull(token);
+            Assert.assertTrue(_lock.isLocked());
+            _lock.unlock(token);
+            Assert.assertFalse(_lock.isLocked());
+        });
+
+        And("unlocking the token lock without a token fails", () -> {
+            Assert.assertThrows(IllegalMonitorStateException.class, () -> _lock.unlock(null));
+        });
+
+        When("one thread acquires all the token locks and releases them in reverse order {int} times", (Integer rounds) -> {
+            Object[] tokens = new Object[_locks.length];
+            for (int round = 0; round < rounds; round++) {
+                for (int i = 0; i < _locks.length; i++) {
+                    tokens[i] = _locks[i].lock();
+                    Assert.assertTrue(_locks[i].isLocked());
+                }
+                for (int i = _locks.length - 1; i >= 0; i--) {
+                    _locks[i].unlock(tokens[i]);
+                }
+            }
+        });
+
+        Then("all the token locks are free", () -> {
+            for (TokenLock lock : _locks) {
+                Assert.assertFalse(lock.isLocked());
+            }
+        });
+
+        And("the thread keeps at most {int} pooled nodes", (Integer maxNodes) -> {
+            Assert.assertTrue(_locks[0].pooledNodeCount() <= maxNodes);
+        });
+    }
+
+    private static TokenLock createLock(String implementation) {
+        switch (implementation) {
+            case "CLHTokenLock": {
+                CLHTokenLock lock = new CLHTokenLock();
+                return new TokenLock() {
+                    public Object lock() { return lock.lock(); }
+                    public Object tryLock() { return lock.tryLock(); }
+                    public void unlock(Object token) { lock.unlock((CLHTokenLock.Token) token); }
+                    public boolean isLocked() { return lock.isLocked(); }
+                    public int pooledNodeCount() { return CLHTokenLock.pooledNodeCount(); }
+                };
+            }
+            case "MCSTokenLock": {
+                MCSTokenLock lock = new MCSTokenLock();
+                return new TokenLock() {
+                    public Object lock() { return lock.lock(); }
+                    public Object tryLock() { return lock.tryLock(); }
+                    public void unlock(Object token) { lock.unlock((MCSTokenLock.Token) token); }
+                    public boolean isLocked() { return lock.isLocked(); }
+                    public int pooledNodeCount() { return MCSTokenLock.pooledNodeCount(); }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown token lock: " + implementation);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package diranieh.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnziTest {
+    @Test
+    void is_zero_on_construction() {
+        // Arrange and act
+        Snzi snzi = new Snzi(3);
+
+        // Assert
+        assertFalse(snzi.query());
+        assertEquals(4, snzi.getLeafCount());
+    }
+
+    @Test
+    void should_indicate_non_zero_between_arrive_and_depart() {
+        for (int height = 1; height <= 4; height++) {
+            // Arrange
+            Snzi snzi = new Snzi(height);
+
+            // Act and assert
+            int first = snzi.arrive();
+            int second = snzi.arrive();
+            assertTrue(snzi.query());
+            snzi.depart(first);
+            assertTrue(snzi.query());
+            snzi.depart(second);
+            assertFalse(snzi.query());
+        }
+    }
+
+    @Test
+    void should_count_arrivals_only_once_above_a_busy_leaf() {
+        // Arrange
+        Snzi snzi = new Snzi(3);
+
+        // Act: the same thread always arrives at the same leaf
+        int leaf = snzi.arrive();
+        snzi.arrive();
+        snzi.arrive();
+
+        // Assert: only the first arrival reached the parent and the root
+        assertEquals(3, snzi.countAt(leaf));
+        assertEquals(1, snzi.countAt(leaf >> 1));
+        assertEquals(1, snzi.countAt(1));
+    }
+
+    @Test
+    void should_reject_invalid_departures() {
+        // Arrange
+        Snzi snzi = new Snzi(3);
+
+        // Act and assert
+        assertThrows(IllegalArgumentException.class, () -> snzi.depart(1));
+        assertThrows(IllegalStateException.class, () -> snzi.depart(4));
+        assertThrows(IllegalArgumentException.class, () -> new Snzi(0));
+    }
+
+    @Test
+    void should_compute_height_from_thread_count() {
+        assertEquals(1, Snzi.heightFor(1));
+        assertEquals(2, Snzi.heightFor(2));
+        assertEquals(4, Snzi.heightFor(8));
+        assertEquals(5, Snzi.heightFor(9));
+    }
+
+    @Test
+    void should_stay_non_zero_while_any_thread_is_present() throws InterruptedException {
+        // Arrange: one arrival is held for the whole test, so query() must never report zero
+        Snzi snzi = new Snzi(Snzi.heightFor(8));
+        int held = snzi.arrive();
+        AtomicInteger falseZeros = new AtomicInteger(0);
+        int threadCount = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        // Act
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < 20_000; j++) {
+                        int leaf = snzi.arrive();
+                        if (!snzi.query())
+                            falseZeros.incrementAndGet();
+                        snzi.depart(leaf);
+                        if (!snzi.query())
+                            falseZeros.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(0, falseZeros.get());
+        assertTrue(snzi.query());
+        snzi.depart(held);
+        assertFalse(snzi.query());
+        assertEquals(0, snzi.countAt(1));
+    }
+
+    @Test
+    void should_return_to_zero_after_concurrent_arrivals_and_departures() throws InterruptedException {
+        // Arrange
+        Snzi snzi = new Snzi(2);        // fewer leaves than threads, so threads share leaves
+        int threadCount = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        // Act
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < 20_000; j++) {
+                        snzi.depart(snzi.arrive());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertFalse(snzi.query());
+        assertEquals(0, snzi.countAt(1));
+        assertEquals(0, snzi.countAt(2));
+        assertEquals(0, snzi.countAt(3));
+    }
+}
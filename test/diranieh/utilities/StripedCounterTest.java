@@ -0,0 +1,105 @@
+package diranieh.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedCounterTest {
+    @Test
+    void has_zero_sum_and_no_cells_on_construction() {
+        // Arrange and act
+        StripedCounter counter = new StripedCounter();
+
+        // Assert
+        assertEquals(0, counter.sum());
+        assertEquals(0, counter.approximateSum());
+        assertEquals(0, counter.getCellCount());
+    }
+
+    @Test
+    void should_add_and_subtract_without_contention() {
+        // Arrange
+        StripedCounter counter = new StripedCounter();
+
+        // Act
+        counter.increment();
+        counter.increment();
+        counter.decrement();
+        counter.add(41);
+
+        // Assert
+        assertEquals(42, counter.sum());
+        assertEquals("42", counter.toString());
+        assertEquals(0, counter.getCellCount());
+    }
+
+    @Test
+    void should_count_every_concurrent_update() throws InterruptedException {
+        // Arrange
+        StripedCounter counter = new StripedCounter();
+        int threadCount = 8;
+        int incrementCount = 100_000;
+
+        // Act
+        runThreads(threadCount, () -> {
+            for (int i = 0; i < incrementCount; i++) {
+                counter.increment();
+            }
+        });
+
+        // Assert
+        assertEquals((long) threadCount * incrementCount, counter.sum());
+        assertEquals(counter.sum(), counter.approximateSum());
+        assertTrue(counter.getCellCount() <= StripedCounter.getMaxCellCount());
+    }
+
+    @Test
+    void should_not_lose_updates_across_sum_then_reset() throws InterruptedException {
+        // Arrange
+        StripedCounter counter = new StripedCounter();
+        int threadCount = 4;
+        int incrementCount = 50_000;
+        long[] drained = new long[1];
+
+        // Act: drain the counter while other threads keep updating it
+        Thread drainer = new Thread(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                drained[0] += counter.sumThenReset();
+                Thread.yield();
+            }
+        });
+        drainer.start();
+        runThreads(threadCount, () -> {
+            for (int i = 0; i < incrementCount; i++) {
+                counter.increment();
+            }
+        });
+        drainer.join();
+
+        // Assert
+        assertEquals((long) threadCount * incrementCount, drained[0] + counter.sumThenReset());
+        assertEquals(0, counter.sum());
+    }
+
+    private static void runThreads(int threadCount, Runnable work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    work.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
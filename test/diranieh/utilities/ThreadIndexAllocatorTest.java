@@ -0,0 +1,150 @@
+package diranieh.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadIndexAllocatorTest {
+    @Test
+    void should_return_the_same_index_to_the_same_thread() {
+        // Arrange
+        ThreadIndexAllocator allocator = new ThreadIndexAllocator(4);
+
+        // Act
+        int first = allocator.get();
+        int second = allocator.get();
+
+        // Assert
+        assertEquals(0, first);
+        assertEquals(first, second);
+        assertEquals(1, allocator.getAllocatedCount());
+    }
+
+    @Test
+    void should_give_concurrent_threads_distinct_dense_indices() throws InterruptedException {
+        // Arrange
+        int threadCount = 16;
+        ThreadIndexAllocator allocator = new ThreadIndexAllocator(threadCount);
+        Set<Integer> indices = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch allocated = new CountDownLatch(threadCount);
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        // Act: every thread holds its index until all have one
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    indices.add(allocator.get());
+                    allocated.countDown();
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        allocated.await();
+
+        // Assert
+        assertEquals(threadCount, indices.size());
+        for (int i = 0; i < threadCount; i++) {
+            assertTrue(indices.contains(i));
+        }
+        finish.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    void should_reuse_indices_of_finished_threads() throws InterruptedException {
+        // Arrange: capacity for only two threads at a time
+        ThreadIndexAllocator allocator = new ThreadIndexAllocator(2);
+        int[] indices = new int[10];
+
+        // Act: threads come and go without releasing their index
+        for (int i = 0; i < indices.length; i++) {
+            final int thread = i;
+            Thread worker = new Thread(() -> indices[thread] = allocator.get());
+            worker.start();
+            worker.join();
+        }
+
+        // Assert
+        for (int index : indices) {
+            assertEquals(0, index);
+        }
+    }
+
+    @Test
+    void should_reuse_released_index() throws InterruptedException {
+        // Arrange
+        ThreadIndexAllocator allocator = new ThreadIndexAllocator(1);
+        int[] other = new int[1];
+
+        // Act
+        assertEquals(0, allocator.get());
+        allocator.release();
+        Thread worker = new Thread(() -> {
+            other[0] = allocator.get();
+            allocator.release();
+        });
+        worker.start();
+        worker.join();
+
+        // Assert
+        assertEquals(0, other[0]);
+        assertEquals(0, allocator.getAllocatedCount());
+    }
+
+    @Test
+    void should_fail_when_capacity_is_exhausted() throws InterruptedException {
+        // Arrange
+        ThreadIndexAllocator allocator = new ThreadIndexAllocator(1);
+        allocator.get();
+        Throwable[] failure = new Throwable[1];
+
+        // Act
+        Thread worker = new Thread(() -> {
+            try {
+                allocator.get();
+            } catch (IllegalStateException e) {
+                failure[0] = e;
+            }
+        });
+        worker.start();
+        worker.join();
+        allocator.release();
+
+        // Assert
+        assertNotNull(failure[0]);
+        assertThrows(IllegalArgumentException.class, () -> new ThreadIndexAllocator(0));
+    }
+
+    @Test
+    void should_allocate_and_release_indices_of_its_own_threads() throws InterruptedException {
+        // Arrange
+        ThreadIndexAllocator allocator = new ThreadIndexAllocator(2);
+        int[] indices = new int[2];
+        Thread worker = allocator.newThread(() -> {
+            indices[0] = allocator.get();
+            indices[1] = allocator.get();
+        });
+
+        // Act
+        worker.start();
+        worker.join();
+
+        // Assert
+        assertEquals(0, indices[0]);
+        assertEquals(0, indices[1]);
+        assertEquals(0, allocator.getAllocatedCount());
+    }
+}